@@ -0,0 +1,93 @@
+package com.cloudDemo.benchmark;
+
+import com.cloudDemo.orderservice.util.HashCodec;
+import com.cloudDemo.orderservice.util.IdempotentTokenCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等键派生与令牌签发/校验基准测试
+ * legacy* 为原 OrderIdempotentServiceImpl 的实现（MD5 + String.format 逐字节十六进制），作为对比基线；
+ * issueToken/verifyToken 为当前 IdempotentTokenCodec 的 HMAC-SHA256 签发与校验，是每次下单请求实际承担的开销；
+ * 配合 -prof gc 可同时查看每次调用的分配字节数：java -jar benchmarks.jar IdempotentKey -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotentKeyBenchmark {
+
+    private static final String KEY_PREFIX = "order:idempotent:";
+
+    private final Long userId = 10086L;
+    private final String productId = "PROD-001";
+    private final String amount = "199";
+    private final long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    private IdempotentTokenCodec tokenCodec;
+    private String clientToken;
+
+    @Setup
+    public void setup() {
+        tokenCodec = new IdempotentTokenCodec("benchmark-secret", TimeUnit.MINUTES.toSeconds(10));
+        clientToken = tokenCodec.issue(userId, nowSeconds);
+    }
+
+    @Benchmark
+    public String legacyIdempotentKey() {
+        String rawKey = userId + ":" + productId + ":" + amount + ":" + clientToken;
+        return KEY_PREFIX + legacyMd5Hash(rawKey);
+    }
+
+    @Benchmark
+    public String idempotentKey() {
+        return KEY_PREFIX + userId + ":" + HashCodec.murmur3Hex(productId, amount, clientToken);
+    }
+
+    @Benchmark
+    public String legacyToken() {
+        String baseToken = UUID.randomUUID().toString().replaceAll("-", "");
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS"));
+        return legacyMd5Hash(userId + "_" + timestamp + "_" + baseToken);
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return tokenCodec.issue(userId, nowSeconds);
+    }
+
+    @Benchmark
+    public long verifyToken() {
+        return tokenCodec.verify(clientToken, userId, nowSeconds);
+    }
+
+    private static String legacyMd5Hash(String input) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] hashBytes = md.digest(input.getBytes());
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hashBytes) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5算法不可用", e);
+        }
+    }
+}
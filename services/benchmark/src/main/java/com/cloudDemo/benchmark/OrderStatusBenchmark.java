@@ -0,0 +1,51 @@
+package com.cloudDemo.benchmark;
+
+import com.cloudDemo.orderservice.enums.OrderStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单状态解析与状态流转校验基准测试
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderStatusBenchmark {
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    // 分别对应第一个匹配、最后一个匹配和大小写不一致的状态码
+    @Param({"PENDING", "CANCELLED", "paid"})
+    public String code;
+
+    @Benchmark
+    public OrderStatus fromCode() {
+        return OrderStatus.fromCode(code);
+    }
+
+    /**
+     * 校验全部 5 x 5 状态组合
+     */
+    @Benchmark
+    public void canTransitionToAllPairs(Blackhole blackhole) {
+        for (OrderStatus from : STATUSES) {
+            for (OrderStatus to : STATUSES) {
+                blackhole.consume(from.canTransitionTo(to));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.cloudDemo.benchmark;
+
+import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各服务 RedisConfig 中值序列化器（Jackson 默认类型信息）的基准测试
+ * 序列化器取自各 RedisConfig 构建出的 RedisTemplate，连接工厂不会被启动，因此不需要Redis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisSerializerBenchmark {
+
+    @Param({"order-service", "user-service", "management-service"})
+    public String config;
+
+    @Param({"ProductInventory", "Orders"})
+    public String payload;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        RedisTemplate<String, Object> template = switch (config) {
+            case "order-service" -> new com.cloudDemo.orderservice.config.RedisConfig().redisTemplate(connectionFactory);
+            case "user-service" -> new com.cloudDemo.userservice.config.RedisConfig().redisTemplate(connectionFactory);
+            case "management-service" -> new com.cloudDemo.management.config.RedisConfig().redisTemplate(connectionFactory);
+            default -> throw new IllegalArgumentException("未知的配置: " + config);
+        };
+        serializer = (RedisSerializer<Object>) template.getValueSerializer();
+        value = "Orders".equals(payload) ? sampleOrder() : sampleInventory();
+        bytes = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    private ProductInventory sampleInventory() {
+        ProductInventory inventory = new ProductInventory();
+        inventory.setId(1L);
+        inventory.setProductId("PROD-001");
+        inventory.setProductName("基准测试商品");
+        inventory.setTotalStock(10000);
+        inventory.setAvailableStock(8000);
+        inventory.setReservedStock(500);
+        inventory.setSoldStock(1500);
+        inventory.setStatus("NORMAL");
+        inventory.setCreateTime(LocalDateTime.of(2024, 10, 1, 12, 0));
+        inventory.setUpdateTime(LocalDateTime.of(2024, 10, 1, 12, 30));
+        inventory.setVersion(42);
+        return inventory;
+    }
+
+    private Orders sampleOrder() {
+        Orders order = new Orders();
+        order.setId(1L);
+        order.setOrderNo("ORD202410011200000001");
+        order.setUserId(10086);
+        order.setTotalAmount(new BigDecimal("199.00"));
+        order.setPaymentAmount(new BigDecimal("199.00"));
+        order.setPaymentType("ALIPAY");
+        order.setStatus("PAID");
+        order.setShippingAddress("上海市浦东新区示例路1号");
+        order.setCreateTime(LocalDateTime.of(2024, 10, 1, 12, 0));
+        return order;
+    }
+}
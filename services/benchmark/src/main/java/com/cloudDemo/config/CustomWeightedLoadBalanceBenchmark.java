@@ -0,0 +1,102 @@
+package com.cloudDemo.config;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自定义权重负载均衡选择基准测试
+ * 与 CustomWeightedLoadBalance 同包，直接调用受保护的 doSelect；调用者为本地桩实现，不需要注册中心
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomWeightedLoadBalanceBenchmark {
+
+    private static final String SERVICE = "com.cloudDemo.api.service.OrderService";
+
+    @Param({"2", "8", "32"})
+    public int invokerCount;
+
+    // 为 true 时所有实例权重相同，走随机分支；否则走按权重随机分支
+    @Param({"true", "false"})
+    public boolean sameWeight;
+
+    private final CustomWeightedLoadBalance loadBalance = new CustomWeightedLoadBalance();
+    private List<Invoker<Object>> invokers;
+    private URL consumerUrl;
+    private Invocation invocation;
+
+    @Setup
+    public void setup() {
+        invokers = new ArrayList<>(invokerCount);
+        for (int i = 0; i < invokerCount; i++) {
+            int weight = sameWeight ? 100 : 50 + (i % 4) * 50;
+            invokers.add(new StubInvoker(URL.valueOf(
+                    "dubbo://10.0.0." + (i + 1) + ":20880/" + SERVICE + "?weight=" + weight)));
+        }
+        consumerUrl = URL.valueOf("consumer://10.0.1.1/" + SERVICE + "?loadbalance=" + CustomWeightedLoadBalance.NAME);
+        invocation = new RpcInvocation("createOrder", SERVICE, SERVICE, new Class<?>[0], new Object[0]);
+    }
+
+    @Benchmark
+    public Invoker<Object> doSelect() {
+        return loadBalance.doSelect(invokers, consumerUrl, invocation);
+    }
+
+    /**
+     * 只提供地址和可用状态的调用者桩
+     */
+    private static final class StubInvoker implements Invoker<Object> {
+
+        private final URL url;
+
+        private StubInvoker(URL url) {
+            this.url = url;
+        }
+
+        @Override
+        public Class<Object> getInterface() {
+            return Object.class;
+        }
+
+        @Override
+        public Result invoke(Invocation invocation) {
+            throw new UnsupportedOperationException("基准测试桩不支持调用");
+        }
+
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
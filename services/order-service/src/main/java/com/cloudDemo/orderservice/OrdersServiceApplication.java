@@ -10,10 +10,12 @@ import org.springframework.boot.context.event.ApplicationFailedEvent;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @EnableDubbo
 @EnableDiscoveryClient
+@EnableScheduling
 @SpringBootApplication
 @MapperScan("com.cloudDemo.orderservice.mapper")
 public class OrdersServiceApplication {
@@ -0,0 +1,21 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单幂等性配置
+ * 对应配置前缀 order.idempotent.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.idempotent")
+public class IdempotentProperties {
+
+    // 幂等令牌签名密钥，所有订单服务实例必须一致；未配置时启动失败
+    private String tokenSecret;
+
+    // 幂等令牌有效期（分钟）
+    private int tokenExpireMinutes = 10;
+}
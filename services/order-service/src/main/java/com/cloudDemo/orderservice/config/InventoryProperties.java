@@ -0,0 +1,143 @@
+package com.cloudDemo.orderservice.config;
+
+import com.cloudDemo.orderservice.enums.InventoryReserveMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 库存子系统配置
+ * 对应配置前缀 inventory.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "inventory")
+public class InventoryProperties {
+
+    // 库存预扣模式，默认沿用分布式锁 + 乐观锁
+    private InventoryReserveMode reserveMode = InventoryReserveMode.LOCK;
+
+    // REDIS_SCRIPT模式下的数据库异步回写配置
+    private WriteBehind writeBehind = new WriteBehind();
+
+    // SHARDED模式下的分桶配置
+    private Shard shard = new Shard();
+
+    // OPTIMISTIC模式下的冲突重试配置
+    private Optimistic optimistic = new Optimistic();
+
+    // 同商品预扣请求合并配置
+    private Coalesce coalesce = new Coalesce();
+
+    // 售罄索引配置
+    private SoldOut soldOut = new SoldOut();
+
+    // 预扣有效期与过期清理配置
+    private Reservation reservation = new Reservation();
+
+    // 进程内一级缓存配置
+    private LocalCache localCache = new LocalCache();
+
+    // 启动时缓存预热配置
+    private Prewarm prewarm = new Prewarm();
+
+    // 并发压测配置
+    private StressTest stressTest = new StressTest();
+
+    @Data
+    public static class WriteBehind {
+        // 每批最多回写的流水条数
+        private int batchSize = 500;
+
+        // 回写间隔（毫秒）
+        private long flushIntervalMs = 200;
+    }
+
+    @Data
+    public static class Shard {
+        // 每个商品拆分的桶数量（仅对新分桶的商品生效）
+        private int bucketCount = 8;
+    }
+
+    @Data
+    public static class Optimistic {
+        // 最大尝试次数（含首次）
+        private int maxAttempts = 5;
+
+        // 基础退避时间（毫秒），每次重试翻倍
+        private long baseBackoffMs = 2;
+
+        // 单次退避上限（毫秒）
+        private long maxBackoffMs = 50;
+    }
+
+    @Data
+    public static class Coalesce {
+        // 是否合并同一商品的并发预扣请求（仅LOCK/OPTIMISTIC模式）
+        private boolean enabled = false;
+
+        // 合并窗口（微秒），首个请求到达后等待该时长再统一提交
+        private long windowMicros = 500;
+
+        // 单批最多合并的请求数
+        private int maxBatchSize = 200;
+
+        // 执行合并提交的线程数
+        private int flushThreads = 4;
+    }
+
+    @Data
+    public static class SoldOut {
+        // 是否启用售罄快速失败
+        private boolean enabled = true;
+
+        // 售罄标记有效期（毫秒），补货通知丢失时的最长误判时间
+        private long ttlMs = 10000;
+    }
+
+    @Data
+    public static class Reservation {
+        // 是否登记预扣有效期（开启后确认/释放需传入预扣记录ID）
+        // 订单取消时按订单号归还预扣库存依赖预扣记录，未开启时取消订单不会自动归还库存
+        private boolean enabled = false;
+
+        // 预扣有效期（秒）
+        private long ttlSeconds = 900;
+
+        // 过期清理间隔（毫秒）
+        private long sweepIntervalMs = 1000;
+
+        // 每批认领的过期记录数
+        private int sweepBatchSize = 500;
+
+        // 释放失败的记录延后重试的时间（秒）
+        private long retryDelaySeconds = 30;
+    }
+
+    @Data
+    public static class LocalCache {
+        // 是否启用进程内缓存
+        private boolean enabled = true;
+
+        // 最多缓存的商品数量
+        private long maximumSize = 10000;
+
+        // 写入后过期时间（毫秒），跨实例失效通知丢失时的最长不一致时间
+        private long ttlMs = 1000;
+    }
+
+    @Data
+    public static class Prewarm {
+        // 是否在启动时预热库存缓存（预热期间实例不接收流量）
+        private boolean enabled = true;
+
+        // 每批管道写入Redis的记录数
+        private int batchSize = 500;
+    }
+
+    @Data
+    public static class StressTest {
+        // 平台线程模式下的最大工作线程数，请求的并发数更大时由这些线程分担全部操作
+        private int maxPlatformThreads = 200;
+    }
+}
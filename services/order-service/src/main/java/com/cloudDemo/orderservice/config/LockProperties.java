@@ -0,0 +1,24 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分布式锁配置
+ * 对应配置前缀 distributed-lock.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "distributed-lock")
+public class LockProperties {
+
+    // 竞争统计最多跟踪的锁键数量（超出后淘汰竞争最少的锁键）
+    private int topKCapacity = 256;
+
+    // 竞争统计的窗口长度（毫秒），报告默认按上一个完整窗口内的等待时间排序
+    private long contentionWindowMs = 60000;
+
+    // 每多少次加锁输出一条INFO日志（0表示不输出，其余加锁只输出DEBUG日志）
+    private int logSampleRate = 1000;
+}
@@ -0,0 +1,21 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量订单状态转换配置
+ * 对应配置前缀 order.batch-transition.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.batch-transition")
+public class OrderBatchProperties {
+
+    // 单次请求最多处理的订单数
+    private int maxOrders = 5000;
+
+    // 每个事务处理的订单数（一次 SELECT ... FOR UPDATE 加一次 UPDATE）
+    private int chunkSize = 500;
+}
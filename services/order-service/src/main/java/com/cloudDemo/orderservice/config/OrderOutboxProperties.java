@@ -0,0 +1,30 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单状态变更事件发件箱配置
+ * 对应配置前缀 order.outbox.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.outbox")
+public class OrderOutboxProperties {
+
+    // 是否启用中继投递（关闭后事件仍写入发件箱，只是不投递）
+    private boolean relayEnabled = true;
+
+    // 事件投递的Redis Stream键
+    private String streamKey = "order:stream:status";
+
+    // 每批投递的事件数
+    private int batchSize = 500;
+
+    // 单次中继最多投递的批数
+    private int maxBatchesPerRun = 20;
+
+    // Stream 近似最大长度（XADD MAXLEN ~），0表示不裁剪
+    private long streamMaxLen = 1000000;
+}
@@ -0,0 +1,21 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单分钟汇总配置
+ * 对应配置前缀 order.rollup.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.rollup")
+public class OrderRollupProperties {
+
+    // 是否启用分钟汇总（关闭后统计查询全部走数据库）
+    private boolean enabled = true;
+
+    // 汇总数据保留时长（小时），更早的时间窗口走数据库查询
+    private int retentionHours = 48;
+}
@@ -0,0 +1,33 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 待支付订单超时取消配置
+ * 对应配置前缀 order.payment-timeout.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.payment-timeout")
+public class OrderTimeoutProperties {
+
+    // 是否启用超时自动取消
+    private boolean enabled = true;
+
+    // 下单后多长时间未支付自动取消（分钟）
+    private int timeoutMinutes = 30;
+
+    // 时间轮每格时长（毫秒），即超时取消的精度
+    private long tickMs = 1000;
+
+    // 时间轮每层格数
+    private int wheelSize = 512;
+
+    // 每批取消的订单数
+    private int cancelBatchSize = 500;
+
+    // 取消失败后重试的延迟（秒）
+    private long retryDelaySeconds = 30;
+}
@@ -0,0 +1,45 @@
+package com.cloudDemo.orderservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 支付回调接收配置
+ * 对应配置前缀 order.payment-callback.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.payment-callback")
+public class PaymentCallbackProperties {
+
+    // 本地回调日志目录（需挂载持久化存储）
+    private String journalDir = "data/payment-callback";
+
+    // 单个日志分段文件的大小上限（字节），超过后滚动到新分段
+    private long segmentBytes = 64L * 1024 * 1024;
+
+    // 回调写入日志并落盘的最长等待时间（毫秒），超时返回繁忙由支付网关重试
+    private long ackTimeoutMs = 200;
+
+    // 等待写入日志的回调数量上限
+    private int pendingCapacity = 10000;
+
+    // 处理回调的工作线程数（同一订单固定由同一线程处理）
+    private int workerThreads = 4;
+
+    // 每个工作线程的待处理队列容量
+    private int workerQueueCapacity = 1000;
+
+    // 每批最多处理的回调数
+    private int batchSize = 200;
+
+    // 凑批的最长等待时间（毫秒）
+    private long batchWaitMs = 10;
+
+    // 相同订单号+支付流水号的重复回调在此时间内直接忽略（秒）
+    private long dedupTtlSeconds = 600;
+
+    // 检查点保存间隔（毫秒）
+    private long checkpointIntervalMs = 1000;
+}
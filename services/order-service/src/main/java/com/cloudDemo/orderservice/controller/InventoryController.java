@@ -1,10 +1,16 @@
 package com.cloudDemo.orderservice.controller;
 
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.InventoryBatchOperationRequest;
 import com.cloudDemo.orderservice.dto.InventoryInitializeRequest;
 import com.cloudDemo.orderservice.dto.InventoryOperationRequest;
+import com.cloudDemo.orderservice.dto.InventoryReservation;
 import com.cloudDemo.orderservice.dto.StressTestRequest;
 import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.enums.InventoryOperation;
 import com.cloudDemo.orderservice.service.InventoryService;
+import com.cloudDemo.orderservice.service.inventory.InventoryCacheWarmer;
+import com.cloudDemo.orderservice.service.inventory.InventoryStressTestService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -22,8 +28,16 @@ import java.util.Map;
 @Slf4j
 public class InventoryController {
 
+    private static final String RESERVATION_ID_REQUIRED = "已开启预扣有效期，请传入预扣记录ID";
+
     @Autowired
     private InventoryService inventoryService;
+    @Autowired
+    private InventoryStressTestService stressTestService;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private InventoryCacheWarmer cacheWarmer;
 
     @PostMapping("/initialize")
     @Operation(summary = "初始化商品库存", description = "为新商品初始化库存信息")
@@ -48,11 +62,20 @@ public class InventoryController {
     }
 
     @PostMapping("/reserve")
-    @Operation(summary = "预扣库存", description = "使用分布式锁进行库存预扣，防止超卖")
+    @Operation(summary = "预扣库存", description = "使用分布式锁进行库存预扣，防止超卖；开启预扣有效期时返回预扣记录ID")
     public Map<String, Object> reserveStock(@Valid @RequestBody InventoryOperationRequest request) {
         Map<String, Object> result = new HashMap<>();
         try {
-            boolean success = inventoryService.reserveStock(request.getProductId(), request.getQuantity());
+            boolean success;
+            if (inventoryProperties.getReservation().isEnabled()) {
+                // 登记预扣有效期，返回的预扣记录ID用于后续确认或释放
+                InventoryReservation reservation = inventoryService.reserveStockWithExpiry(
+                        request.getProductId(), request.getQuantity(), request.getOrderNo());
+                result.put("data", reservation);
+                success = true;
+            } else {
+                success = inventoryService.reserveStock(request.getProductId(), request.getQuantity());
+            }
             result.put("success", success);
             result.put("message", success ? "库存预扣成功" : "库存预扣失败");
             log.info("库存预扣操作: 商品={}, 数量={}, 结果={}", request.getProductId(), request.getQuantity(), success);
@@ -65,11 +88,18 @@ public class InventoryController {
     }
 
     @PostMapping("/confirm")
-    @Operation(summary = "确认库存扣减", description = "支付成功后确认扣减库存")
+    @Operation(summary = "确认库存扣减", description = "支付成功后确认扣减库存；开启预扣有效期时必须传入预扣记录ID")
     public Map<String, Object> confirmStockReduction(@Valid @RequestBody InventoryOperationRequest request) {
         Map<String, Object> result = new HashMap<>();
+        if (missingReservationId(request)) {
+            result.put("success", false);
+            result.put("message", "库存确认扣减失败: " + RESERVATION_ID_REQUIRED);
+            return result;
+        }
         try {
-            boolean success = inventoryService.confirmStockReduction(request.getProductId(), request.getQuantity());
+            boolean success = request.getReservationId() != null
+                    ? inventoryService.confirmReservation(request.getReservationId())
+                    : inventoryService.confirmStockReduction(request.getProductId(), request.getQuantity());
             result.put("success", success);
             result.put("message", success ? "库存确认扣减成功" : "库存确认扣减失败");
             log.info("库存确认扣减: 商品={}, 数量={}, 结果={}", request.getProductId(), request.getQuantity(), success);
@@ -82,11 +112,18 @@ public class InventoryController {
     }
 
     @PostMapping("/release")
-    @Operation(summary = "释放预扣库存", description = "订单取消时释放预扣的库存")
+    @Operation(summary = "释放预扣库存", description = "订单取消时释放预扣的库存；开启预扣有效期时必须传入预扣记录ID")
     public Map<String, Object> releaseStock(@Valid @RequestBody InventoryOperationRequest request) {
         Map<String, Object> result = new HashMap<>();
+        if (missingReservationId(request)) {
+            result.put("success", false);
+            result.put("message", "库存释放失败: " + RESERVATION_ID_REQUIRED);
+            return result;
+        }
         try {
-            boolean success = inventoryService.releaseStock(request.getProductId(), request.getQuantity());
+            boolean success = request.getReservationId() != null
+                    ? inventoryService.releaseReservation(request.getReservationId())
+                    : inventoryService.releaseStock(request.getProductId(), request.getQuantity());
             result.put("success", success);
             result.put("message", success ? "库存释放成功" : "库存释放失败");
             log.info("库存释放: 商品={}, 数量={}, 结果={}", request.getProductId(), request.getQuantity(), success);
@@ -98,6 +135,24 @@ public class InventoryController {
         return result;
     }
 
+    @PostMapping("/batch/reserve")
+    @Operation(summary = "批量预扣库存", description = "购物车多商品一次性预扣，全部成功或全部失败；开启预扣有效期时返回各商品的预扣记录")
+    public Map<String, Object> reserveStockBatch(@Valid @RequestBody InventoryBatchOperationRequest request) {
+        return applyStockBatch(request, InventoryOperation.RESERVE);
+    }
+
+    @PostMapping("/batch/confirm")
+    @Operation(summary = "批量确认库存扣减", description = "支付成功后一次性确认订单内全部商品的库存扣减；开启预扣有效期时每个商品都必须传入预扣记录ID")
+    public Map<String, Object> confirmStockBatch(@Valid @RequestBody InventoryBatchOperationRequest request) {
+        return applyStockBatch(request, InventoryOperation.CONFIRM);
+    }
+
+    @PostMapping("/batch/release")
+    @Operation(summary = "批量释放预扣库存", description = "订单取消时一次性释放全部商品的预扣库存；开启预扣有效期时每个商品都必须传入预扣记录ID")
+    public Map<String, Object> releaseStockBatch(@Valid @RequestBody InventoryBatchOperationRequest request) {
+        return applyStockBatch(request, InventoryOperation.RELEASE);
+    }
+
     @GetMapping("/{productId}")
     @Operation(summary = "查询库存信息", description = "查询指定商品的库存状态")
     public Map<String, Object> getInventory(
@@ -122,40 +177,38 @@ public class InventoryController {
         return result;
     }
 
+    @PostMapping("/cache/prewarm")
+    @Operation(summary = "预热库存缓存", description = "流式读取全部库存记录并分批管道写入Redis，只补齐缓存中不存在的记录")
+    public Map<String, Object> prewarmCache() {
+
+        Map<String, Object> result = new HashMap<>();
+        try {
+            Map<String, Object> stats = cacheWarmer.warm();
+
+            result.put("success", true);
+            result.put("message", "库存缓存预热完成");
+            result.put("data", stats);
+
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "库存缓存预热失败: " + e.getMessage());
+            log.error("库存缓存预热失败", e);
+        }
+        return result;
+    }
+
     @PostMapping("/stress-test")
-    @Operation(summary = "高并发压力测试", description = "模拟高并发场景测试分布式锁的效果")
+    @Operation(summary = "高并发压力测试",
+            description = "多线程并发预扣库存，支持预热、定速/闭环模式和虚拟线程，返回吞吐量、延迟百分位及失败原因分布")
     public Map<String, Object> stressTest(@Valid @RequestBody StressTestRequest request) {
 
         Map<String, Object> result = new HashMap<>();
         try {
-            // 简单的压力测试实现
-            long startTime = System.currentTimeMillis();
-            int successCount = 0;
-            int failCount = 0;
-
-            for (int i = 0; i < request.getThreadCount() * request.getOperationsPerThread(); i++) {
-                try {
-                    boolean success = inventoryService.reserveStock(request.getProductId(), 1);
-                    if (success) {
-                        successCount++;
-                    } else {
-                        failCount++;
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                }
-            }
-
-            long endTime = System.currentTimeMillis();
+            Map<String, Object> report = stressTestService.run(request);
 
             result.put("success", true);
             result.put("message", "压力测试完成");
-            result.put("data", Map.of(
-                    "totalOperations", request.getThreadCount() * request.getOperationsPerThread(),
-                    "successCount", successCount,
-                    "failCount", failCount,
-                    "executionTimeMs", endTime - startTime
-            ));
+            result.put("data", report);
 
         } catch (Exception e) {
             result.put("success", false);
@@ -164,4 +217,56 @@ public class InventoryController {
         }
         return result;
     }
+
+    /**
+     * 开启预扣有效期后，确认和释放只能按预扣记录进行：按商品数量直接操作不会删除预扣记录，
+     * 记录到期或订单取消时会再次释放同一份库存
+     */
+    private boolean missingReservationId(InventoryOperationRequest request) {
+        return inventoryProperties.getReservation().isEnabled() && request.getReservationId() == null;
+    }
+
+    private Map<String, Object> applyStockBatch(InventoryBatchOperationRequest request, InventoryOperation operation) {
+        Map<String, Integer> items = request.toQuantityMap();
+        Map<String, Object> result = new HashMap<>();
+        boolean byReservation = inventoryProperties.getReservation().isEnabled();
+        if (byReservation && operation != InventoryOperation.RESERVE
+                && request.getItems().stream().anyMatch(this::missingReservationId)) {
+            result.put("success", false);
+            result.put("message", "批量" + operation.getName() + "失败: " + RESERVATION_ID_REQUIRED);
+            return result;
+        }
+        try {
+            boolean success = true;
+            Object data = items;
+            switch (operation) {
+                case RESERVE:
+                    if (byReservation) {
+                        data = inventoryService.reserveStockBatchWithExpiry(items, request.getOrderNo());
+                    } else {
+                        success = inventoryService.reserveStockBatch(items);
+                    }
+                    break;
+                case CONFIRM:
+                    success = byReservation
+                            ? inventoryService.confirmReservations(request.toReservationIds())
+                            : inventoryService.confirmStockBatch(items);
+                    break;
+                case RELEASE:
+                default:
+                    success = byReservation
+                            ? inventoryService.releaseReservations(request.toReservationIds())
+                            : inventoryService.releaseStockBatch(items);
+            }
+            result.put("success", success);
+            result.put("message", "批量" + operation.getName() + (success ? "成功" : "失败"));
+            result.put("data", data);
+            log.info("批量{}: 商品={}, 结果={}", operation.getName(), items, success);
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "批量" + operation.getName() + "失败: " + e.getMessage());
+            log.error("批量{}失败: 商品={}", operation.getName(), items, e);
+        }
+        return result;
+    }
 }
@@ -1,6 +1,10 @@
 package com.cloudDemo.orderservice.controller;
 
+import com.cloudDemo.orderservice.dto.IdempotentOrderCreateRequest;
+import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.enums.OrderStatus;
 import com.cloudDemo.orderservice.service.OrderIdempotentService;
+import com.cloudDemo.orderservice.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,6 +30,8 @@ public class OrderIdempotentController {
 
     @Autowired
     private OrderIdempotentService orderIdempotentService;
+    @Autowired
+    private OrderService orderService;
 
     @PostMapping("/token/{userId}")
     @Operation(summary = "获取幂等令牌", description = "为用户生成订单幂等性令牌，用于防止重复下单")
@@ -37,7 +45,7 @@ public class OrderIdempotentController {
             result.put("message", "幂等令牌生成成功");
             result.put("userId", userId);
             result.put("idempotentToken", token);
-            result.put("expireMinutes", 10);
+            result.put("expireMinutes", orderIdempotentService.getTokenExpireSeconds() / 60);
             result.put("usage", "请在下单时将此令牌包含在请求中，确保订单创建的幂等性");
 
             log.info("为用户 {} 生成幂等令牌成功", userId);
@@ -51,6 +59,58 @@ public class OrderIdempotentController {
         }
     }
 
+    @PostMapping("/create")
+    @Operation(summary = "幂等创建订单", description = "携带幂等令牌下单，重复请求直接返回处理中或已创建的订单号")
+    public ResponseEntity<Map<String, Object>> createOrder(@RequestBody IdempotentOrderCreateRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        String amount = request.getAmount() == null ? null : request.getAmount().stripTrailingZeros().toPlainString();
+
+        OrderIdempotentService.IdempotentResult check = orderIdempotentService.checkIdempotent(
+                request.getUserId(), request.getProductId(), amount, request.getIdempotentToken());
+        if (check.isDuplicate()) {
+            result.put("success", check.getExistingOrderNo() != null);
+            result.put("duplicate", true);
+            result.put("inProgress", check.isInProgress());
+            result.put("orderNo", check.getExistingOrderNo());
+            result.put("message", check.getMessage());
+            return check.getExistingOrderNo() != null || check.isInProgress()
+                    ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+        }
+
+        try {
+            String orderNo = "ORDER-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                    + "-" + System.currentTimeMillis() % 1000;
+
+            Orders order = new Orders();
+            order.setOrderNo(orderNo);
+            order.setUserId(request.getUserId().intValue());
+            order.setTotalAmount(request.getAmount());
+            order.setPaymentAmount(request.getAmount());
+            order.setPaymentType(request.getPaymentType());
+            order.setStatus(OrderStatus.PENDING.getCode());
+            order.setShippingAddress(request.getShippingAddress());
+            order.setCreateTime(LocalDateTime.now());
+            orderService.createOrder(order);
+
+            orderIdempotentService.markOrderCreated(request.getUserId(), request.getProductId(), amount,
+                    request.getIdempotentToken(), orderNo);
+
+            result.put("success", true);
+            result.put("duplicate", false);
+            result.put("orderNo", orderNo);
+            result.put("message", "订单创建成功");
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            orderIdempotentService.releaseIdempotent(request.getUserId(), request.getProductId(), amount,
+                    request.getIdempotentToken());
+            log.error("幂等创建订单失败：{}", e.getMessage());
+            result.put("success", false);
+            result.put("message", "创建订单失败：" + e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
     @PostMapping("/clean")
     @Operation(summary = "清理过期记录", description = "手动清理过期的幂等性记录（通常由定时任务执行）")
     public ResponseEntity<Map<String, Object>> cleanExpiredRecords() {
@@ -75,8 +135,8 @@ public class OrderIdempotentController {
 
         Map<String, String> demoSteps = new HashMap<>();
         demoSteps.put("1. 获取令牌", "POST /api/order/idempotent/token/{userId}");
-        demoSteps.put("2. 创建订单", "POST /api/order/create （带上idempotentToken）");
-        demoSteps.put("3. 重复请求", "再次发送相同请求，会返回已存在的订单号");
+        demoSteps.put("2. 创建订单", "POST /api/order/idempotent/create （带上idempotentToken）");
+        demoSteps.put("3. 重复请求", "再次发送相同请求，会返回处理中或已存在的订单号");
         demoSteps.put("4. 令牌失效", "令牌使用后自动失效，10分钟后过期");
 
         Map<String, Object> exampleRequest = new HashMap<>();
@@ -91,7 +151,8 @@ public class OrderIdempotentController {
         result.put("exampleRequest", exampleRequest);
         result.put("technicalFeatures", new String[]{
                 "基于Redis的分布式幂等性控制",
-                "MD5哈希生成幂等键",
+                "MurmurHash3哈希生成幂等键",
+                "HMAC签名的自校验令牌（签发与校验不访问Redis）",
                 "令牌有效期管理",
                 "自动清理过期记录",
                 "防止重复下单攻击"
@@ -1,16 +1,21 @@
 package com.cloudDemo.orderservice.controller;
 
+import com.cloudDemo.orderservice.dto.OrderBatchTransitionRequest;
+import com.cloudDemo.orderservice.dto.OrderBatchTransitionResult;
 import com.cloudDemo.orderservice.dto.OrderCancelRequest;
 import com.cloudDemo.orderservice.dto.OrderShipRequest;
 import com.cloudDemo.orderservice.dto.PaymentCallbackRequest;
 import com.cloudDemo.orderservice.entity.Orders;
 import com.cloudDemo.orderservice.enums.OrderStatus;
 import com.cloudDemo.orderservice.service.OrderStateMachineService;
+import com.cloudDemo.orderservice.service.payment.PaymentCallbackIngestor;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,6 +25,8 @@ import java.util.Map;
 /**
  * 订单状态机控制器
  * 提供订单状态转换的API接口
+ * 单个订单的状态转换不回读订单，成功时只返回订单号（orderNo）和转换后的状态码（status），
+ * 需要完整订单信息时通过订单查询接口获取
  */
 @Slf4j
 @RestController
@@ -29,6 +36,8 @@ public class OrderStateMachineController {
 
     @Autowired
     private OrderStateMachineService orderStateMachineService;
+    @Autowired
+    private PaymentCallbackIngestor paymentCallbackIngestor;
 
     @PostMapping("/pay/{orderNo}")
     @Operation(summary = "支付订单", description = "将订单状态从待支付转换为已支付")
@@ -40,7 +49,8 @@ public class OrderStateMachineController {
             Orders order = orderStateMachineService.payOrder(orderNo);
             result.put("success", true);
             result.put("message", "订单支付成功");
-            result.put("order", order);
+            result.put("orderNo", order.getOrderNo());
+            result.put("status", order.getStatus());
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             log.error("订单支付失败：{}", e.getMessage());
@@ -69,7 +79,8 @@ public class OrderStateMachineController {
             Orders order = orderStateMachineService.shipOrder(orderNo, trackingNumber);
             result.put("success", true);
             result.put("message", "订单发货成功");
-            result.put("order", order);
+            result.put("orderNo", order.getOrderNo());
+            result.put("status", order.getStatus());
             result.put("trackingNumber", trackingNumber);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -90,7 +101,8 @@ public class OrderStateMachineController {
             Orders order = orderStateMachineService.completeOrder(orderNo);
             result.put("success", true);
             result.put("message", "订单完成成功");
-            result.put("order", order);
+            result.put("orderNo", order.getOrderNo());
+            result.put("status", order.getStatus());
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             log.error("订单完成失败：{}", e.getMessage());
@@ -116,7 +128,8 @@ public class OrderStateMachineController {
             Orders order = orderStateMachineService.cancelOrder(orderNo, reason);
             result.put("success", true);
             result.put("message", "订单取消成功");
-            result.put("order", order);
+            result.put("orderNo", order.getOrderNo());
+            result.put("status", order.getStatus());
             result.put("reason", reason);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
@@ -127,6 +140,57 @@ public class OrderStateMachineController {
         }
     }
 
+    @PostMapping("/batch/ship")
+    @Operation(summary = "批量发货", description = "将一批已支付订单转换为已发货，逐个返回处理结果")
+    public ResponseEntity<Map<String, Object>> batchShipOrders(@Valid @RequestBody OrderBatchTransitionRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            OrderBatchTransitionResult batchResult = orderStateMachineService.batchShipOrders(request.getOrderNos());
+            return ResponseEntity.ok(batchResponse(result, "批量发货", batchResult));
+        } catch (Exception e) {
+            log.error("批量发货失败：{}", e.getMessage());
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
+    @PostMapping("/batch/complete")
+    @Operation(summary = "批量完成订单", description = "将一批已发货订单转换为已完成，逐个返回处理结果")
+    public ResponseEntity<Map<String, Object>> batchCompleteOrders(@Valid @RequestBody OrderBatchTransitionRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            OrderBatchTransitionResult batchResult = orderStateMachineService.batchCompleteOrders(request.getOrderNos());
+            return ResponseEntity.ok(batchResponse(result, "批量完成", batchResult));
+        } catch (Exception e) {
+            log.error("批量完成订单失败：{}", e.getMessage());
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
+    @PostMapping("/batch/cancel")
+    @Operation(summary = "批量取消订单", description = "取消一批订单（已完成和已取消的订单除外），逐个返回处理结果")
+    public ResponseEntity<Map<String, Object>> batchCancelOrders(@Valid @RequestBody OrderBatchTransitionRequest request) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            String reason = "批量取消";
+            if (request.getReason() != null && !request.getReason().trim().isEmpty()) {
+                reason = request.getReason();
+            }
+
+            OrderBatchTransitionResult batchResult = orderStateMachineService.batchCancelOrders(request.getOrderNos(), reason);
+            result.put("reason", reason);
+            return ResponseEntity.ok(batchResponse(result, "批量取消", batchResult));
+        } catch (Exception e) {
+            log.error("批量取消订单失败：{}", e.getMessage());
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
     @GetMapping("/next-statuses/{orderNo}")
     @Operation(summary = "获取可转换状态", description = "获取订单的下一步可能的状态")
     public ResponseEntity<Map<String, Object>> getNextPossibleStatuses(
@@ -148,17 +212,28 @@ public class OrderStateMachineController {
     }
 
     @PostMapping("/payment-callback")
-    @Operation(summary = "支付回调", description = "模拟异步支付回调处理")
+    @Operation(summary = "支付回调", description = "支付回调写入本地日志后立即应答，由后台线程批量更新订单状态；返回503时支付网关应重试")
     public ResponseEntity<Map<String, Object>> handlePaymentCallback(@RequestBody PaymentCallbackRequest request) {
 
         Map<String, Object> result = new HashMap<>();
         try {
-            String message = orderStateMachineService.handlePaymentCallback(request.getOrderNo(), request.getPaymentResult());
-            result.put("success", true);
-            result.put("message", message);
+            PaymentCallbackIngestor.AckStatus status = paymentCallbackIngestor.ingest(
+                    request.getOrderNo(), request.getPaymentId(), request.getPaymentResult());
+            result.put("success", status != PaymentCallbackIngestor.AckStatus.BUSY);
+            result.put("status", status);
             result.put("orderNo", request.getOrderNo());
             result.put("paymentResult", request.getPaymentResult());
-            return ResponseEntity.ok(result);
+            switch (status) {
+                case ACCEPTED:
+                    result.put("message", "回调已受理");
+                    return ResponseEntity.ok(result);
+                case DUPLICATE:
+                    result.put("message", "重复回调，已忽略");
+                    return ResponseEntity.ok(result);
+                default:
+                    result.put("message", "系统繁忙，请稍后重试");
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result);
+            }
         } catch (Exception e) {
             log.error("支付回调处理失败：{}", e.getMessage());
             result.put("success", false);
@@ -186,4 +261,12 @@ public class OrderStateMachineController {
         result.put("statusInfo", statusInfo);
         return ResponseEntity.ok(result);
     }
+
+    private Map<String, Object> batchResponse(Map<String, Object> result, String operation, OrderBatchTransitionResult batchResult) {
+        result.put("success", true);
+        result.put("message", String.format("%s完成：成功%d个，失败%d个",
+                operation, batchResult.getSuccessCount(), batchResult.getFailureCount()));
+        result.put("data", batchResult);
+        return result;
+    }
 }
@@ -172,6 +172,28 @@ public class OrderStatisticsController {
         }
     }
 
+    @GetMapping("/status-transitions/{minutes}")
+    @Operation(summary = "订单状态转入统计", description = "获取最近N分钟内转入各状态的次数（基于分钟汇总）")
+    public ResponseEntity<Map<String, Object>> getStatusTransitionStats(
+            @Parameter(description = "时间窗口（分钟）", example = "60") @PathVariable int minutes) {
+
+        Map<String, Object> result = new HashMap<>();
+        try {
+            Map<String, Long> transitions = orderStatisticsService.getStatusTransitionStats(minutes);
+            result.put("success", true);
+            result.put("message", "状态转入统计获取成功");
+            result.put("timeWindow", minutes + "分钟");
+            result.put("transitions", transitions);
+
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("获取状态转入统计失败：{}", e.getMessage());
+            result.put("success", false);
+            result.put("message", "获取状态转入统计失败：" + e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+    }
+
     @GetMapping("/dashboard")
     @Operation(summary = "统计仪表盘", description = "获取订单统计的综合仪表盘数据")
     public ResponseEntity<Map<String, Object>> getStatsDashboard() {
@@ -0,0 +1,48 @@
+package com.cloudDemo.orderservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Data
+@Schema(description = "批量库存操作请求DTO")
+public class InventoryBatchOperationRequest {
+
+    @Valid
+    @NotEmpty(message = "商品列表不能为空")
+    @Size(max = 100, message = "单次最多操作100个商品")
+    @Schema(description = "商品及数量列表（同一商品出现多次时数量合并）", required = true)
+    private List<InventoryOperationRequest> items;
+
+    @Schema(description = "关联订单号（批量预扣时可选，开启预扣有效期时登记到各商品的预扣记录）", example = "ORD202501010001")
+    private String orderNo;
+
+    /**
+     * 合并重复商品，按商品ID排序
+     */
+    public Map<String, Integer> toQuantityMap() {
+        Map<String, Integer> quantities = new TreeMap<>();
+        for (InventoryOperationRequest item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * 各商品的预扣记录ID（开启预扣有效期时用于批量确认或释放）
+     */
+    public List<String> toReservationIds() {
+        List<String> reservationIds = new ArrayList<>(items.size());
+        for (InventoryOperationRequest item : items) {
+            reservationIds.add(item.getReservationId());
+        }
+        return reservationIds;
+    }
+}
@@ -18,4 +18,10 @@ public class InventoryOperationRequest {
     @Min(value = 1, message = "操作数量必须大于0")
     @Schema(description = "操作数量", example = "10", required = true)
     private Integer quantity;
+
+    @Schema(description = "预扣记录ID（确认/释放时传入，开启预扣有效期后由预扣接口返回）", example = "5f0c2a4e9b6d4c1e8a7b3d2f1e0c9b8a")
+    private String reservationId;
+
+    @Schema(description = "关联订单号（预扣时可选）", example = "ORD202501010001")
+    private String orderNo;
 }
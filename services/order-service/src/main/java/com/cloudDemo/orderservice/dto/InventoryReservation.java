@@ -0,0 +1,29 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 库存预扣记录（保存在Redis中，到期未确认或释放时由清理任务自动释放）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryReservation {
+
+    // 预扣记录ID
+    private String reservationId;
+
+    // 商品ID
+    private String productId;
+
+    // 预扣数量
+    private int quantity;
+
+    // 关联订单号（可为空）
+    private String orderNo;
+
+    // 到期时间（毫秒时间戳）
+    private long deadline;
+}
@@ -0,0 +1,26 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个商品的库存增量
+ * 用于批量回写 product_inventory
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryStockDelta {
+
+    private String productId;
+
+    // 可用库存增量
+    private int availableDelta;
+
+    // 预扣库存增量
+    private int reservedDelta;
+
+    // 已售库存增量
+    private int soldDelta;
+}
@@ -0,0 +1,22 @@
+package com.cloudDemo.orderservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量订单状态转换请求DTO
+ */
+@Data
+@Schema(description = "批量订单状态转换请求")
+public class OrderBatchTransitionRequest {
+
+    @NotEmpty(message = "订单号列表不能为空")
+    @Schema(description = "订单号列表（重复的订单号只处理一次）", required = true)
+    private List<String> orderNos;
+
+    @Schema(description = "取消原因（仅批量取消使用）", example = "仓库缺货")
+    private String reason;
+}
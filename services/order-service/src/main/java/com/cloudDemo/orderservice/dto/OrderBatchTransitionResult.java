@@ -0,0 +1,68 @@
+package com.cloudDemo.orderservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量订单状态转换结果，每个订单单独给出成功或失败原因
+ */
+@Data
+@Schema(description = "批量订单状态转换结果")
+public class OrderBatchTransitionResult {
+
+    @Schema(description = "目标状态")
+    private String targetStatus;
+
+    @Schema(description = "订单总数（去重后）")
+    private int total;
+
+    @Schema(description = "成功数量")
+    private int successCount;
+
+    @Schema(description = "失败数量")
+    private int failureCount;
+
+    @Schema(description = "耗时（毫秒）")
+    private long elapsedMs;
+
+    @Schema(description = "每个订单的处理结果")
+    private List<Item> results = new ArrayList<>();
+
+    public OrderBatchTransitionResult(String targetStatus, int total) {
+        this.targetStatus = targetStatus;
+        this.total = total;
+    }
+
+    public void add(Item item) {
+        results.add(item);
+        if (item.isSuccess()) {
+            successCount++;
+        } else {
+            failureCount++;
+        }
+    }
+
+    /**
+     * 单个订单的处理结果
+     */
+    @Data
+    public static class Item {
+        private String orderNo;
+        private boolean success;
+        // 转换前的状态码（与 OrderStatus 的状态码一致），订单不存在时为空
+        private String fromStatus;
+        private String message;
+        // 失败原因是临时性的（如数据库异常），可以重试
+        private boolean retryable;
+
+        public Item(String orderNo, boolean success, String fromStatus, String message) {
+            this.orderNo = orderNo;
+            this.success = success;
+            this.fromStatus = fromStatus;
+            this.message = message;
+        }
+    }
+}
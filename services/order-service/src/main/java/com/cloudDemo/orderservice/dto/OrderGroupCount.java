@@ -0,0 +1,14 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.Data;
+
+/**
+ * 按某一维度分组的订单数（状态、小时等）
+ */
+@Data
+public class OrderGroupCount {
+
+    private String groupKey;
+
+    private long orderCount;
+}
@@ -0,0 +1,33 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 时间窗口内分钟汇总的合并结果
+ */
+@Data
+public class OrderRollupSummary {
+
+    // 新建订单数
+    private long orderCount;
+
+    // 订单总金额
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    // 最大单笔金额，没有订单时为空
+    private BigDecimal maxAmount;
+
+    // 最小单笔金额，没有订单时为空
+    private BigDecimal minAmount;
+
+    // 各状态的转入次数（新建订单计入待支付）
+    private Map<String, Long> statusTransitions = new LinkedHashMap<>();
+
+    // 每小时新建订单数，键为整点时间
+    private Map<LocalDateTime, Long> hourlyOrderCounts = new LinkedHashMap<>();
+}
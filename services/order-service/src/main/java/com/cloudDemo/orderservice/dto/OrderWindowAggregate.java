@@ -0,0 +1,25 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 时间窗口内订单的聚合结果（数据库 GROUP BY 前的整体聚合）
+ */
+@Data
+public class OrderWindowAggregate {
+
+    private long orderCount;
+
+    // 没有订单时为0
+    private BigDecimal totalAmount;
+
+    // 没有订单时为空
+    private BigDecimal maxAmount;
+
+    // 没有订单时为空
+    private BigDecimal minAmount;
+
+    private long uniqueUsers;
+}
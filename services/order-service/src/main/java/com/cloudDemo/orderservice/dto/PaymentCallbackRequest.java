@@ -13,6 +13,9 @@ public class PaymentCallbackRequest {
     @Schema(description = "订单号", example = "ORDER-20250729001")
     private String orderNo;
 
+    @Schema(description = "支付流水号（同一订单号+流水号的重复回调只处理一次）", example = "PAY-20250729001")
+    private String paymentId;
+
     @Schema(description = "支付结果 (SUCCESS/FAILED)", example = "SUCCESS")
     private String paymentResult;
 }
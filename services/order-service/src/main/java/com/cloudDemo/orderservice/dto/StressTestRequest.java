@@ -1,6 +1,7 @@
 package com.cloudDemo.orderservice.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -16,11 +17,27 @@ public class StressTestRequest {
 
     @NotNull(message = "线程数不能为空")
     @Min(value = 1, message = "线程数必须大于0")
-    @Schema(description = "并发线程数", example = "5", required = true)
+    @Max(value = 2000, message = "线程数不能超过2000")
+    @Schema(description = "并发数（平台线程模式下实际线程数不超过 inventory.stress-test.max-platform-threads）", example = "5", required = true)
     private Integer threadCount;
 
     @NotNull(message = "每线程操作数不能为空")
     @Min(value = 1, message = "每线程操作数必须大于0")
     @Schema(description = "每线程扣减次数", example = "3", required = true)
     private Integer operationsPerThread;
+
+    @Min(value = 0, message = "预热操作数不能为负数")
+    @Schema(description = "每线程预热次数（不计入统计，同样会扣减库存）", example = "10")
+    private Integer warmupOperationsPerThread = 0;
+
+    @Min(value = 0, message = "目标速率不能为负数")
+    @Schema(description = "目标总速率（次/秒），为空或0时为闭环模式（每个线程上一次完成后立即发起下一次）", example = "500")
+    private Integer targetRate;
+
+    @Schema(description = "是否使用虚拟线程（需要Java 21+，不支持时自动改用平台线程）", example = "false")
+    private Boolean virtualThreads = false;
+
+    @Min(value = 1, message = "每次扣减数量必须大于0")
+    @Schema(description = "每次扣减数量", example = "1")
+    private Integer quantity = 1;
 }
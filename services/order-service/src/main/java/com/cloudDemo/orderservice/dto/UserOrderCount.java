@@ -0,0 +1,14 @@
+package com.cloudDemo.orderservice.dto;
+
+import lombok.Data;
+
+/**
+ * 用户的订单数
+ */
+@Data
+public class UserOrderCount {
+
+    private Long userId;
+
+    private int orderCount;
+}
@@ -0,0 +1,44 @@
+package com.cloudDemo.orderservice.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@TableName("order_status_outbox")
+@Schema(description = "订单状态变更事件")
+public class OrderStatusOutbox {
+
+    @TableId(type = IdType.AUTO)
+    @Schema(description = "事件ID", example = "1")
+    private Long id;
+
+    @TableField("order_no")
+    @Schema(description = "订单编号", example = "ORD20250801001")
+    private String orderNo;
+
+    @TableField("from_status")
+    @Schema(description = "变更前状态，可能为空", example = "PENDING")
+    private String fromStatus;
+
+    @TableField("to_status")
+    @Schema(description = "变更后状态", example = "PAID")
+    private String toStatus;
+
+    @TableField("create_time")
+    @Schema(description = "变更时间")
+    private LocalDateTime createTime;
+
+    public OrderStatusOutbox(String orderNo, String fromStatus, String toStatus) {
+        this.orderNo = orderNo;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+    }
+}
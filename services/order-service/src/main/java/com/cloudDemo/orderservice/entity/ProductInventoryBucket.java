@@ -0,0 +1,44 @@
+package com.cloudDemo.orderservice.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("product_inventory_bucket")
+@Schema(description = "商品库存分桶实体")
+public class ProductInventoryBucket {
+
+    @TableId(type = IdType.AUTO)
+    @Schema(description = "分桶ID", example = "1")
+    private Long id;
+
+    @TableField("product_id")
+    @Schema(description = "商品ID", example = "PROD-001")
+    private String productId;
+
+    @TableField("bucket_no")
+    @Schema(description = "桶序号", example = "0")
+    private Integer bucketNo;
+
+    @TableField("available_stock")
+    @Schema(description = "桶内可用库存", example = "120")
+    private Integer availableStock;
+
+    @TableField("reserved_stock")
+    @Schema(description = "桶内预扣库存", example = "10")
+    private Integer reservedStock;
+
+    @TableField("sold_stock")
+    @Schema(description = "桶内已售库存", example = "5")
+    private Integer soldStock;
+
+    @TableField("update_time")
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,36 @@
+package com.cloudDemo.orderservice.enums;
+
+import com.cloudDemo.orderservice.dto.InventoryStockDelta;
+import lombok.Getter;
+
+/**
+ * 库存操作类型
+ * 预扣：可用 -> 预扣；确认：预扣 -> 已售；释放：预扣 -> 可用
+ */
+@Getter
+public enum InventoryOperation {
+    RESERVE("库存预扣"),
+    CONFIRM("库存确认扣减"),
+    RELEASE("预扣库存释放");
+
+    private final String name;
+
+    InventoryOperation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 转换为库存增量
+     */
+    public InventoryStockDelta toDelta(String productId, int quantity) {
+        switch (this) {
+            case RESERVE:
+                return new InventoryStockDelta(productId, -quantity, quantity, 0);
+            case CONFIRM:
+                return new InventoryStockDelta(productId, 0, -quantity, quantity);
+            case RELEASE:
+            default:
+                return new InventoryStockDelta(productId, quantity, -quantity, 0);
+        }
+    }
+}
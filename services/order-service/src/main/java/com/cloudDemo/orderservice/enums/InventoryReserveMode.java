@@ -0,0 +1,23 @@
+package com.cloudDemo.orderservice.enums;
+
+import lombok.Getter;
+
+/**
+ * 库存预扣模式
+ * 通过配置项 inventory.reserve-mode 选择
+ */
+@Getter
+public enum InventoryReserveMode {
+    LOCK("分布式锁 + 乐观锁版本号", "Redisson锁保护下读取库存并按版本号更新数据库"),
+    REDIS_SCRIPT("Redis原子脚本", "库存计数器保存在Redis中，由Lua脚本原子校验并扣减，数据库异步批量回写"),
+    SHARDED("热点分桶", "可用库存拆分到N个子桶（Redis与数据库各一份），按线程哈希选桶，不足时尝试相邻桶"),
+    OPTIMISTIC("无锁乐观重试", "不加分布式锁，直接按版本号条件更新数据库，版本冲突时带随机抖动退避重试");
+
+    private final String name;
+    private final String description;
+
+    InventoryReserveMode(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+}
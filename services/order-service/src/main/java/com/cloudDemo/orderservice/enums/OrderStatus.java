@@ -2,10 +2,19 @@ package com.cloudDemo.orderservice.enums;
 
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * 订单状态枚举
  * 状态流转: PENDING -> PAID -> SHIPPED -> COMPLETED
  * 任何状态都可以转换为 CANCELLED
+ * 枚举声明顺序是状态流转的拓扑序（每次合法转换都指向更大的序号），序号可作为状态的单调版本号
  */
 @Getter
 public enum OrderStatus {
@@ -15,6 +24,30 @@ public enum OrderStatus {
     COMPLETED("COMPLETED", "已完成", "订单已完成"),
     CANCELLED("CANCELLED", "已取消", "订单已取消");
 
+    // 每个目标状态允许的前置状态（由 canTransitionTo 预先计算，避免每次状态变更时重复判断）
+    private static final Map<OrderStatus, Set<OrderStatus>> PREDECESSORS = new EnumMap<>(OrderStatus.class);
+    private static final Map<OrderStatus, List<String>> PREDECESSOR_CODES = new EnumMap<>(OrderStatus.class);
+
+    static {
+        for (OrderStatus target : values()) {
+            EnumSet<OrderStatus> from = EnumSet.noneOf(OrderStatus.class);
+            List<String> codes = new ArrayList<>();
+            for (OrderStatus source : values()) {
+                if (source.canTransitionTo(target)) {
+                    from.add(source);
+                    codes.add(source.getCode());
+                }
+            }
+            PREDECESSORS.put(target, Collections.unmodifiableSet(from));
+            PREDECESSOR_CODES.put(target, Collections.unmodifiableList(codes));
+            for (OrderStatus source : from) {
+                if (source.ordinal() >= target.ordinal()) {
+                    throw new IllegalStateException("订单状态声明顺序必须与状态流转方向一致：" + source + " -> " + target);
+                }
+            }
+        }
+    }
+
     private final String code;
     private final String name;
     private final String description;
@@ -66,6 +99,20 @@ public enum OrderStatus {
         }
     }
 
+    /**
+     * 可以转换到当前状态的所有前置状态
+     */
+    public Set<OrderStatus> getAllowedPredecessors() {
+        return PREDECESSORS.get(this);
+    }
+
+    /**
+     * 可以转换到当前状态的所有前置状态码（用于 status IN (...) 条件更新）
+     */
+    public List<String> getAllowedPredecessorCodes() {
+        return PREDECESSOR_CODES.get(this);
+    }
+
     /**
      * 获取下一个可能的状态
      */
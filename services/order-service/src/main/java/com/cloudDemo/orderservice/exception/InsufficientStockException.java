@@ -0,0 +1,11 @@
+package com.cloudDemo.orderservice.exception;
+
+/**
+ * 库存不足异常（可用库存或预扣库存不足以完成本次操作）
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
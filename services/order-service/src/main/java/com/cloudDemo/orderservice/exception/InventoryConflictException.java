@@ -0,0 +1,11 @@
+package com.cloudDemo.orderservice.exception;
+
+/**
+ * 库存并发更新冲突异常（版本号条件更新未命中且重试后仍失败）
+ */
+public class InventoryConflictException extends RuntimeException {
+
+    public InventoryConflictException(String message) {
+        super(message);
+    }
+}
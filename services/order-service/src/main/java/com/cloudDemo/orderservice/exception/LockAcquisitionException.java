@@ -0,0 +1,11 @@
+package com.cloudDemo.orderservice.exception;
+
+/**
+ * 分布式锁获取失败异常（在等待时间内未能获取到锁）
+ */
+public class LockAcquisitionException extends RuntimeException {
+
+    public LockAcquisitionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,32 @@
+package com.cloudDemo.orderservice.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 库存异步回写检查点（inventory_writebehind_checkpoint 表只有 id = 1 一行）
+ */
+@Mapper
+public interface InventoryWriteBehindCheckpointMapper {
+
+    /**
+     * 读取已回写的最大流水序号
+     */
+    @Select("SELECT last_seq FROM inventory_writebehind_checkpoint WHERE id = 1")
+    Long selectLastSeq();
+
+    /**
+     * 读取已回写的最大流水序号并锁定检查点行，需在回写事务中调用
+     */
+    @Select("SELECT last_seq FROM inventory_writebehind_checkpoint WHERE id = 1 FOR UPDATE")
+    Long selectLastSeqForUpdate();
+
+    /**
+     * 推进检查点（只增不减）
+     */
+    @Update("UPDATE inventory_writebehind_checkpoint SET last_seq = #{lastSeq} " +
+            "WHERE id = 1 AND last_seq < #{lastSeq}")
+    int updateLastSeq(@Param("lastSeq") long lastSeq);
+}
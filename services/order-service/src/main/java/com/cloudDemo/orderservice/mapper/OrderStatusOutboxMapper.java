@@ -0,0 +1,40 @@
+package com.cloudDemo.orderservice.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.cloudDemo.orderservice.entity.OrderStatusOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface OrderStatusOutboxMapper extends BaseMapper<OrderStatusOutbox> {
+
+    /**
+     * 批量写入状态变更事件（一条多值INSERT），create_time 由数据库生成
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_status_outbox (order_no, from_status, to_status) VALUES " +
+            "<foreach collection='events' item='e' separator=','>" +
+            "(#{e.orderNo}, #{e.fromStatus}, #{e.toStatus})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("events") List<OrderStatusOutbox> events);
+
+    /**
+     * 按ID顺序读取最早的一批事件
+     * 不使用"上次读到的ID"作为起点：ID在插入时分配、提交顺序可能不同，晚提交的小ID事件仍会被读到
+     */
+    @Select("SELECT id, order_no, from_status, to_status, create_time FROM order_status_outbox " +
+            "ORDER BY id LIMIT #{limit}")
+    List<OrderStatusOutbox> selectOldest(@Param("limit") int limit);
+
+    /**
+     * 按主键范围删除已投递的事件（批次ID连续时使用，范围内不会有未投递的事件）
+     */
+    @Delete("DELETE FROM order_status_outbox WHERE id BETWEEN #{firstId} AND #{lastId}")
+    int deleteRange(@Param("firstId") long firstId, @Param("lastId") long lastId);
+}
@@ -1,9 +1,69 @@
 package com.cloudDemo.orderservice.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.cloudDemo.orderservice.dto.OrderGroupCount;
+import com.cloudDemo.orderservice.dto.OrderWindowAggregate;
+import com.cloudDemo.orderservice.dto.UserOrderCount;
 import com.cloudDemo.orderservice.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface OrdersMapper extends BaseMapper<Orders> {
+
+    /**
+     * 流式读取全部待支付订单的订单号和创建时间（用于重启后恢复支付截止时间，按 idx_status_create_time 扫描）
+     * 游标需在事务（同一连接）内遍历并关闭
+     */
+    @Select("SELECT order_no, create_time FROM orders WHERE status = 'PENDING'")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<Orders> streamPendingOrders();
+
+    /**
+     * 时间窗口内订单数、金额合计/最大/最小和下单用户数（一行结果，按 idx_create_time 范围扫描）
+     *
+     * @param endTime 为空时不限制结束时间
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) AS order_count, COALESCE(SUM(total_amount), 0) AS total_amount, " +
+            "MAX(total_amount) AS max_amount, MIN(total_amount) AS min_amount, " +
+            "COUNT(DISTINCT user_id) AS unique_users " +
+            "FROM orders WHERE create_time &gt;= #{startTime}" +
+            "<if test='endTime != null'> AND create_time &lt;= #{endTime}</if>" +
+            "</script>")
+    OrderWindowAggregate aggregateWindow(@Param("startTime") LocalDateTime startTime,
+                                         @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 时间窗口内各状态的订单数，groupKey 为数据库中的状态值
+     */
+    @Select("SELECT status AS group_key, COUNT(*) AS order_count FROM orders " +
+            "WHERE create_time BETWEEN #{startTime} AND #{endTime} GROUP BY status")
+    List<OrderGroupCount> countByStatus(@Param("startTime") LocalDateTime startTime,
+                                        @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 时间窗口内每小时的订单数，groupKey 格式为 MM-dd HH:00（只读 idx_create_time，不回表）
+     */
+    @Select("SELECT DATE_FORMAT(create_time, '%m-%d %H:00') AS group_key, COUNT(*) AS order_count FROM orders " +
+            "WHERE create_time BETWEEN #{startTime} AND #{endTime} GROUP BY group_key")
+    List<OrderGroupCount> countByHour(@Param("startTime") LocalDateTime startTime,
+                                      @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 指定时间之后下单数不少于 minOrders 的用户，按订单数倒序取前 limit 个
+     */
+    @Select("SELECT user_id, COUNT(*) AS order_count FROM orders " +
+            "WHERE create_time >= #{startTime} GROUP BY user_id " +
+            "HAVING COUNT(*) >= #{minOrders} ORDER BY order_count DESC LIMIT #{limit}")
+    List<UserOrderCount> countByUser(@Param("startTime") LocalDateTime startTime,
+                                     @Param("minOrders") int minOrders,
+                                     @Param("limit") int limit);
 }
@@ -0,0 +1,61 @@
+package com.cloudDemo.orderservice.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.cloudDemo.orderservice.entity.ProductInventoryBucket;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface ProductInventoryBucketMapper extends BaseMapper<ProductInventoryBucket> {
+
+    /**
+     * 从指定桶预扣库存（条件更新，不依赖版本号）
+     *
+     * @return 更新行数，0表示该桶可用库存不足
+     */
+    @Update("UPDATE product_inventory_bucket SET " +
+            "available_stock = available_stock - #{quantity}, " +
+            "reserved_stock = reserved_stock + #{quantity} " +
+            "WHERE product_id = #{productId} AND bucket_no = #{bucketNo} " +
+            "AND available_stock >= #{quantity}")
+    int reserveFromBucket(@Param("productId") String productId,
+                          @Param("bucketNo") Integer bucketNo,
+                          @Param("quantity") Integer quantity);
+
+    /**
+     * 确认指定桶的预扣库存（预扣转为已售）
+     */
+    @Update("UPDATE product_inventory_bucket SET " +
+            "reserved_stock = reserved_stock - #{quantity}, " +
+            "sold_stock = sold_stock + #{quantity} " +
+            "WHERE product_id = #{productId} AND bucket_no = #{bucketNo} " +
+            "AND reserved_stock >= #{quantity}")
+    int confirmFromBucket(@Param("productId") String productId,
+                          @Param("bucketNo") Integer bucketNo,
+                          @Param("quantity") Integer quantity);
+
+    /**
+     * 释放指定桶的预扣库存
+     */
+    @Update("UPDATE product_inventory_bucket SET " +
+            "available_stock = available_stock + #{quantity}, " +
+            "reserved_stock = reserved_stock - #{quantity} " +
+            "WHERE product_id = #{productId} AND bucket_no = #{bucketNo} " +
+            "AND reserved_stock >= #{quantity}")
+    int releaseToBucket(@Param("productId") String productId,
+                        @Param("bucketNo") Integer bucketNo,
+                        @Param("quantity") Integer quantity);
+
+    /**
+     * 汇总商品所有桶的库存，bucketNo 返回桶数量；商品未分桶时返回null
+     */
+    @Select("SELECT product_id, COUNT(*) AS bucket_no, " +
+            "SUM(available_stock) AS available_stock, " +
+            "SUM(reserved_stock) AS reserved_stock, " +
+            "SUM(sold_stock) AS sold_stock " +
+            "FROM product_inventory_bucket WHERE product_id = #{productId} " +
+            "GROUP BY product_id")
+    ProductInventoryBucket sumBuckets(@Param("productId") String productId);
+}
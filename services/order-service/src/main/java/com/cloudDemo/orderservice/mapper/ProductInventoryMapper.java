@@ -1,10 +1,17 @@
 package com.cloudDemo.orderservice.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.cloudDemo.orderservice.dto.InventoryStockDelta;
 import com.cloudDemo.orderservice.entity.ProductInventory;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.util.List;
 
 @Mapper
 public interface ProductInventoryMapper extends BaseMapper<ProductInventory> {
@@ -28,6 +35,22 @@ public interface ProductInventoryMapper extends BaseMapper<ProductInventory> {
                                 @Param("quantity") Integer quantity,
                                 @Param("version") Integer version);
 
+    /**
+     * 按库存条件预扣（不校验版本号），用于合并后的批量预扣
+     *
+     * @param productId 商品ID
+     * @param quantity  合并后的扣减总数
+     * @return 更新行数
+     */
+    @Update("UPDATE product_inventory SET " +
+            "available_stock = available_stock - #{quantity}, " +
+            "reserved_stock = reserved_stock + #{quantity}, " +
+            "version = version + 1, " +
+            "update_time = NOW() " +
+            "WHERE product_id = #{productId} AND available_stock >= #{quantity}")
+    int reserveStockGuarded(@Param("productId") String productId,
+                            @Param("quantity") Integer quantity);
+
     /**
      * 确认库存扣减（从预扣转为已售）
      */
@@ -53,4 +76,69 @@ public interface ProductInventoryMapper extends BaseMapper<ProductInventory> {
     int releaseReservedStock(@Param("productId") String productId,
                              @Param("quantity") Integer quantity,
                              @Param("version") Integer version);
+
+    String AVAILABLE_DELTA_CASE = "CASE product_id " +
+            "<foreach collection='deltas' item='d'>WHEN #{d.productId} THEN #{d.availableDelta} </foreach>END";
+    String RESERVED_DELTA_CASE = "CASE product_id " +
+            "<foreach collection='deltas' item='d'>WHEN #{d.productId} THEN #{d.reservedDelta} </foreach>END";
+    String SOLD_DELTA_CASE = "CASE product_id " +
+            "<foreach collection='deltas' item='d'>WHEN #{d.productId} THEN #{d.soldDelta} </foreach>END";
+    String APPLY_DELTAS_SET = "UPDATE product_inventory SET " +
+            "available_stock = available_stock + " + AVAILABLE_DELTA_CASE + ", " +
+            "reserved_stock = reserved_stock + " + RESERVED_DELTA_CASE + ", " +
+            "sold_stock = sold_stock + " + SOLD_DELTA_CASE + ", " +
+            "version = version + 1, " +
+            "update_time = NOW() " +
+            "WHERE product_id IN " +
+            "<foreach collection='deltas' item='d' open='(' separator=',' close=')'>#{d.productId}</foreach>";
+
+    /**
+     * 批量应用库存增量（一条UPDATE覆盖多个商品）
+     * 用于REDIS_SCRIPT模式下的异步回写，增量已在Redis中校验过
+     *
+     * @param deltas 按商品聚合后的增量，商品ID不可重复
+     * @return 更新行数
+     */
+    @Update("<script>" + APPLY_DELTAS_SET + "</script>")
+    int applyStockDeltas(@Param("deltas") List<InventoryStockDelta> deltas);
+
+    /**
+     * 带条件的批量库存变更（一条UPDATE覆盖多个商品）
+     * 只有应用增量后可用库存与预扣库存都不为负的商品才会被更新，
+     * 调用方需在事务中比较更新行数与商品数量，不一致时回滚以保证全部成功或全部失败
+     *
+     * @param deltas 按商品聚合后的增量，商品ID不可重复
+     * @return 更新行数
+     */
+    @Update("<script>" + APPLY_DELTAS_SET + " " +
+            "AND available_stock + " + AVAILABLE_DELTA_CASE + " &gt;= 0 " +
+            "AND reserved_stock + " + RESERVED_DELTA_CASE + " &gt;= 0" +
+            "</script>")
+    int applyStockDeltasGuarded(@Param("deltas") List<InventoryStockDelta> deltas);
+
+    /**
+     * 用绝对值覆盖库存数量（异步回写遇到计数器重置流水时使用）
+     *
+     * @return 更新行数
+     */
+    @Update("UPDATE product_inventory SET " +
+            "available_stock = #{available}, " +
+            "reserved_stock = #{reserved}, " +
+            "sold_stock = #{sold}, " +
+            "version = version + 1, " +
+            "update_time = NOW() " +
+            "WHERE product_id = #{productId}")
+    int overwriteStock(@Param("productId") String productId,
+                       @Param("available") Integer available,
+                       @Param("reserved") Integer reserved,
+                       @Param("sold") Integer sold);
+
+    /**
+     * 流式读取全部库存记录（用于缓存预热）
+     * MySQL驱动在 fetchSize = Integer.MIN_VALUE 时逐行返回结果，不会把整张表加载到内存；
+     * 游标需在事务（同一连接）内遍历并关闭
+     */
+    @Select("SELECT * FROM product_inventory")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<ProductInventory> streamAll();
 }
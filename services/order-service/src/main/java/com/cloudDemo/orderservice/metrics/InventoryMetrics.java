@@ -0,0 +1,87 @@
+package com.cloudDemo.orderservice.metrics;
+
+import com.cloudDemo.orderservice.enums.InventoryOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 库存子系统监控指标
+ */
+@Component
+public class InventoryMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<InventoryOperation, Counter> optimisticConflictCounters = new EnumMap<>(InventoryOperation.class);
+    private final Map<InventoryOperation, Counter> optimisticRetryCounters = new EnumMap<>(InventoryOperation.class);
+    private final Map<InventoryOperation, Counter> optimisticExhaustedCounters = new EnumMap<>(InventoryOperation.class);
+
+    private DistributionSummary coalesceBatchSize;
+    private Counter soldOutRejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        // 每次合并提交包含的预扣请求数
+        coalesceBatchSize = DistributionSummary.builder("inventory.coalesce.batch.size")
+                .description("Number of reserve requests applied by one coalesced update")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+
+        // 因商品已售罄被直接拒绝的预扣请求数
+        soldOutRejectedCounter = Counter.builder("inventory.soldout.rejected")
+                .description("Number of reserve requests rejected by the sold-out index")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+
+        for (InventoryOperation operation : InventoryOperation.values()) {
+            // 版本号冲突次数（条件更新未命中且库存充足）
+            optimisticConflictCounters.put(operation, Counter.builder("inventory.optimistic.conflict")
+                    .description("Number of optimistic version conflicts on inventory updates")
+                    .tag("service", "order-service")
+                    .tag("operation", operation.name())
+                    .register(meterRegistry));
+
+            // 冲突后的重试次数
+            optimisticRetryCounters.put(operation, Counter.builder("inventory.optimistic.retry")
+                    .description("Number of retries after optimistic version conflicts")
+                    .tag("service", "order-service")
+                    .tag("operation", operation.name())
+                    .register(meterRegistry));
+
+            // 达到最大尝试次数仍失败的次数
+            optimisticExhaustedCounters.put(operation, Counter.builder("inventory.optimistic.exhausted")
+                    .description("Number of inventory updates that gave up after max attempts")
+                    .tag("service", "order-service")
+                    .tag("operation", operation.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    public void incrementOptimisticConflict(InventoryOperation operation) {
+        optimisticConflictCounters.get(operation).increment();
+    }
+
+    public void incrementOptimisticRetry(InventoryOperation operation) {
+        optimisticRetryCounters.get(operation).increment();
+    }
+
+    public void incrementOptimisticExhausted(InventoryOperation operation) {
+        optimisticExhaustedCounters.get(operation).increment();
+    }
+
+    public void recordCoalesceBatchSize(int size) {
+        coalesceBatchSize.record(size);
+    }
+
+    public void incrementSoldOutRejected() {
+        soldOutRejectedCounter.increment();
+    }
+}
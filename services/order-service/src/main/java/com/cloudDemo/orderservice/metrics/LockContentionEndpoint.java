@@ -0,0 +1,40 @@
+package com.cloudDemo.orderservice.metrics;
+
+import com.cloudDemo.orderservice.config.LockProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分布式锁竞争报告端点（只读）
+ * GET /actuator/lockcontention?top=20                  上一个统计窗口内等待时间最长的锁键
+ * GET /actuator/lockcontention?top=20&cumulative=true  进程启动以来累计等待时间最长的锁键
+ */
+@Component
+@Endpoint(id = "lockcontention")
+public class LockContentionEndpoint {
+
+    private static final int DEFAULT_TOP = 20;
+
+    @Autowired
+    private LockContentionProfiler contentionProfiler;
+    @Autowired
+    private LockProperties lockProperties;
+
+    @ReadOperation
+    public Map<String, Object> contention(@Nullable Integer top, @Nullable Boolean cumulative) {
+        int limit = top == null || top <= 0 ? DEFAULT_TOP : top;
+        boolean byTotal = Boolean.TRUE.equals(cumulative);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("waitingThreads", contentionProfiler.totalWaiting());
+        report.put("rankedBy", byTotal ? "totalWaitMs" : "windowWaitMs");
+        report.put("windowMs", lockProperties.getContentionWindowMs());
+        report.put("topKeys", contentionProfiler.topContended(limit, byTotal));
+        return report;
+    }
+}
@@ -0,0 +1,270 @@
+package com.cloudDemo.orderservice.metrics;
+
+import com.cloudDemo.orderservice.config.LockProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分布式锁竞争统计
+ * 按锁键记录获取延迟、持有时间、超时次数和排队深度，只保留竞争最激烈的有限个锁键：
+ * 采用 Space-Saving 算法，以累计等待时间作为权重，跟踪的锁键达到上限时淘汰权重最小的一个，
+ * 新锁键继承被淘汰者的权重作为误差上界，因此真正的热点锁键不会被频繁出现的冷门锁键挤掉。
+ * 累计统计从进程启动（或锁键开始被跟踪）时算起；另按固定窗口（distributed-lock.contention-window-ms）
+ * 滚动记录上一个完整窗口内的等待时间、获取次数和超时次数，用于查看最近的竞争热点。
+ * 按键前缀的直方图、超时次数和排队深度同时上报到 Micrometer（锁键本身不作为标签，避免时间序列过多）。
+ */
+@Component
+public class LockContentionProfiler {
+
+    private final Map<String, KeyStats> trackedKeys = new ConcurrentHashMap<>();
+    // 当前所有锁键上等待中的线程总数
+    private final AtomicInteger totalWaiting = new AtomicInteger();
+
+    @Autowired
+    private LockProperties lockProperties;
+    @Autowired
+    private LockMetrics lockMetrics;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("distributed.lock.queue.depth", totalWaiting, AtomicInteger::get)
+                .description("Number of threads currently waiting for a distributed lock")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+
+        Gauge.builder("distributed.lock.tracked.keys", trackedKeys, Map::size)
+                .description("Number of lock keys tracked by the contention profiler")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 开始等待锁，返回本次加锁的采样对象
+     */
+    public LockSample beginWait(String lockKey) {
+        KeyStats stats = track(lockKey);
+        int depth = stats.waiting.incrementAndGet();
+        stats.maxQueueDepth.accumulateAndGet(depth, Math::max);
+        totalWaiting.incrementAndGet();
+        return new LockSample(stats, System.nanoTime());
+    }
+
+    /**
+     * 竞争最激烈的锁键
+     *
+     * @param limit      返回数量
+     * @param cumulative true 按累计等待时间降序，false 按上一个窗口内的等待时间降序
+     */
+    public List<Map<String, Object>> topContended(int limit, boolean cumulative) {
+        List<KeyStats> snapshot = new ArrayList<>(trackedKeys.values());
+        Comparator<KeyStats> order = cumulative
+                ? Comparator.comparingLong(KeyStats::weight)
+                : Comparator.comparingLong((KeyStats stats) -> stats.windowWaitNanos);
+        snapshot.sort(order.reversed());
+
+        List<Map<String, Object>> report = new ArrayList<>(Math.min(limit, snapshot.size()));
+        for (KeyStats stats : snapshot.subList(0, Math.min(limit, snapshot.size()))) {
+            long acquisitions = stats.acquisitions.sum();
+            long waitSamples = acquisitions + stats.timeouts.sum();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("lockKey", stats.lockKey);
+            entry.put("acquisitions", acquisitions);
+            entry.put("timeouts", stats.timeouts.sum());
+            entry.put("totalWaitMs", toMillis(stats.waitNanos.sum()));
+            entry.put("avgWaitMs", waitSamples == 0 ? 0 : toMillis(stats.waitNanos.sum() / waitSamples));
+            entry.put("maxWaitMs", toMillis(stats.maxWaitNanos.get()));
+            entry.put("avgHoldMs", acquisitions == 0 ? 0 : toMillis(stats.holdNanos.sum() / acquisitions));
+            entry.put("maxHoldMs", toMillis(stats.maxHoldNanos.get()));
+            entry.put("queueDepth", stats.waiting.get());
+            entry.put("maxQueueDepth", stats.maxQueueDepth.get());
+            // 继承自被淘汰锁键的权重，累计等待时间最多被高估这么多
+            entry.put("errorMs", toMillis(stats.inheritedNanos));
+            entry.put("windowWaitMs", toMillis(stats.windowWaitNanos));
+            entry.put("windowAcquisitions", stats.windowAcquisitions);
+            entry.put("windowTimeouts", stats.windowTimeouts);
+            report.add(entry);
+        }
+        return report;
+    }
+
+    /**
+     * 当前等待中的线程总数
+     */
+    public int totalWaiting() {
+        return totalWaiting.get();
+    }
+
+    /**
+     * 滚动统计窗口：记录每个锁键在刚结束的窗口内的增量，只由调度线程执行
+     */
+    @Scheduled(fixedRateString = "${distributed-lock.contention-window-ms:60000}")
+    public void rollWindow() {
+        for (KeyStats stats : trackedKeys.values()) {
+            stats.rollWindow();
+        }
+    }
+
+    private KeyStats track(String lockKey) {
+        KeyStats stats = trackedKeys.get(lockKey);
+        if (stats != null) {
+            return stats;
+        }
+        synchronized (this) {
+            stats = trackedKeys.get(lockKey);
+            if (stats != null) {
+                return stats;
+            }
+            long inherited = 0;
+            if (trackedKeys.size() >= Math.max(1, lockProperties.getTopKCapacity())) {
+                KeyStats evicted = null;
+                for (KeyStats candidate : trackedKeys.values()) {
+                    if (evicted == null || candidate.weight() < evicted.weight()) {
+                        evicted = candidate;
+                    }
+                }
+                trackedKeys.remove(evicted.lockKey);
+                inherited = evicted.weight();
+            }
+            stats = new KeyStats(lockKey, inherited);
+            trackedKeys.put(lockKey, stats);
+            return stats;
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * 单个锁键的统计
+     */
+    private static final class KeyStats {
+        private final String lockKey;
+        private final long inheritedNanos;
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder holdNanos = new LongAdder();
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong maxHoldNanos = new AtomicLong();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        // 上一个完整窗口内的增量及窗口起点的累计值，只由调度线程写入
+        private volatile long windowWaitNanos;
+        private volatile long windowAcquisitions;
+        private volatile long windowTimeouts;
+        private long windowStartWaitNanos;
+        private long windowStartAcquisitions;
+        private long windowStartTimeouts;
+
+        private KeyStats(String lockKey, long inheritedNanos) {
+            this.lockKey = lockKey;
+            this.inheritedNanos = inheritedNanos;
+        }
+
+        private long weight() {
+            return inheritedNanos + waitNanos.sum();
+        }
+
+        private void rollWindow() {
+            long wait = waitNanos.sum();
+            long acquired = acquisitions.sum();
+            long timedOut = timeouts.sum();
+            windowWaitNanos = wait - windowStartWaitNanos;
+            windowAcquisitions = acquired - windowStartAcquisitions;
+            windowTimeouts = timedOut - windowStartTimeouts;
+            windowStartWaitNanos = wait;
+            windowStartAcquisitions = acquired;
+            windowStartTimeouts = timedOut;
+        }
+    }
+
+    /**
+     * 一次加锁过程的采样，由加锁线程独占使用
+     */
+    public final class LockSample {
+        private final KeyStats stats;
+        private final long waitStart;
+        private long acquiredAt;
+        private boolean waiting = true;
+
+        private LockSample(KeyStats stats, long waitStart) {
+            this.stats = stats;
+            this.waitStart = waitStart;
+        }
+
+        /**
+         * 获取到锁
+         *
+         * @return 等待时间（纳秒）
+         */
+        public long acquired() {
+            acquiredAt = System.nanoTime();
+            long waitNanos = acquiredAt - waitStart;
+            endWait(waitNanos);
+            stats.acquisitions.increment();
+            return waitNanos;
+        }
+
+        /**
+         * 等待超时
+         */
+        public void timedOut() {
+            if (!waiting) {
+                return;
+            }
+            endWait(System.nanoTime() - waitStart);
+            stats.timeouts.increment();
+            lockMetrics.incrementTimeout(stats.lockKey);
+        }
+
+        /**
+         * 释放锁（未获取到锁时只结束等待）
+         *
+         * @return 持有时间（纳秒），未获取到锁时返回0
+         */
+        public long released() {
+            if (waiting) {
+                // 被中断或加锁过程异常，不计入等待统计
+                waiting = false;
+                stats.waiting.decrementAndGet();
+                totalWaiting.decrementAndGet();
+                return 0;
+            }
+            if (acquiredAt == 0) {
+                return 0;
+            }
+            long holdNanos = System.nanoTime() - acquiredAt;
+            acquiredAt = 0;
+            stats.holdNanos.add(holdNanos);
+            stats.maxHoldNanos.accumulateAndGet(holdNanos, Math::max);
+            lockMetrics.recordHold(stats.lockKey, holdNanos);
+            return holdNanos;
+        }
+
+        private void endWait(long waitNanos) {
+            waiting = false;
+            stats.waiting.decrementAndGet();
+            totalWaiting.decrementAndGet();
+            stats.waitNanos.add(waitNanos);
+            stats.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            lockMetrics.recordWait(stats.lockKey, waitNanos);
+        }
+    }
+}
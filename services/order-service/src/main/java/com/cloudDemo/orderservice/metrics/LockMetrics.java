@@ -0,0 +1,72 @@
+package com.cloudDemo.orderservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式锁监控指标
+ * 按锁键前缀（最后一个冒号之前的部分，如 inventory:lock:）统计等待时间和持有时间直方图，
+ * 前缀数量有限，不会因商品ID等业务键产生过多时间序列。
+ */
+@Component
+public class LockMetrics {
+
+    private static final String OTHER_PREFIX = "other";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> holdTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> timeoutCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录获取锁的等待时间（本地排队 + 分布式锁）
+     */
+    public void recordWait(String lockKey, long nanos) {
+        waitTimers.computeIfAbsent(prefixOf(lockKey), prefix -> Timer.builder("distributed.lock.wait")
+                .description("Time spent waiting for the local stripe and the distributed lock")
+                .tag("service", "order-service")
+                .tag("prefix", prefix)
+                .publishPercentileHistogram()
+                .register(meterRegistry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录锁的持有时间
+     */
+    public void recordHold(String lockKey, long nanos) {
+        holdTimers.computeIfAbsent(prefixOf(lockKey), prefix -> Timer.builder("distributed.lock.hold")
+                .description("Time the distributed lock was held by the protected operation")
+                .tag("service", "order-service")
+                .tag("prefix", prefix)
+                .publishPercentileHistogram()
+                .register(meterRegistry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录获取锁超时
+     */
+    public void incrementTimeout(String lockKey) {
+        timeoutCounters.computeIfAbsent(prefixOf(lockKey), prefix -> Counter.builder("distributed.lock.timeout")
+                .description("Number of lock acquisitions that timed out")
+                .tag("service", "order-service")
+                .tag("prefix", prefix)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 锁键前缀：最后一个冒号及之前的部分
+     */
+    public static String prefixOf(String lockKey) {
+        int index = lockKey.lastIndexOf(':');
+        return index < 0 ? OTHER_PREFIX : lockKey.substring(0, index + 1);
+    }
+}
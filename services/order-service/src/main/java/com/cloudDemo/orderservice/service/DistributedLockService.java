@@ -1,23 +1,50 @@
 package com.cloudDemo.orderservice.service;
 
+import com.cloudDemo.orderservice.exception.LockAcquisitionException;
+import com.cloudDemo.orderservice.config.LockProperties;
+import com.cloudDemo.orderservice.metrics.LockContentionProfiler;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class DistributedLockService {
 
+    // 本地分段锁数量（2的幂），不同锁键落在同一分段的概率随数量增加而降低
+    private static final int LOCAL_LOCK_STRIPES = 1024;
+
+    private final ReentrantLock[] localLocks = new ReentrantLock[LOCAL_LOCK_STRIPES];
+    // 加锁次数，用于按比例采样输出INFO日志
+    private final AtomicLong acquireCount = new AtomicLong();
+
     @Autowired
     private RedissonClient redissonClient;
+    @Autowired
+    private LockContentionProfiler contentionProfiler;
+    @Autowired
+    private LockProperties lockProperties;
+
+    public DistributedLockService() {
+        for (int i = 0; i < LOCAL_LOCK_STRIPES; i++) {
+            localLocks[i] = new ReentrantLock();
+        }
+    }
 
     /**
      * 执行带分布式锁的操作
+     * 先获取本地分段锁，同一JVM内同一把锁同一时刻只有一个线程向Redis竞争，其余线程在本地排队；
+     * 本地排队与分布式锁共用等待时间，释放时先释放分布式锁再释放本地锁
      *
      * @param lockKey   锁的键
      * @param waitTime  等待时间（秒）
@@ -26,16 +53,34 @@ public class DistributedLockService {
      * @return 操作结果
      */
     public <T> T executeWithLock(String lockKey, long waitTime, long leaseTime, Supplier<T> supplier) {
+        ReentrantLock localLock = localLockFor(lockKey);
         RLock lock = redissonClient.getLock(lockKey);
+        LockContentionProfiler.LockSample sample = contentionProfiler.beginWait(lockKey);
+        boolean localAcquired = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitTime);
         try {
-            // 尝试获取锁
-            boolean acquired = lock.tryLock(waitTime, leaseTime, TimeUnit.SECONDS);
-            if (!acquired) {
+            // 本地排队
+            localAcquired = localLock.tryLock(waitTime, TimeUnit.SECONDS);
+            if (!localAcquired) {
+                sample.timedOut();
+                log.warn("本地排队等待锁超时，锁键: {}", lockKey);
+                throw new LockAcquisitionException("系统繁忙，请稍后重试");
+            }
+
+            // 尝试获取锁（使用本地排队后剩余的等待时间）
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime()));
+            if (!lock.tryLock(remainingMillis, TimeUnit.SECONDS.toMillis(leaseTime), TimeUnit.MILLISECONDS)) {
+                sample.timedOut();
                 log.warn("获取分布式锁失败，锁键: {}", lockKey);
-                throw new RuntimeException("系统繁忙，请稍后重试");
+                throw new LockAcquisitionException("系统繁忙，请稍后重试");
             }
 
-            log.info("成功获取分布式锁，锁键: {}", lockKey);
+            long waitNanos = sample.acquired();
+            if (isSampled()) {
+                log.info("成功获取分布式锁（采样），锁键: {}, 等待: {}ms", lockKey, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            } else {
+                log.debug("成功获取分布式锁，锁键: {}", lockKey);
+            }
             // 执行业务操作
             return supplier.get();
 
@@ -45,12 +90,16 @@ public class DistributedLockService {
             throw new RuntimeException("操作被中断");
         } catch (Exception e) {
             log.error("执行分布式锁操作失败，锁键: {}", lockKey, e);
-            throw new RuntimeException("操作执行失败: " + e.getMessage());
+            throw new RuntimeException("操作执行失败: " + e.getMessage(), e);
         } finally {
             // 释放锁
-            if (lock.isHeldByCurrentThread()) {
+            if (localAcquired && lock.isHeldByCurrentThread()) {
                 lock.unlock();
-                log.info("释放分布式锁，锁键: {}", lockKey);
+                log.debug("释放分布式锁，锁键: {}", lockKey);
+            }
+            sample.released();
+            if (localAcquired) {
+                localLock.unlock();
             }
         }
     }
@@ -72,6 +121,129 @@ public class DistributedLockService {
         });
     }
 
+    /**
+     * 执行需要同时持有多把分布式锁的操作
+     * 锁键去重后按字典序依次加锁，所有调用方加锁顺序一致，避免相互等待造成死锁
+     *
+     * @param lockKeys  锁的键集合
+     * @param waitTime  每把锁的等待时间（秒）
+     * @param leaseTime 锁持有时间（秒）
+     * @param supplier  需要执行的操作
+     * @return 操作结果
+     */
+    public <T> T executeWithLocks(Collection<String> lockKeys, long waitTime, long leaseTime, Supplier<T> supplier) {
+        List<String> orderedKeys = lockKeys.stream().distinct().sorted().toList();
+        // 不同的锁键可能落在同一个本地分段上，本地分段按下标顺序加锁，避免与其他多锁调用交叉等待
+        List<ReentrantLock> orderedLocalLocks = orderedKeys.stream()
+                .mapToInt(this::stripeIndex).distinct().sorted()
+                .mapToObj(index -> localLocks[index]).toList();
+        List<ReentrantLock> acquiredLocalLocks = new ArrayList<>(orderedLocalLocks.size());
+        List<RLock> acquiredLocks = new ArrayList<>(orderedKeys.size());
+        List<LockContentionProfiler.LockSample> samples = new ArrayList<>(orderedKeys.size());
+        for (String lockKey : orderedKeys) {
+            samples.add(contentionProfiler.beginWait(lockKey));
+        }
+        try {
+            for (ReentrantLock localLock : orderedLocalLocks) {
+                if (!localLock.tryLock(waitTime, TimeUnit.SECONDS)) {
+                    samples.forEach(LockContentionProfiler.LockSample::timedOut);
+                    log.warn("本地排队等待锁超时，锁键: {}", orderedKeys);
+                    throw new LockAcquisitionException("系统繁忙，请稍后重试");
+                }
+                acquiredLocalLocks.add(localLock);
+            }
+
+            for (int i = 0; i < orderedKeys.size(); i++) {
+                String lockKey = orderedKeys.get(i);
+                RLock lock = redissonClient.getLock(lockKey);
+                if (!lock.tryLock(waitTime, leaseTime, TimeUnit.SECONDS)) {
+                    samples.get(i).timedOut();
+                    log.warn("获取分布式锁失败，锁键: {}", lockKey);
+                    throw new LockAcquisitionException("系统繁忙，请稍后重试");
+                }
+                samples.get(i).acquired();
+                acquiredLocks.add(lock);
+            }
+
+            if (isSampled()) {
+                log.info("成功获取{}把分布式锁（采样），锁键: {}", orderedKeys.size(), orderedKeys);
+            } else {
+                log.debug("成功获取{}把分布式锁，锁键: {}", orderedKeys.size(), orderedKeys);
+            }
+            return supplier.get();
+
+        } catch (InterruptedException e) {
+            log.error("获取分布式锁被中断，锁键: {}", orderedKeys, e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("操作被中断");
+        } catch (Exception e) {
+            log.error("执行分布式锁操作失败，锁键: {}", orderedKeys, e);
+            throw new RuntimeException("操作执行失败: " + e.getMessage(), e);
+        } finally {
+            // 按加锁的相反顺序释放
+            for (int i = acquiredLocks.size() - 1; i >= 0; i--) {
+                RLock lock = acquiredLocks.get(i);
+                if (lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                }
+            }
+            samples.forEach(LockContentionProfiler.LockSample::released);
+            for (int i = acquiredLocalLocks.size() - 1; i >= 0; i--) {
+                acquiredLocalLocks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * 多锁版本，使用默认超时时间
+     */
+    public <T> T executeWithLocks(Collection<String> lockKeys, Supplier<T> supplier) {
+        return executeWithLocks(lockKeys, 10, 30, supplier);
+    }
+
+    /**
+     * 非阻塞地尝试加锁执行，锁被占用时直接返回
+     * 适用于多实例间只需一个实例执行的后台任务
+     *
+     * @param lockKey   锁的键
+     * @param leaseTime 锁持有时间（秒）
+     * @param runnable  需要执行的操作
+     * @return 是否获取到锁并执行
+     */
+    public boolean tryRunWithLock(String lockKey, long leaseTime, Runnable runnable) {
+        RLock lock = redissonClient.getLock(lockKey);
+        boolean acquired = false;
+        try {
+            acquired = lock.tryLock(0, leaseTime, TimeUnit.SECONDS);
+            if (!acquired) {
+                return false;
+            }
+            runnable.run();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (acquired && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean isSampled() {
+        int rate = lockProperties.getLogSampleRate();
+        return rate > 0 && acquireCount.incrementAndGet() % rate == 0;
+    }
+
+    private ReentrantLock localLockFor(String lockKey) {
+        return localLocks[stripeIndex(lockKey)];
+    }
+
+    private int stripeIndex(String lockKey) {
+        int hash = lockKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCAL_LOCK_STRIPES - 1);
+    }
+
     /**
      * 生成库存锁的键
      */
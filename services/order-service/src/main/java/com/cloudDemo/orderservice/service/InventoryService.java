@@ -1,38 +1,283 @@
 package com.cloudDemo.orderservice.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.InventoryReservation;
+import com.cloudDemo.orderservice.dto.InventoryStockDelta;
 import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.enums.InventoryOperation;
+import com.cloudDemo.orderservice.enums.InventoryReserveMode;
+import com.cloudDemo.orderservice.exception.InsufficientStockException;
+import com.cloudDemo.orderservice.exception.InventoryConflictException;
 import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import com.cloudDemo.orderservice.metrics.InventoryMetrics;
+import com.cloudDemo.orderservice.service.inventory.InventoryBucketService;
+import com.cloudDemo.orderservice.service.inventory.InventoryLocalCache;
+import com.cloudDemo.orderservice.service.inventory.InventoryOptimisticService;
+import com.cloudDemo.orderservice.service.inventory.InventoryReservationStore;
+import com.cloudDemo.orderservice.service.inventory.InventoryReserveCoalescer;
+import com.cloudDemo.orderservice.service.inventory.InventorySoldOutIndex;
+import com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService;
+import com.cloudDemo.orderservice.util.SingleFlight;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class InventoryService {
 
-    private static final String INVENTORY_CACHE_KEY = "inventory:";
-    private static final long CACHE_EXPIRE_TIME = 300; // 5分钟缓存
+    public static final String INVENTORY_CACHE_KEY = "inventory:";
+    public static final long CACHE_EXPIRE_TIME = 300; // 5分钟缓存
+
+    /**
+     * 按版本号写入库存缓存：缓存中已有相同或更新的版本时不覆盖，乱序完成的旧刷新不会覆盖新数据
+     * KEYS[1] 缓存键；ARGV: 序列化后的库存记录, 版本号, 过期秒数。
+     * 缓存值带有Jackson类型信息（["类名", {...}]），解析失败时直接覆盖
+     */
+    private static final RedisScript<Long> CACHE_IF_NEWER_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1])\n" +
+                    "if current then\n" +
+                    "  local ok, cached = pcall(cjson.decode, current)\n" +
+                    "  if ok and type(cached) == 'table' then\n" +
+                    "    if type(cached[2]) == 'table' then cached = cached[2] end\n" +
+                    "    local version = tonumber(cached['version'])\n" +
+                    "    if version and version >= tonumber(ARGV[2]) then return 0 end\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3])\n" +
+                    "return 1",
+            Long.class);
+    private final SingleFlight<String, ProductInventory> inventoryLoader = new SingleFlight<>();
     @Autowired
     private ProductInventoryMapper inventoryMapper;
     @Autowired
     private DistributedLockService lockService;
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private InventoryStockScriptService stockScriptService;
+    @Autowired
+    private InventoryBucketService bucketService;
+    @Autowired
+    private InventoryLocalCache localCache;
+    @Autowired
+    private InventoryOptimisticService optimisticService;
+    @Autowired
+    private InventoryReserveCoalescer reserveCoalescer;
+    @Autowired
+    private InventorySoldOutIndex soldOutIndex;
+    @Autowired
+    private InventoryMetrics inventoryMetrics;
+    @Autowired
+    private InventoryReservationStore reservationStore;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 事务提交后的补偿操作使用独立事务，不参与已提交的外层事务
+    private TransactionTemplate compensationTransaction;
+
+    @PostConstruct
+    public void init() {
+        compensationTransaction = new TransactionTemplate(transactionManager);
+        compensationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     /**
-     * 预扣库存（分布式锁保护）
+     * 预扣库存（按配置的预扣模式执行）
+     * 开启预扣有效期时同样登记预扣记录（不关联订单），未确认或释放的到期自动归还
      *
      * @param productId 商品ID
      * @param quantity  扣减数量
      * @return 预扣是否成功
      */
     public boolean reserveStock(String productId, Integer quantity) {
+        if (inventoryProperties.getReservation().isEnabled()) {
+            reserveStockWithExpiry(productId, quantity, null);
+            return true;
+        }
+        return reserveStockNow(productId, quantity);
+    }
+
+    private boolean reserveStockNow(String productId, Integer quantity) {
+        // 已售罄的商品直接失败，不再获取锁、访问Redis或数据库
+        if (soldOutIndex.isSoldOut(productId)) {
+            inventoryMetrics.incrementSoldOutRejected();
+            throw new InsufficientStockException("库存预扣失败: 库存不足");
+        }
+        try {
+            return reserveStockByMode(productId, quantity, inventoryProperties.getReserveMode());
+        } catch (RuntimeException e) {
+            if (isStockShortage(e)) {
+                checkSoldOut(productId);
+            }
+            throw e;
+        }
+    }
+
+    private boolean reserveStockByMode(String productId, Integer quantity, InventoryReserveMode mode) {
+        if (inventoryProperties.getCoalesce().isEnabled()
+                && (mode == InventoryReserveMode.LOCK || mode == InventoryReserveMode.OPTIMISTIC)) {
+            return reserveStockCoalesced(productId, quantity, mode);
+        }
+        switch (mode) {
+            case REDIS_SCRIPT:
+                return reserveStockWithScript(productId, quantity);
+            case SHARDED:
+                return reserveStockWithBuckets(productId, quantity);
+            case OPTIMISTIC:
+                return reserveStockOptimistic(productId, quantity);
+            case LOCK:
+            default:
+                return reserveStockWithLock(productId, quantity);
+        }
+    }
+
+    /**
+     * 预扣库存（Redis原子脚本，数据库异步回写）
+     */
+    private boolean reserveStockWithScript(String productId, Integer quantity) {
+        try {
+            return stockScriptService.reserve(productId, quantity);
+        } catch (Exception e) {
+            log.error("库存预扣失败，商品: {}, 数量: {}", productId, quantity, e);
+            throw new RuntimeException("库存预扣失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 预扣库存（热点分桶，无商品级分布式锁）
+     */
+    private boolean reserveStockWithBuckets(String productId, Integer quantity) {
+        try {
+            return bucketService.reserve(productId, quantity);
+        } catch (Exception e) {
+            log.error("库存预扣失败，商品: {}, 数量: {}", productId, quantity, e);
+            throw new RuntimeException("库存预扣失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 预扣库存（无分布式锁，版本号条件更新 + 冲突退避重试）
+     */
+    private boolean reserveStockOptimistic(String productId, Integer quantity) {
+        try {
+            optimisticService.reserve(productId, quantity);
+            refreshInventoryCache(productId);
+            log.info("库存预扣成功，商品: {}, 数量: {}", productId, quantity);
+            return true;
+        } catch (Exception e) {
+            log.error("库存预扣失败，商品: {}, 数量: {}", productId, quantity, e);
+            throw new RuntimeException("库存预扣失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 预扣库存（同商品并发请求合并提交）
+     */
+    private boolean reserveStockCoalesced(String productId, Integer quantity, InventoryReserveMode mode) {
+        boolean success;
+        try {
+            success = reserveCoalescer.submit(productId, quantity,
+                    (id, quantities) -> reserveStockGroup(id, quantities, mode));
+        } catch (Exception e) {
+            log.error("库存预扣失败，商品: {}, 数量: {}", productId, quantity, e);
+            throw new RuntimeException("库存预扣失败: " + e.getMessage(), e);
+        }
+        if (!success) {
+            log.warn("库存不足，商品: {}, 需要: {}", productId, quantity);
+            throw new InsufficientStockException("库存预扣失败: 库存不足");
+        }
+        return true;
+    }
+
+    /**
+     * 一批同商品预扣请求的合并处理：LOCK模式整批只加一次锁，先尝试一条UPDATE扣减总数；
+     * 库存不足以满足全部请求时，按到达顺序分配剩余库存（放不下的请求跳过，后面数量更小的仍可成功）
+     */
+    private boolean[] reserveStockGroup(String productId, List<Integer> quantities, InventoryReserveMode mode) {
+        Supplier<boolean[]> allocate = () -> allocateReservations(productId, quantities);
+        boolean[] results = mode == InventoryReserveMode.LOCK
+                ? lockService.executeWithLock(lockService.getInventoryLockKey(productId), allocate)
+                : allocate.get();
+
+        int granted = 0;
+        for (boolean result : results) {
+            if (result) {
+                granted++;
+            }
+        }
+        if (granted > 0) {
+            refreshInventoryCache(productId);
+        }
+        log.info("合并预扣完成，商品: {}, 请求数: {}, 成功: {}", productId, quantities.size(), granted);
+        return results;
+    }
+
+    private boolean[] allocateReservations(String productId, List<Integer> quantities) {
+        boolean[] results = new boolean[quantities.size()];
+        int total = quantities.stream().mapToInt(Integer::intValue).sum();
+        if (inventoryMapper.reserveStockGuarded(productId, total) == 1) {
+            Arrays.fill(results, true);
+            return results;
+        }
+
+        // 其他实例可能同时修改库存，重新读取后再分配，最多尝试3次
+        for (int attempt = 0; attempt < 3; attempt++) {
+            ProductInventory inventory = getInventoryFromDB(productId);
+            if (inventory == null) {
+                log.warn("商品不存在: {}", productId);
+                throw new RuntimeException("商品不存在");
+            }
+
+            Arrays.fill(results, false);
+            int remaining = inventory.getAvailableStock();
+            int allocated = 0;
+            for (int i = 0; i < quantities.size(); i++) {
+                if (quantities.get(i) <= remaining) {
+                    results[i] = true;
+                    remaining -= quantities.get(i);
+                    allocated += quantities.get(i);
+                }
+            }
+            if (allocated == 0 || inventoryMapper.reserveStockGuarded(productId, allocated) == 1) {
+                return results;
+            }
+        }
+
+        Arrays.fill(results, false);
+        return results;
+    }
+
+    /**
+     * 预扣库存（分布式锁保护）
+     */
+    private boolean reserveStockWithLock(String productId, Integer quantity) {
         String lockKey = lockService.getInventoryLockKey(productId);
 
         return lockService.executeWithLock(lockKey, () -> {
@@ -44,11 +289,15 @@ public class InventoryService {
                     throw new RuntimeException("商品不存在");
                 }
 
-                // 2. 检查库存是否充足
+                // 2. 检查库存是否充足（缓存可能落后于数据库，不足时以数据库为准再确认一次）
                 if (inventory.getAvailableStock() < quantity) {
-                    log.warn("库存不足，商品: {}, 可用库存: {}, 需要: {}",
-                            productId, inventory.getAvailableStock(), quantity);
-                    throw new RuntimeException("库存不足");
+                    inventory = getInventoryFromDB(productId);
+                    if (inventory == null || inventory.getAvailableStock() < quantity) {
+                        log.warn("库存不足，商品: {}, 可用库存: {}, 需要: {}",
+                                productId, inventory == null ? 0 : inventory.getAvailableStock(), quantity);
+                        throw new InsufficientStockException("库存不足");
+                    }
+                    cacheInventory(inventory);
                 }
 
                 // 3. 使用乐观锁更新库存
@@ -57,18 +306,20 @@ public class InventoryService {
 
                 if (updateCount == 0) {
                     log.warn("库存更新失败，可能是并发冲突，商品: {}", productId);
-                    throw new RuntimeException("库存更新失败，请重试");
+                    // 缓存中的版本号已过期，刷新后下次请求即可成功
+                    refreshInventoryCache(productId);
+                    throw new InventoryConflictException("库存更新失败，请重试");
                 }
 
-                // 4. 清除缓存，确保数据一致性
-                clearInventoryCache(productId);
+                // 4. 用最新数据刷新缓存，确保数据一致性
+                refreshInventoryCache(productId);
 
                 log.info("库存预扣成功，商品: {}, 数量: {}", productId, quantity);
                 return true;
 
             } catch (Exception e) {
                 log.error("库存预扣失败，商品: {}, 数量: {}", productId, quantity, e);
-                throw new RuntimeException("库存预扣失败: " + e.getMessage());
+                throw new RuntimeException("库存预扣失败: " + e.getMessage(), e);
             }
         });
     }
@@ -82,6 +333,34 @@ public class InventoryService {
      */
     @Transactional
     public boolean confirmStockReduction(String productId, Integer quantity) {
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.REDIS_SCRIPT) {
+            try {
+                return stockScriptService.confirm(productId, quantity);
+            } catch (Exception e) {
+                log.error("库存确认扣减失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存确认失败: " + e.getMessage(), e);
+            }
+        }
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.SHARDED) {
+            try {
+                return bucketService.confirm(productId, quantity);
+            } catch (Exception e) {
+                log.error("库存确认扣减失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存确认失败: " + e.getMessage(), e);
+            }
+        }
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.OPTIMISTIC) {
+            try {
+                optimisticService.confirm(productId, quantity);
+                refreshInventoryCache(productId);
+                log.info("库存确认扣减成功，商品: {}, 数量: {}", productId, quantity);
+                return true;
+            } catch (Exception e) {
+                log.error("库存确认扣减失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存确认失败: " + e.getMessage(), e);
+            }
+        }
+
         String lockKey = lockService.getInventoryLockKey(productId);
 
         return lockService.executeWithLock(lockKey, () -> {
@@ -95,7 +374,7 @@ public class InventoryService {
                 if (inventory.getReservedStock() < quantity) {
                     log.warn("预扣库存不足，商品: {}, 预扣库存: {}, 需要确认: {}",
                             productId, inventory.getReservedStock(), quantity);
-                    throw new RuntimeException("预扣库存不足");
+                    throw new InsufficientStockException("预扣库存不足");
                 }
 
                 int updateCount = inventoryMapper.confirmStockReduction(
@@ -105,13 +384,13 @@ public class InventoryService {
                     throw new RuntimeException("库存确认失败，请重试");
                 }
 
-                clearInventoryCache(productId);
+                refreshInventoryCache(productId);
                 log.info("库存确认扣减成功，商品: {}, 数量: {}", productId, quantity);
                 return true;
 
             } catch (Exception e) {
                 log.error("库存确认扣减失败，商品: {}, 数量: {}", productId, quantity, e);
-                throw new RuntimeException("库存确认失败: " + e.getMessage());
+                throw new RuntimeException("库存确认失败: " + e.getMessage(), e);
             }
         });
     }
@@ -125,6 +404,41 @@ public class InventoryService {
      */
     @Transactional
     public boolean releaseStock(String productId, Integer quantity) {
+        boolean released = releaseStockByMode(productId, quantity);
+        // 事务提交后再清除售罄标记，避免回滚时其他请求提前绕过售罄检查
+        runAfterCommit(() -> soldOutIndex.markRestocked(productId));
+        return released;
+    }
+
+    private boolean releaseStockByMode(String productId, Integer quantity) {
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.REDIS_SCRIPT) {
+            try {
+                return stockScriptService.release(productId, quantity);
+            } catch (Exception e) {
+                log.error("预扣库存释放失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存释放失败: " + e.getMessage(), e);
+            }
+        }
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.SHARDED) {
+            try {
+                return bucketService.release(productId, quantity);
+            } catch (Exception e) {
+                log.error("预扣库存释放失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存释放失败: " + e.getMessage(), e);
+            }
+        }
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.OPTIMISTIC) {
+            try {
+                optimisticService.release(productId, quantity);
+                refreshInventoryCache(productId);
+                log.info("预扣库存释放成功，商品: {}, 数量: {}", productId, quantity);
+                return true;
+            } catch (Exception e) {
+                log.error("预扣库存释放失败，商品: {}, 数量: {}", productId, quantity, e);
+                throw new RuntimeException("库存释放失败: " + e.getMessage(), e);
+            }
+        }
+
         String lockKey = lockService.getInventoryLockKey(productId);
 
         return lockService.executeWithLock(lockKey, () -> {
@@ -141,22 +455,352 @@ public class InventoryService {
                     throw new RuntimeException("库存释放失败，请重试");
                 }
 
-                clearInventoryCache(productId);
+                refreshInventoryCache(productId);
                 log.info("预扣库存释放成功，商品: {}, 数量: {}", productId, quantity);
                 return true;
 
             } catch (Exception e) {
                 log.error("预扣库存释放失败，商品: {}, 数量: {}", productId, quantity, e);
-                throw new RuntimeException("库存释放失败: " + e.getMessage());
+                throw new RuntimeException("库存释放失败: " + e.getMessage(), e);
             }
         });
     }
 
     /**
-     * 查询库存信息（优先从缓存获取）
+     * 预扣库存并登记有效期，到期仍未确认或释放时由清理任务自动释放
+     *
+     * @param productId 商品ID
+     * @param quantity  扣减数量
+     * @param orderNo   关联订单号（可为空）
+     * @return 预扣记录
+     */
+    public InventoryReservation reserveStockWithExpiry(String productId, Integer quantity, String orderNo) {
+        reserveStockNow(productId, quantity);
+        try {
+            return reservationStore.register(productId, quantity, orderNo,
+                    inventoryProperties.getReservation().getTtlSeconds());
+        } catch (Exception e) {
+            log.error("预扣记录登记失败，归还已预扣库存，商品: {}, 数量: {}", productId, quantity, e);
+            releaseStock(productId, quantity);
+            throw new RuntimeException("库存预扣失败: 预扣记录登记失败", e);
+        }
+    }
+
+    /**
+     * 按预扣记录确认库存扣减（记录已过期被释放时失败）
+     *
+     * @param reservationId 预扣记录ID
+     * @return 确认是否成功
+     */
+    @Transactional
+    public boolean confirmReservation(String reservationId) {
+        InventoryReservation reservation = reservationStore.claim(reservationId);
+        if (reservation == null) {
+            log.warn("预扣记录不存在或已过期: {}", reservationId);
+            throw new RuntimeException("预扣记录不存在或已过期");
+        }
+        try {
+            return confirmStockReduction(reservation.getProductId(), reservation.getQuantity());
+        } catch (RuntimeException e) {
+            // 库存未变更，放回记录等待重试或到期释放
+            reservationStore.save(reservation);
+            throw e;
+        }
+    }
+
+    /**
+     * 按预扣记录释放库存（记录已过期被释放时视为成功）
+     *
+     * @param reservationId 预扣记录ID
+     * @return 释放是否成功
+     */
+    @Transactional
+    public boolean releaseReservation(String reservationId) {
+        InventoryReservation reservation = reservationStore.claim(reservationId);
+        if (reservation == null) {
+            log.info("预扣记录不存在或已被释放: {}", reservationId);
+            return true;
+        }
+        try {
+            return releaseStock(reservation.getProductId(), reservation.getQuantity());
+        } catch (RuntimeException e) {
+            reservationStore.save(reservation);
+            throw e;
+        }
+    }
+
+    /**
+     * 按预扣记录批量确认库存扣减，任一记录不存在或已过期时全部失败
+     *
+     * @param reservationIds 预扣记录ID
+     * @return 确认是否成功
+     */
+    @Transactional
+    public boolean confirmReservations(Collection<String> reservationIds) {
+        Set<String> ids = new LinkedHashSet<>(reservationIds);
+        List<InventoryReservation> claimed = claimReservations(ids);
+        if (claimed.size() < ids.size()) {
+            claimed.forEach(reservationStore::save);
+            log.warn("部分预扣记录不存在或已过期，记录: {}", ids);
+            throw new RuntimeException("预扣记录不存在或已过期");
+        }
+        try {
+            return confirmStockBatch(sumByProduct(claimed));
+        } catch (RuntimeException e) {
+            claimed.forEach(reservationStore::save);
+            throw e;
+        }
+    }
+
+    /**
+     * 按预扣记录批量释放库存（已过期被释放的记录跳过）
+     *
+     * @param reservationIds 预扣记录ID
+     * @return 释放是否成功
+     */
+    @Transactional
+    public boolean releaseReservations(Collection<String> reservationIds) {
+        List<InventoryReservation> claimed = claimReservations(new LinkedHashSet<>(reservationIds));
+        if (claimed.isEmpty()) {
+            log.info("预扣记录均不存在或已被释放: {}", reservationIds);
+            return true;
+        }
+        try {
+            return releaseStockBatch(sumByProduct(claimed));
+        } catch (RuntimeException e) {
+            claimed.forEach(reservationStore::save);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量预扣库存（购物车多商品），全部成功或全部失败
+     * 开启预扣有效期时同样为每个商品登记预扣记录（不关联订单）
+     *
+     * @param items 商品ID -> 数量
+     * @return 预扣是否成功
+     */
+    @Transactional
+    public boolean reserveStockBatch(Map<String, Integer> items) {
+        if (inventoryProperties.getReservation().isEnabled()) {
+            reserveStockBatchWithExpiry(items, null);
+            return true;
+        }
+        return reserveStockBatchNow(items);
+    }
+
+    /**
+     * 批量预扣库存并为每个商品登记有效期，全部成功或全部失败
+     * 先预扣库存，事务提交后再登记预扣记录：事务回滚或进程崩溃时不会留下指向未预扣库存的记录；
+     * 登记失败时归还本批全部库存并抛出异常
+     *
+     * @param items   商品ID -> 数量
+     * @param orderNo 关联订单号（可为空）
+     * @return 各商品的预扣记录
+     */
+    @Transactional
+    public List<InventoryReservation> reserveStockBatchWithExpiry(Map<String, Integer> items, String orderNo) {
+        reserveStockBatchNow(items);
+        long ttlSeconds = inventoryProperties.getReservation().getTtlSeconds();
+        List<InventoryReservation> reservations = new ArrayList<>(items.size());
+        items.forEach((productId, quantity) ->
+                reservations.add(reservationStore.create(productId, quantity, orderNo, ttlSeconds)));
+        runAfterCommit(() -> registerReservations(reservations));
+        return reservations;
+    }
+
+    /**
+     * 登记已预扣库存的预扣记录；任一条登记失败时撤回已登记的记录并在独立事务中归还库存，
+     * 撤回失败的记录保留（其库存确实已预扣，到期后由清理任务归还）
+     */
+    private void registerReservations(List<InventoryReservation> reservations) {
+        List<InventoryReservation> registered = new ArrayList<>(reservations.size());
+        Exception failure = null;
+        for (InventoryReservation reservation : reservations) {
+            try {
+                reservationStore.save(reservation);
+                registered.add(reservation);
+            } catch (Exception e) {
+                failure = e;
+                break;
+            }
+        }
+        if (failure == null) {
+            return;
+        }
+
+        log.error("预扣记录登记失败，归还本批已预扣库存，记录数: {}", reservations.size(), failure);
+        Map<String, Integer> toRelease = new TreeMap<>();
+        for (InventoryReservation reservation : reservations) {
+            boolean withdrawn = true;
+            if (registered.contains(reservation)) {
+                try {
+                    withdrawn = reservationStore.claim(reservation.getReservationId()) != null;
+                } catch (Exception e) {
+                    log.error("撤回预扣记录失败，到期后由清理任务归还，记录: {}", reservation, e);
+                    withdrawn = false;
+                }
+            }
+            if (withdrawn) {
+                toRelease.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+            }
+        }
+        if (!toRelease.isEmpty()) {
+            compensationTransaction.executeWithoutResult(status -> releaseStockBatch(toRelease));
+        }
+        throw new RuntimeException("库存预扣失败: 预扣记录登记失败", failure);
+    }
+
+    private boolean reserveStockBatchNow(Map<String, Integer> items) {
+        for (String productId : items.keySet()) {
+            if (soldOutIndex.isSoldOut(productId)) {
+                inventoryMetrics.incrementSoldOutRejected();
+                throw new InsufficientStockException("批量库存预扣失败: 商品已售罄 " + productId);
+            }
+        }
+        return applyStockBatch(items, InventoryOperation.RESERVE);
+    }
+
+    /**
+     * 批量确认库存扣减，全部成功或全部失败
+     *
+     * @param items 商品ID -> 数量
+     * @return 确认是否成功
+     */
+    @Transactional
+    public boolean confirmStockBatch(Map<String, Integer> items) {
+        return applyStockBatch(items, InventoryOperation.CONFIRM);
+    }
+
+    /**
+     * 批量释放预扣库存，全部成功或全部失败
+     *
+     * @param items 商品ID -> 数量
+     * @return 释放是否成功
+     */
+    @Transactional
+    public boolean releaseStockBatch(Map<String, Integer> items) {
+        boolean released = applyStockBatch(items, InventoryOperation.RELEASE);
+        List<String> productIds = new ArrayList<>(items.keySet());
+        runAfterCommit(() -> productIds.forEach(soldOutIndex::markRestocked));
+        return released;
+    }
+
+    /**
+     * 批量库存操作
+     * LOCK模式：按商品ID排序后依次加锁，一条带校验的多行UPDATE完成全部变更，命中行数不足时整体回滚；
+     * REDIS_SCRIPT模式：一次Lua脚本调用完成校验与变更；
+     * SHARDED模式：同一事务内逐个商品分桶扣减，失败时回滚数据库并清除已变更的桶计数器；
+     * OPTIMISTIC模式：带校验的多行UPDATE本身是原子的，不再加锁。
+     */
+    private boolean applyStockBatch(Map<String, Integer> items, InventoryOperation operation) {
+        Map<String, Integer> sortedItems = new TreeMap<>(items);
+        try {
+            switch (inventoryProperties.getReserveMode()) {
+                case REDIS_SCRIPT:
+                    return stockScriptService.moveBatch(sortedItems, operation);
+                case SHARDED:
+                    return applyStockBatchWithBuckets(sortedItems, operation);
+                case OPTIMISTIC:
+                    return applyStockDeltas(sortedItems, operation);
+                case LOCK:
+                default:
+                    return applyStockBatchWithLocks(sortedItems, operation);
+            }
+        } catch (Exception e) {
+            log.error("批量{}失败，商品: {}", operation.getName(), sortedItems, e);
+            throw new RuntimeException("批量" + operation.getName() + "失败: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean applyStockBatchWithLocks(Map<String, Integer> items, InventoryOperation operation) {
+        List<String> lockKeys = new ArrayList<>(items.size());
+        for (String productId : items.keySet()) {
+            lockKeys.add(lockService.getInventoryLockKey(productId));
+        }
+
+        return lockService.executeWithLocks(lockKeys, () -> applyStockDeltas(items, operation));
+    }
+
+    /**
+     * 一条带校验的多行UPDATE完成全部商品的变更，命中行数不足时抛出异常回滚事务
+     */
+    private boolean applyStockDeltas(Map<String, Integer> items, InventoryOperation operation) {
+        List<InventoryStockDelta> deltas = new ArrayList<>(items.size());
+        items.forEach((productId, quantity) -> deltas.add(operation.toDelta(productId, quantity)));
+
+        int updateCount = inventoryMapper.applyStockDeltasGuarded(deltas);
+        if (updateCount != deltas.size()) {
+            log.warn("批量{}部分商品库存不足，命中: {}/{}, 商品: {}",
+                    operation.getName(), updateCount, deltas.size(), items);
+            throw new InsufficientStockException("部分商品库存不足，批量操作已回滚");
+        }
+
+        refreshInventoryCache(items.keySet());
+
+        log.info("批量{}成功，商品: {}", operation.getName(), items);
+        return true;
+    }
+
+    private boolean applyStockBatchWithBuckets(Map<String, Integer> items, InventoryOperation operation) {
+        try {
+            for (Map.Entry<String, Integer> item : items.entrySet()) {
+                switch (operation) {
+                    case RESERVE:
+                        bucketService.reserve(item.getKey(), item.getValue());
+                        break;
+                    case CONFIRM:
+                        bucketService.confirm(item.getKey(), item.getValue());
+                        break;
+                    case RELEASE:
+                    default:
+                        bucketService.release(item.getKey(), item.getValue());
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // 数据库变更随事务回滚，Redis桶计数器需要重新加载
+            bucketService.evictCounters(items.keySet());
+            throw e;
+        }
+    }
+
+    /**
+     * 查询库存信息（本地缓存 -> Redis缓存 -> 数据库）
+     * REDIS_SCRIPT/SHARDED模式下本地缓存保存的是叠加实时计数后的结果，本地缓存命中时不再访问Redis或数据库；
+     * 这两种模式的计数变更不发送失效通知，本地缓存最多落后TTL时长
      */
     public ProductInventory getInventory(String productId) {
-        return getInventoryFromCacheOrDB(productId);
+        ProductInventory inventory = localCache.get(productId);
+        if (inventory != null) {
+            return inventory;
+        }
+        inventory = loadInventory(productId);
+        if (inventory != null) {
+            localCache.put(inventory);
+        }
+        return inventory;
+    }
+
+    /**
+     * 查询库存信息（Redis缓存 -> 数据库），按预扣模式叠加实时计数
+     */
+    private ProductInventory loadInventory(String productId) {
+        ProductInventory inventory = getInventoryFromCacheOrDB(productId);
+        if (inventory == null) {
+            return null;
+        }
+
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.REDIS_SCRIPT) {
+            // Redis计数器是实时值，数据库记录可能尚未回写（复制一份，避免修改合并加载时共享的对象）
+            inventory = copyOf(inventory);
+            stockScriptService.overlayCounters(inventory);
+        } else if (inventoryProperties.getReserveMode() == InventoryReserveMode.SHARDED) {
+            // 分桶后库存总量为各桶之和
+            inventory = copyOf(inventory);
+            bucketService.overlayBucketTotals(inventory);
+        }
+        return inventory;
     }
 
     /**
@@ -184,6 +828,13 @@ public class InventoryService {
 
         // 缓存新创建的库存信息
         cacheInventory(inventory);
+        if (inventoryProperties.getReserveMode() == InventoryReserveMode.REDIS_SCRIPT) {
+            // 计数器重置会追加重置流水，事务回滚时不能留下
+            runAfterCommit(() -> stockScriptService.resetCounters(inventory));
+        } else if (inventoryProperties.getReserveMode() == InventoryReserveMode.SHARDED) {
+            bucketService.splitInventory(productId, true);
+        }
+        runAfterCommit(() -> soldOutIndex.markRestocked(productId));
 
         log.info("初始化商品库存成功，商品: {}, 总库存: {}", productId, totalStock);
         return inventory;
@@ -234,24 +885,58 @@ public class InventoryService {
     //     }
     // }
 
+    /**
+     * 预扣因库存不足失败后，确认可用库存已为0时标记售罄
+     * （数量大于剩余库存导致的失败不代表售罄）
+     */
+    private void checkSoldOut(String productId) {
+        try {
+            // 不读本地缓存，避免按过期的库存误标售罄
+            ProductInventory inventory = loadInventory(productId);
+            if (inventory != null && inventory.getAvailableStock() != null && inventory.getAvailableStock() <= 0) {
+                soldOutIndex.markSoldOut(productId);
+            }
+        } catch (Exception e) {
+            log.warn("售罄检查失败，商品: {}", productId, e);
+        }
+    }
+
+    private boolean isStockShortage(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InsufficientStockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 从缓存或数据库获取库存信息
      */
     private ProductInventory getInventoryFromCacheOrDB(String productId) {
         // 先从缓存获取
-        String cacheKey = INVENTORY_CACHE_KEY + productId;
-        ProductInventory cached = (ProductInventory) redisTemplate.opsForValue().get(cacheKey);
+        ProductInventory cached = getInventoryFromCache(productId);
         if (cached != null) {
             return cached;
         }
 
-        // 缓存未命中，从数据库获取
-        ProductInventory inventory = getInventoryFromDB(productId);
-        if (inventory != null) {
-            cacheInventory(inventory);
-        }
+        // 缓存未命中，同一商品只由一个线程回源数据库，其余线程等待并共享结果
+        return inventoryLoader.load(productId, () -> {
+            // 排队期间可能已有其他线程完成加载
+            ProductInventory latest = getInventoryFromCache(productId);
+            if (latest != null) {
+                return latest;
+            }
+            ProductInventory inventory = getInventoryFromDB(productId);
+            if (inventory != null) {
+                cacheInventory(inventory);
+            }
+            return inventory;
+        });
+    }
 
-        return inventory;
+    private ProductInventory getInventoryFromCache(String productId) {
+        return (ProductInventory) redisTemplate.opsForValue().get(INVENTORY_CACHE_KEY + productId);
     }
 
     /**
@@ -263,18 +948,98 @@ public class InventoryService {
     }
 
     /**
-     * 缓存库存信息
+     * 缓存库存信息（只在版本号比缓存中的新时写入）
      */
     private void cacheInventory(ProductInventory inventory) {
         String cacheKey = INVENTORY_CACHE_KEY + inventory.getProductId();
-        redisTemplate.opsForValue().set(cacheKey, inventory, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
+        if (inventory.getVersion() == null) {
+            redisTemplate.opsForValue().set(cacheKey, inventory, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
+            return;
+        }
+        redisTemplate.execute(CACHE_IF_NEWER_SCRIPT, List.of(cacheKey),
+                inventory, inventory.getVersion(), CACHE_EXPIRE_TIME);
+    }
+
+    /**
+     * 库存变更后用数据库最新数据刷新缓存（写穿），而不是删除缓存让随后的读请求集中回源数据库
+     * 在事务中调用时等事务提交后再刷新，避免缓存写入未提交的数据；
+     * 并发的刷新可能乱序完成，写入时按版本号比较，只保留最新的记录
+     */
+    private void refreshInventoryCache(String productId) {
+        runAfterCommit(() -> {
+            try {
+                ProductInventory inventory = getInventoryFromDB(productId);
+                if (inventory != null) {
+                    cacheInventory(inventory);
+                } else {
+                    redisTemplate.delete(INVENTORY_CACHE_KEY + productId);
+                }
+            } catch (Exception e) {
+                log.warn("库存缓存刷新失败，改为删除缓存，商品: {}", productId, e);
+                redisTemplate.delete(INVENTORY_CACHE_KEY + productId);
+            }
+            // 清除本地缓存并广播到其他实例
+            localCache.invalidate(productId);
+        });
     }
 
     /**
-     * 清除库存缓存
+     * 批量刷新库存缓存，一次查询取回全部商品
      */
-    private void clearInventoryCache(String productId) {
-        String cacheKey = INVENTORY_CACHE_KEY + productId;
-        redisTemplate.delete(cacheKey);
+    private void refreshInventoryCache(Collection<String> productIds) {
+        List<String> ids = new ArrayList<>(productIds);
+        runAfterCommit(() -> {
+            try {
+                List<ProductInventory> inventories = inventoryMapper.selectList(
+                        new QueryWrapper<ProductInventory>().in("product_id", ids));
+                inventories.forEach(this::cacheInventory);
+            } catch (Exception e) {
+                log.warn("库存缓存批量刷新失败，改为删除缓存，商品: {}", ids, e);
+                List<String> cacheKeys = new ArrayList<>(ids.size());
+                for (String productId : ids) {
+                    cacheKeys.add(INVENTORY_CACHE_KEY + productId);
+                }
+                redisTemplate.delete(cacheKeys);
+            }
+            ids.forEach(localCache::invalidate);
+        });
+    }
+
+    private List<InventoryReservation> claimReservations(Collection<String> reservationIds) {
+        List<InventoryReservation> claimed = new ArrayList<>(reservationIds.size());
+        for (String reservationId : reservationIds) {
+            InventoryReservation reservation = reservationStore.claim(reservationId);
+            if (reservation != null) {
+                claimed.add(reservation);
+            }
+        }
+        return claimed;
+    }
+
+    private Map<String, Integer> sumByProduct(List<InventoryReservation> reservations) {
+        Map<String, Integer> quantities = new TreeMap<>();
+        for (InventoryReservation reservation : reservations) {
+            quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private ProductInventory copyOf(ProductInventory source) {
+        ProductInventory copy = new ProductInventory();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
     }
 }
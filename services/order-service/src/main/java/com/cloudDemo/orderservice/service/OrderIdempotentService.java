@@ -8,6 +8,8 @@ public interface OrderIdempotentService {
 
     /**
      * 检查订单创建的幂等性
+     * 一次原子操作完成：校验并消费令牌、占用幂等键（标记为处理中）；
+     * 重复请求直接返回"处理中"或已创建的订单号
      *
      * @param userId      用户ID
      * @param productId   商品ID
@@ -18,7 +20,7 @@ public interface OrderIdempotentService {
     IdempotentResult checkIdempotent(Long userId, String productId, String amount, String clientToken);
 
     /**
-     * 标记订单创建完成
+     * 标记订单创建完成（幂等键由处理中更新为订单号）
      *
      * @param userId      用户ID
      * @param productId   商品ID
@@ -28,6 +30,16 @@ public interface OrderIdempotentService {
      */
     void markOrderCreated(Long userId, String productId, String amount, String clientToken, String orderNo);
 
+    /**
+     * 订单创建失败时释放幂等键的占用并恢复令牌，客户端可使用同一令牌重试
+     *
+     * @param userId      用户ID
+     * @param productId   商品ID
+     * @param amount      订单金额
+     * @param clientToken 客户端提供的幂等令牌
+     */
+    void releaseIdempotent(Long userId, String productId, String amount, String clientToken);
+
     /**
      * 生成幂等令牌
      *
@@ -36,6 +48,11 @@ public interface OrderIdempotentService {
      */
     String generateIdempotentToken(Long userId);
 
+    /**
+     * 幂等令牌有效期（秒）
+     */
+    long getTokenExpireSeconds();
+
     /**
      * 清理过期的幂等记录
      */
@@ -46,6 +63,7 @@ public interface OrderIdempotentService {
      */
     class IdempotentResult {
         private boolean duplicate;
+        private boolean inProgress;
         private String existingOrderNo;
         private String message;
 
@@ -55,6 +73,11 @@ public interface OrderIdempotentService {
             this.message = message;
         }
 
+        public IdempotentResult(boolean duplicate, boolean inProgress, String existingOrderNo, String message) {
+            this(duplicate, existingOrderNo, message);
+            this.inProgress = inProgress;
+        }
+
         public static IdempotentResult success() {
             return new IdempotentResult(false, null, "幂等性检查通过");
         }
@@ -63,10 +86,18 @@ public interface OrderIdempotentService {
             return new IdempotentResult(true, orderNo, "重复下单，返回已存在订单");
         }
 
+        public static IdempotentResult inProgress() {
+            return new IdempotentResult(true, true, null, "相同请求正在处理中，请稍后查询");
+        }
+
         public boolean isDuplicate() {
             return duplicate;
         }
 
+        public boolean isInProgress() {
+            return inProgress;
+        }
+
         public String getExistingOrderNo() {
             return existingOrderNo;
         }
@@ -1,8 +1,13 @@
 package com.cloudDemo.orderservice.service;
 
+import com.cloudDemo.orderservice.dto.OrderBatchTransitionResult;
 import com.cloudDemo.orderservice.entity.Orders;
 import com.cloudDemo.orderservice.enums.OrderStatus;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
 /**
  * 订单状态机服务接口
  * 负责管理订单状态的转换和验证
@@ -13,7 +18,7 @@ public interface OrderStateMachineService {
      * 支付订单 - 将状态从PENDING转换为PAID
      *
      * @param orderNo 订单号
-     * @return 更新后的订单
+     * @return 仅包含订单号和新状态的订单对象
      */
     Orders payOrder(String orderNo);
 
@@ -22,7 +27,7 @@ public interface OrderStateMachineService {
      *
      * @param orderNo        订单号
      * @param trackingNumber 物流单号
-     * @return 更新后的订单
+     * @return 仅包含订单号和新状态的订单对象
      */
     Orders shipOrder(String orderNo, String trackingNumber);
 
@@ -30,7 +35,7 @@ public interface OrderStateMachineService {
      * 确认收货/完成订单 - 将状态从SHIPPED转换为COMPLETED
      *
      * @param orderNo 订单号
-     * @return 更新后的订单
+     * @return 仅包含订单号和新状态的订单对象
      */
     Orders completeOrder(String orderNo);
 
@@ -39,10 +44,54 @@ public interface OrderStateMachineService {
      *
      * @param orderNo 订单号
      * @param reason  取消原因
-     * @return 更新后的订单
+     * @return 仅包含订单号和新状态的订单对象
      */
     Orders cancelOrder(String orderNo, String reason);
 
+    /**
+     * 批量发货 - 将已支付的订单转换为SHIPPED
+     *
+     * @param orderNos 订单号列表
+     * @return 每个订单的处理结果
+     */
+    OrderBatchTransitionResult batchShipOrders(List<String> orderNos);
+
+    /**
+     * 批量完成订单 - 将已发货的订单转换为COMPLETED
+     *
+     * @param orderNos 订单号列表
+     * @return 每个订单的处理结果
+     */
+    OrderBatchTransitionResult batchCompleteOrders(List<String> orderNos);
+
+    /**
+     * 批量取消订单
+     *
+     * @param orderNos 订单号列表
+     * @param reason   取消原因
+     * @return 每个订单的处理结果
+     */
+    OrderBatchTransitionResult batchCancelOrders(List<String> orderNos, String reason);
+
+    /**
+     * 批量取消未支付订单 - 只取消仍处于PENDING状态的订单（用于支付超时）
+     *
+     * @param orderNos 订单号列表
+     * @param reason   取消原因
+     * @return 每个订单的处理结果
+     */
+    OrderBatchTransitionResult batchCancelUnpaidOrders(List<String> orderNos, String reason);
+
+    /**
+     * 批量应用支付回调结果：支付成功的待支付订单转换为PAID，支付失败的待支付订单取消
+     * 不是待支付状态的订单保持不变，因此重复调用是幂等的
+     *
+     * @param paidOrderNos   支付成功的订单号
+     * @param failedOrderNos 支付失败的订单号
+     * @return 实际发生状态变更的订单号（不在其中的订单未被本次回调更新）
+     */
+    Set<String> applyPaymentResults(Collection<String> paidOrderNos, Collection<String> failedOrderNos);
+
     /**
      * 检查订单状态转换是否合法
      *
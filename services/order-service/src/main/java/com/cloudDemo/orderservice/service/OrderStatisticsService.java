@@ -61,6 +61,14 @@ public interface OrderStatisticsService {
      */
     Map<String, Integer> getOrderTrends(int hours);
 
+    /**
+     * 订单状态转入统计（最近N分钟内转入各状态的次数，新建订单计入待支付）
+     *
+     * @param minutes 时间窗口（分钟），不能超出分钟汇总的覆盖范围
+     * @return 各状态的转入次数
+     */
+    Map<String, Long> getStatusTransitionStats(int minutes);
+
     /**
      * 时间窗口订单统计结果
      */
@@ -0,0 +1,117 @@
+package com.cloudDemo.orderservice.service.cache;
+
+import com.cloudDemo.orderservice.enums.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单状态紧凑缓存
+ * 按订单号分桶存入Redis哈希：键为 order:status:b:{订单号去掉末尾两位}，字段为订单号末尾两位，
+ * 值为状态序号的单个字符。数字结尾的订单号每桶最多100个字段，Redis以紧凑的 listpack 编码保存，
+ * 每个订单只占几个字节，读取时直接按字符解析，不需要反序列化。
+ * 状态序号同时是单调版本号（见 OrderStatus），写入脚本只在新状态序号更大时覆盖，
+ * 并发回源写入的旧状态不会覆盖已提交的新状态。过期时间按桶设置，从桶创建时开始计算、写入时不续期，
+ * 写入失败留下的旧状态最多保留一个过期周期。
+ */
+@Slf4j
+@Component
+public class OrderStatusCache {
+
+    private static final String BUCKET_KEY_PREFIX = "order:status:b:";
+    private static final int FIELD_LENGTH = 2;
+    private static final long EXPIRE_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    /**
+     * 写入一个桶：KEYS[1] 为桶键；ARGV[1] 为新建桶的过期秒数，之后每2个参数为 字段、状态序号；只有新序号更大时才覆盖
+     */
+    private static final byte[] PUT_SCRIPT = (
+            "local written = 0\n" +
+                    "for i = 2, #ARGV, 2 do\n" +
+                    "  local current = redis.call('HGET', KEYS[1], ARGV[i])\n" +
+                    "  if not current or current < ARGV[i + 1] then\n" +
+                    "    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+                    "    written = written + 1\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "if redis.call('TTL', KEYS[1]) < 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end\n" +
+                    "return written").getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 读取缓存的订单状态
+     *
+     * @return 未缓存时返回null
+     */
+    public OrderStatus get(String orderNo) {
+        Object value = stringRedisTemplate.opsForHash().get(bucketKey(orderNo), field(orderNo));
+        if (value == null) {
+            return null;
+        }
+        int ordinal = ((String) value).charAt(0) - '0';
+        return ordinal >= 0 && ordinal < STATUSES.length ? STATUSES[ordinal] : null;
+    }
+
+    /**
+     * 写入单个订单的状态（不会覆盖更新的状态）
+     */
+    public void put(String orderNo, OrderStatus status) {
+        putAll(List.of(orderNo), status);
+    }
+
+    /**
+     * 批量写入同一状态：按桶分组，每个桶一次脚本调用（脚本只访问自己的桶键，集群模式下按键路由），
+     * 全部调用通过一次管道发送。缓存写入失败只记录日志，旧缓存在过期后自然失效
+     */
+    public void putAll(Collection<String> orderNos, OrderStatus status) {
+        if (orderNos.isEmpty()) {
+            return;
+        }
+        byte[] value = Integer.toString(status.ordinal()).getBytes(StandardCharsets.UTF_8);
+        byte[] expireSeconds = Long.toString(EXPIRE_SECONDS).getBytes(StandardCharsets.UTF_8);
+        Map<String, List<byte[]>> argsByBucket = new LinkedHashMap<>();
+        for (String orderNo : orderNos) {
+            List<byte[]> args = argsByBucket.computeIfAbsent(bucketKey(orderNo), key -> {
+                List<byte[]> bucketArgs = new ArrayList<>();
+                bucketArgs.add(key.getBytes(StandardCharsets.UTF_8));
+                bucketArgs.add(expireSeconds);
+                return bucketArgs;
+            });
+            args.add(field(orderNo).getBytes(StandardCharsets.UTF_8));
+            args.add(value);
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (List<byte[]> keyAndArgs : argsByBucket.values()) {
+                    connection.scriptingCommands().eval(PUT_SCRIPT, ReturnType.INTEGER, 1,
+                            keyAndArgs.toArray(new byte[0][]));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("写入订单状态缓存失败，订单数={}", orderNos.size(), e);
+        }
+    }
+
+    private static String bucketKey(String orderNo) {
+        return BUCKET_KEY_PREFIX + orderNo.substring(0, Math.max(0, orderNo.length() - FIELD_LENGTH));
+    }
+
+    private static String field(String orderNo) {
+        return orderNo.substring(Math.max(0, orderNo.length() - FIELD_LENGTH));
+    }
+}
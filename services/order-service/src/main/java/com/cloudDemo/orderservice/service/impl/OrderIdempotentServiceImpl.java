@@ -1,21 +1,25 @@
 package com.cloudDemo.orderservice.service.impl;
 
+import com.cloudDemo.orderservice.config.IdempotentProperties;
 import com.cloudDemo.orderservice.service.OrderIdempotentService;
+import com.cloudDemo.orderservice.util.HashCodec;
+import com.cloudDemo.orderservice.util.IdempotentTokenCodec;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.UUID;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 订单幂等性服务实现类
  * 基于Redis实现分布式幂等性控制
+ * 幂等令牌自带用户ID、过期时间和签名，签发与校验不访问Redis；
+ * 下单时通过Lua脚本原子地记录令牌已使用并将幂等键置为处理中，订单创建成功后写入订单号，失败时释放并恢复令牌
  */
 @Slf4j
 @Service
@@ -23,34 +27,91 @@ public class OrderIdempotentServiceImpl implements OrderIdempotentService {
 
     // Redis键前缀
     private static final String IDEMPOTENT_KEY_PREFIX = "order:idempotent:";
-    private static final String TOKEN_KEY_PREFIX = "order:token:";
+    // 已使用令牌的记录（按令牌签名），有效期与令牌剩余有效期一致
+    private static final String TOKEN_USED_KEY_PREFIX = "order:token:used:";
     // 过期时间配置
     private static final int IDEMPOTENT_EXPIRE_MINUTES = 30; // 幂等记录过期时间30分钟
-    private static final int TOKEN_EXPIRE_MINUTES = 10; // 令牌过期时间10分钟
+    private static final int PROCESSING_EXPIRE_SECONDS = 60; // 处理中状态的过期时间，进程崩溃时自动释放
+    // 幂等键处于处理中状态时的值
+    private static final String PROCESSING = "PROCESSING";
+
+    /**
+     * 原子占用幂等键
+     * KEYS[1] 令牌使用记录键，KEYS[2] 幂等键；ARGV[1] 处理中标记，ARGV[2] 处理中过期时间（秒），ARGV[3] 令牌剩余有效期（秒）
+     * 返回：幂等键已存在时返回其值（处理中标记或订单号）；令牌已被使用返回空；占用成功返回空字符串
+     */
+    private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local existing = redis.call('GET', KEYS[2])\n" +
+                    "if existing then return existing end\n" +
+                    "if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[3]) then return false end\n" +
+                    "redis.call('SET', KEYS[2], ARGV[1], 'EX', ARGV[2])\n" +
+                    "return ''",
+            String.class);
+
+    /**
+     * 释放处理中的幂等键并清除令牌使用记录（幂等键已写入订单号时不做任何修改）
+     * KEYS[1] 令牌使用记录键，KEYS[2] 幂等键；ARGV[1] 处理中标记
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[2]) ~= ARGV[1] then return 0 end\n" +
+                    "redis.call('DEL', KEYS[2], KEYS[1])\n" +
+                    "return 1",
+            Long.class);
+
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IdempotentProperties idempotentProperties;
+
+    private IdempotentTokenCodec tokenCodec;
+
+    @PostConstruct
+    public void init() {
+        String secret = idempotentProperties.getTokenSecret();
+        if (secret == null || secret.trim().isEmpty()) {
+            // 不使用默认密钥：公开的密钥可以为任意用户伪造令牌
+            throw new IllegalStateException("未配置幂等令牌签名密钥，请设置环境变量 ORDER_IDEMPOTENT_TOKEN_SECRET");
+        }
+        tokenCodec = new IdempotentTokenCodec(idempotentProperties.getTokenSecret(),
+                TimeUnit.MINUTES.toSeconds(idempotentProperties.getTokenExpireMinutes()));
+    }
 
     @Override
     public IdempotentResult checkIdempotent(Long userId, String productId, String amount, String clientToken) {
         try {
-            // 1. 验证客户端令牌有效性
-            if (!validateClientToken(userId, clientToken)) {
+            // 1. 本地校验令牌签名、所属用户和有效期，不访问Redis
+            long remainingSeconds = tokenCodec.verify(clientToken, userId, currentSeconds());
+            String idempotentKey = generateIdempotentKey(userId, productId, amount, clientToken);
+            if (remainingSeconds == 0) {
+                // 令牌已过期，仍返回用它创建的订单，方便客户端重试时拿到结果
+                String existing = stringRedisTemplate.opsForValue().get(idempotentKey);
+                if (existing != null && !PROCESSING.equals(existing)) {
+                    return IdempotentResult.duplicate(existing);
+                }
+            }
+            if (remainingSeconds <= 0) {
                 log.warn("用户 {} 提供的幂等令牌无效: {}", userId, clientToken);
                 return new IdempotentResult(true, null, "幂等令牌无效或已过期");
             }
 
-            // 2. 生成幂等键
-            String idempotentKey = generateIdempotentKey(userId, productId, amount, clientToken);
-
-            // 3. 检查是否存在重复请求
-            String existingOrderNo = (String) redisTemplate.opsForValue().get(idempotentKey);
+            // 2. 一次往返完成令牌消费和幂等键占用，并发的重复请求只有一个能占用成功
+            String usedKey = TOKEN_USED_KEY_PREFIX + IdempotentTokenCodec.signatureOf(clientToken);
+            String claimed = stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(usedKey, idempotentKey),
+                    PROCESSING, String.valueOf(PROCESSING_EXPIRE_SECONDS), String.valueOf(remainingSeconds));
 
-            if (existingOrderNo != null) {
-                log.info("检测到重复下单请求，用户: {}, 商品: {}, 已存在订单: {}", userId, productId, existingOrderNo);
-                return IdempotentResult.duplicate(existingOrderNo);
+            if (claimed == null) {
+                log.warn("用户 {} 提供的幂等令牌已被使用: {}", userId, clientToken);
+                return new IdempotentResult(true, null, "幂等令牌无效或已过期");
+            }
+            if (PROCESSING.equals(claimed)) {
+                log.info("相同下单请求正在处理中，用户: {}, 商品: {}", userId, productId);
+                return IdempotentResult.inProgress();
+            }
+            if (!claimed.isEmpty()) {
+                log.info("检测到重复下单请求，用户: {}, 商品: {}, 已存在订单: {}", userId, productId, claimed);
+                return IdempotentResult.duplicate(claimed);
             }
 
-            // 4. 幂等性检查通过
             log.debug("幂等性检查通过，用户: {}, 商品: {}, 令牌: {}", userId, productId, clientToken);
             return IdempotentResult.success();
 
@@ -66,12 +127,8 @@ public class OrderIdempotentServiceImpl implements OrderIdempotentService {
             // 生成幂等键
             String idempotentKey = generateIdempotentKey(userId, productId, amount, clientToken);
 
-            // 记录订单创建结果，设置过期时间
-            redisTemplate.opsForValue().set(idempotentKey, orderNo, IDEMPOTENT_EXPIRE_MINUTES, TimeUnit.MINUTES);
-
-            // 使令牌失效（防止重复使用）
-            String tokenKey = TOKEN_KEY_PREFIX + userId + ":" + clientToken;
-            redisTemplate.delete(tokenKey);
+            // 处理中 -> 订单号，令牌已在占用时消费
+            stringRedisTemplate.opsForValue().set(idempotentKey, orderNo, IDEMPOTENT_EXPIRE_MINUTES, TimeUnit.MINUTES);
 
             log.info("订单创建幂等性记录已保存，用户: {}, 订单: {}, 幂等键: {}", userId, orderNo, idempotentKey);
 
@@ -81,74 +138,49 @@ public class OrderIdempotentServiceImpl implements OrderIdempotentService {
     }
 
     @Override
-    public String generateIdempotentToken(Long userId) {
+    public void releaseIdempotent(Long userId, String productId, String amount, String clientToken) {
         try {
-            // 生成UUID作为基础令牌
-            String baseToken = UUID.randomUUID().toString().replaceAll("-", "");
-
-            // 添加时间戳和用户ID，增强唯一性
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS"));
-            String rawToken = userId + "_" + timestamp + "_" + baseToken;
-
-            // MD5哈希生成最终令牌
-            String token = md5Hash(rawToken);
-
-            // 将令牌存储到Redis，设置过期时间
-            String tokenKey = TOKEN_KEY_PREFIX + userId + ":" + token;
-            redisTemplate.opsForValue().set(tokenKey, "valid", TOKEN_EXPIRE_MINUTES, TimeUnit.MINUTES);
-
-            log.debug("为用户 {} 生成幂等令牌: {}", userId, token);
-            return token;
-
+            String idempotentKey = generateIdempotentKey(userId, productId, amount, clientToken);
+            String usedKey = TOKEN_USED_KEY_PREFIX + IdempotentTokenCodec.signatureOf(clientToken);
+            Long released = stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(usedKey, idempotentKey), PROCESSING);
+            if (released != null && released == 1) {
+                log.info("订单创建失败，已释放幂等键并恢复令牌，用户: {}, 商品: {}", userId, productId);
+            }
         } catch (Exception e) {
-            log.error("生成幂等令牌失败", e);
-            throw new RuntimeException("生成幂等令牌失败", e);
+            // 释放失败时处理中状态会在过期后自动清除
+            log.error("释放幂等键失败", e);
         }
     }
 
     @Override
-    public void cleanExpiredIdempotentRecords() {
-        // Redis的过期机制会自动清理过期键，这里可以实现额外的清理逻辑
-        log.info("幂等性记录清理任务执行完成（Redis自动过期机制）");
+    public String generateIdempotentToken(Long userId) {
+        // 自校验令牌，签发时不写Redis
+        String token = tokenCodec.issue(userId, currentSeconds());
+        log.debug("为用户 {} 生成幂等令牌: {}", userId, token);
+        return token;
     }
 
-    /**
-     * 生成幂等键
-     * 基于用户ID、商品ID、金额、令牌生成唯一的幂等键
-     */
-    private String generateIdempotentKey(Long userId, String productId, String amount, String clientToken) {
-        String rawKey = userId + ":" + productId + ":" + amount + ":" + clientToken;
-        String hashedKey = md5Hash(rawKey);
-        return IDEMPOTENT_KEY_PREFIX + hashedKey;
+    @Override
+    public long getTokenExpireSeconds() {
+        return tokenCodec.getTtlSeconds();
     }
 
-    /**
-     * 验证客户端令牌有效性
-     */
-    private boolean validateClientToken(Long userId, String clientToken) {
-        if (clientToken == null || clientToken.trim().isEmpty()) {
-            return false;
-        }
+    @Override
+    public void cleanExpiredIdempotentRecords() {
+        // Redis的过期机制会自动清理过期键，这里可以实现额外的清理逻辑
+        log.info("幂等性记录清理任务执行完成（Redis自动过期机制）");
+    }
 
-        String tokenKey = TOKEN_KEY_PREFIX + userId + ":" + clientToken;
-        String tokenValue = (String) redisTemplate.opsForValue().get(tokenKey);
-        return "valid".equals(tokenValue);
+    private long currentSeconds() {
+        return System.currentTimeMillis() / 1000;
     }
 
     /**
-     * MD5哈希工具方法
+     * 生成幂等键
+     * 用户ID明文作为键的一部分，商品ID、金额、令牌做 MurmurHash3 128位哈希：
+     * 哈希碰撞只可能发生在同一用户自己的请求之间，不需要加密哈希
      */
-    private String md5Hash(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5算法不可用", e);
-        }
+    private String generateIdempotentKey(Long userId, String productId, String amount, String clientToken) {
+        return IDEMPOTENT_KEY_PREFIX + userId + ":" + HashCodec.murmur3Hex(productId, amount, clientToken);
     }
 }
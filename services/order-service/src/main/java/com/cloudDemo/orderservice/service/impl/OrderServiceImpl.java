@@ -3,8 +3,11 @@ package com.cloudDemo.orderservice.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.enums.OrderStatus;
 import com.cloudDemo.orderservice.mapper.OrdersMapper;
 import com.cloudDemo.orderservice.service.OrderService;
+import com.cloudDemo.orderservice.service.rollup.OrderRollupService;
+import com.cloudDemo.orderservice.service.timeout.OrderPaymentTimeoutCanceller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -17,6 +20,10 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
 
     @Autowired
     private OrdersMapper ordersMapper;
+    @Autowired
+    private OrderPaymentTimeoutCanceller paymentTimeoutCanceller;
+    @Autowired
+    private OrderRollupService rollupService;
 
     @Override
     public List<Orders> getOrdersByUserId(Long userId) {
@@ -31,6 +38,8 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
             order.setCreateTime(LocalDateTime.now());
         }
         ordersMapper.insert(order);
+        registerPaymentDeadline(order);
+        rollupService.recordCreated(order);
         return order;
     }
 
@@ -48,6 +57,8 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
         order.setCreateTime(LocalDateTime.now());
 
         ordersMapper.insert(order);
+        registerPaymentDeadline(order);
+        rollupService.recordCreated(order);
 
         return "订单创建成功，订单号：" + order.getOrderNo() + "，用户ID：" + userId + "，商品：" + productName + "，金额：" + amount;
     }
@@ -68,4 +79,13 @@ public class OrderServiceImpl extends ServiceImpl<OrdersMapper, Orders> implemen
                         .last("LIMIT 100")           // 限制最多100条
         );
     }
+
+    /**
+     * 待支付订单登记支付截止时间，超时未支付自动取消
+     */
+    private void registerPaymentDeadline(Orders order) {
+        if (OrderStatus.PENDING.getCode().equalsIgnoreCase(order.getStatus())) {
+            paymentTimeoutCanceller.register(order.getOrderNo(), order.getCreateTime());
+        }
+    }
 }
@@ -2,45 +2,83 @@ package com.cloudDemo.orderservice.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.cloudDemo.orderservice.config.OrderBatchProperties;
+import com.cloudDemo.orderservice.dto.OrderBatchTransitionResult;
+import com.cloudDemo.orderservice.entity.OrderStatusOutbox;
 import com.cloudDemo.orderservice.entity.Orders;
 import com.cloudDemo.orderservice.enums.OrderStatus;
+import com.cloudDemo.orderservice.mapper.OrderStatusOutboxMapper;
 import com.cloudDemo.orderservice.mapper.OrdersMapper;
 import com.cloudDemo.orderservice.service.OrderStateMachineService;
+import com.cloudDemo.orderservice.service.cache.OrderStatusCache;
+import com.cloudDemo.orderservice.service.inventory.InventoryReservationReleaser;
+import com.cloudDemo.orderservice.service.rollup.OrderRollupService;
+import com.cloudDemo.orderservice.service.timeout.PaymentDeadlineRegistry;
+import com.cloudDemo.orderservice.util.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 订单状态机服务实现类
  * 实现订单状态的安全转换和管理
+ * 每次状态变更都在同一事务中写入发件箱事件（order_status_outbox），由 OrderStatusOutboxRelay 投递
  */
 @Slf4j
 @Service
 public class OrderStateMachineServiceImpl implements OrderStateMachineService {
 
-    private static final String ORDER_STATUS_CACHE_PREFIX = "order:status:";
     private static final String ORDER_LOCK_PREFIX = "order:lock:";
-    private static final int CACHE_EXPIRE_MINUTES = 30;
     private static final int LOCK_EXPIRE_SECONDS = 10;
+    // 支付失败回调只允许取消待支付的订单
+    private static final List<String> PENDING_ONLY = List.of(OrderStatus.PENDING.getCode());
+    private final SingleFlight<String, OrderStatus> statusLoader = new SingleFlight<>();
     @Autowired
     private OrdersMapper ordersMapper;
     @Autowired
+    private OrderStatusOutboxMapper outboxMapper;
+    @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private OrderStatusCache orderStatusCache;
+    @Autowired
+    private OrderBatchProperties batchProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PaymentDeadlineRegistry paymentDeadlineRegistry;
+    @Autowired
+    private InventoryReservationReleaser reservationReleaser;
+    @Autowired
+    private OrderRollupService rollupService;
 
     @Override
     @Transactional
     public Orders payOrder(String orderNo) {
-        return changeOrderStatus(orderNo, OrderStatus.PAID, "订单支付成功");
+        return changeOrderStatus(orderNo, OrderStatus.PAID, OrderStatus.PAID.getAllowedPredecessorCodes(), "订单支付成功");
     }
 
     @Override
     @Transactional
     public Orders shipOrder(String orderNo, String trackingNumber) {
-        Orders order = changeOrderStatus(orderNo, OrderStatus.SHIPPED, "订单已发货，物流单号：" + trackingNumber);
+        Orders order = changeOrderStatus(orderNo, OrderStatus.SHIPPED, OrderStatus.SHIPPED.getAllowedPredecessorCodes(),
+                "订单已发货，物流单号：" + trackingNumber);
         if (order != null) {
             // 可以在这里添加物流信息到订单中
             log.info("订单 {} 已发货，物流单号：{}", orderNo, trackingNumber);
@@ -51,20 +89,94 @@ public class OrderStateMachineServiceImpl implements OrderStateMachineService {
     @Override
     @Transactional
     public Orders completeOrder(String orderNo) {
-        return changeOrderStatus(orderNo, OrderStatus.COMPLETED, "订单已完成");
+        return changeOrderStatus(orderNo, OrderStatus.COMPLETED, OrderStatus.COMPLETED.getAllowedPredecessorCodes(), "订单已完成");
     }
 
     @Override
     @Transactional
     public Orders cancelOrder(String orderNo, String reason) {
-        Orders order = changeOrderStatus(orderNo, OrderStatus.CANCELLED, "订单已取消，原因：" + reason);
+        Orders order = changeOrderStatus(orderNo, OrderStatus.CANCELLED, OrderStatus.CANCELLED.getAllowedPredecessorCodes(),
+                "订单已取消，原因：" + reason);
         if (order != null) {
             log.info("订单 {} 已取消，原因：{}", orderNo, reason);
-            // 取消订单时可以处理库存回滚等逻辑
         }
         return order;
     }
 
+    @Override
+    public OrderBatchTransitionResult batchShipOrders(List<String> orderNos) {
+        return changeOrderStatusBatch(orderNos, OrderStatus.SHIPPED, OrderStatus.SHIPPED.getAllowedPredecessors(), "批量发货");
+    }
+
+    @Override
+    public OrderBatchTransitionResult batchCompleteOrders(List<String> orderNos) {
+        return changeOrderStatusBatch(orderNos, OrderStatus.COMPLETED, OrderStatus.COMPLETED.getAllowedPredecessors(), "批量完成");
+    }
+
+    @Override
+    public OrderBatchTransitionResult batchCancelOrders(List<String> orderNos, String reason) {
+        return changeOrderStatusBatch(orderNos, OrderStatus.CANCELLED, OrderStatus.CANCELLED.getAllowedPredecessors(),
+                "批量取消，原因：" + reason);
+    }
+
+    @Override
+    public OrderBatchTransitionResult batchCancelUnpaidOrders(List<String> orderNos, String reason) {
+        return changeOrderStatusBatch(orderNos, OrderStatus.CANCELLED, EnumSet.of(OrderStatus.PENDING),
+                "批量取消未支付订单，原因：" + reason);
+    }
+
+    @Override
+    @Transactional
+    public Set<String> applyPaymentResults(Collection<String> paidOrderNos, Collection<String> failedOrderNos) {
+        Set<String> applied = new LinkedHashSet<>(applyPendingTransition(paidOrderNos, OrderStatus.PAID));
+        applied.addAll(applyPendingTransition(failedOrderNos, OrderStatus.CANCELLED));
+
+        log.info("批量处理支付回调：支付成功 {} 个，支付失败 {} 个，实际更新 {} 个",
+                paidOrderNos.size(), failedOrderNos.size(), applied.size());
+        return applied;
+    }
+
+    /**
+     * 把一批订单中仍为待支付的订单更新为目标状态，并写入对应的状态变更事件
+     * 先锁定实际待支付的订单再更新，事件只为真正发生变更的订单写入
+     *
+     * @return 实际变更的订单号
+     */
+    private List<String> applyPendingTransition(Collection<String> orderNos, OrderStatus targetStatus) {
+        if (orderNos.isEmpty()) {
+            return List.of();
+        }
+        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("order_no")
+                .in("order_no", orderNos)
+                .in("status", PENDING_ONLY)
+                .last("FOR UPDATE");
+        List<Orders> pending = ordersMapper.selectList(queryWrapper);
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> pendingNos = new ArrayList<>(pending.size());
+        for (Orders order : pending) {
+            pendingNos.add(order.getOrderNo());
+        }
+        UpdateWrapper<Orders> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.in("order_no", pendingNos)
+                .in("status", PENDING_ONLY)
+                .set("status", targetStatus.getCode());
+        int updated = ordersMapper.update(null, updateWrapper);
+        if (updated != pendingNos.size()) {
+            // 行已被锁定，正常情况下不会出现；回滚整批交给调用方重试
+            throw new IllegalStateException(String.format("批量更新行数不一致：期望%d，实际%d", pendingNos.size(), updated));
+        }
+        appendStatusEvents(pendingNos, OrderStatus.PENDING.getCode(), targetStatus);
+        afterTransitionCommit(pendingNos, targetStatus);
+        if (targetStatus == OrderStatus.CANCELLED) {
+            releaseReservationsAfterCommit(pendingNos);
+        }
+        return pendingNos;
+    }
+
     @Override
     public boolean canTransition(OrderStatus currentStatus, OrderStatus targetStatus) {
         return currentStatus.canTransitionTo(targetStatus);
@@ -72,11 +184,10 @@ public class OrderStateMachineServiceImpl implements OrderStateMachineService {
 
     @Override
     public OrderStatus[] getNextPossibleStatuses(String orderNo) {
-        Orders order = getOrderByNo(orderNo);
-        if (order == null) {
+        OrderStatus currentStatus = getOrderStatus(orderNo);
+        if (currentStatus == null) {
             return new OrderStatus[]{};
         }
-        OrderStatus currentStatus = OrderStatus.fromCode(order.getStatus());
         return currentStatus.getNextPossibleStatuses();
     }
 
@@ -93,30 +204,23 @@ public class OrderStateMachineServiceImpl implements OrderStateMachineService {
                 return "处理中，请勿重复操作";
             }
 
-            Orders order = getOrderByNo(orderNo);
-            if (order == null) {
-                return "订单不存在";
-            }
-
-            OrderStatus currentStatus = OrderStatus.fromCode(order.getStatus());
-
-            if ("SUCCESS".equals(paymentResult)) {
-                if (currentStatus == OrderStatus.PENDING) {
-                    payOrder(orderNo);
+            // 直接按状态条件更新，不预先读取订单；只有更新失败时才回读判断原因
+            try {
+                if ("SUCCESS".equals(paymentResult)) {
+                    changeOrderStatus(orderNo, OrderStatus.PAID, OrderStatus.PAID.getAllowedPredecessorCodes(), "订单支付成功");
                     log.info("支付回调成功，订单 {} 状态已更新为已支付", orderNo);
                     return "支付成功";
                 } else {
-                    log.warn("订单 {} 当前状态为 {}，无法处理支付成功回调", orderNo, currentStatus.getName());
-                    return "订单状态异常，无法处理支付";
-                }
-            } else {
-                if (currentStatus == OrderStatus.PENDING) {
-                    cancelOrder(orderNo, "支付失败");
+                    // 支付失败只取消待支付的订单
+                    changeOrderStatus(orderNo, OrderStatus.CANCELLED, PENDING_ONLY, "订单已取消，原因：支付失败");
                     log.info("支付回调失败，订单 {} 已自动取消", orderNo);
                     return "支付失败，订单已取消";
-                } else {
-                    return "订单状态异常，无法处理支付失败";
                 }
+            } catch (IllegalArgumentException e) {
+                return "订单不存在";
+            } catch (IllegalStateException e) {
+                log.warn("订单 {} 无法处理支付回调 {}：{}", orderNo, paymentResult, e.getMessage());
+                return "SUCCESS".equals(paymentResult) ? "订单状态异常，无法处理支付" : "订单状态异常，无法处理支付失败";
             }
         } finally {
             // 释放锁
@@ -126,76 +230,294 @@ public class OrderStateMachineServiceImpl implements OrderStateMachineService {
 
     /**
      * 核心方法：安全地改变订单状态
+     * 以 UPDATE ... WHERE order_no = ? AND status IN (允许的前置状态) 一次完成校验和更新，不预先读取订单；
+     * 只有更新行数为0时才回读订单，区分订单不存在、状态不合法和并发修改。
+     * 成功时返回仅包含订单号和新状态的订单对象，事务提交后写入订单状态缓存。
+     *
+     * @param fromCodes 允许的前置状态码
      */
-    private Orders changeOrderStatus(String orderNo, OrderStatus targetStatus, String logMessage) {
-        Orders order = getOrderByNo(orderNo);
-        if (order == null) {
-            log.error("订单不存在：{}", orderNo);
-            throw new IllegalArgumentException("订单不存在：" + orderNo);
-        }
-
-        OrderStatus currentStatus = OrderStatus.fromCode(order.getStatus());
-
-        // 检查状态转换是否合法
-        if (!currentStatus.canTransitionTo(targetStatus)) {
-            log.error("订单 {} 状态转换不合法：{} -> {}", orderNo, currentStatus.getName(), targetStatus.getName());
-            throw new IllegalStateException(
-                    String.format("订单状态转换不合法：%s -> %s", currentStatus.getName(), targetStatus.getName())
-            );
+    private Orders changeOrderStatus(String orderNo, OrderStatus targetStatus, List<String> fromCodes, String logMessage) {
+        if (fromCodes.isEmpty()) {
+            throw new IllegalStateException("订单状态不能转换为：" + targetStatus.getName());
         }
 
-        // 更新数据库
         UpdateWrapper<Orders> updateWrapper = new UpdateWrapper<>();
         updateWrapper.eq("order_no", orderNo)
-                .eq("status", currentStatus.getCode()) // 乐观锁，确保状态一致性
+                .in("status", fromCodes) // 状态条件即乐观锁，确保状态一致性
                 .set("status", targetStatus.getCode());
 
         int updateCount = ordersMapper.update(null, updateWrapper);
         if (updateCount == 0) {
-            log.error("订单 {} 状态更新失败，可能存在并发修改", orderNo);
-            throw new IllegalStateException("订单状态更新失败，请重试");
+            throw transitionFailure(orderNo, targetStatus, fromCodes);
         }
+        // 不预先读取订单，只有一个允许的前置状态时才能确定变更前状态
+        appendStatusEvents(List.of(orderNo), fromCodes.size() == 1 ? fromCodes.get(0) : null, targetStatus);
 
         // 更新缓存
-        order.setStatus(targetStatus.getCode());
-        updateOrderCache(order);
+        afterTransitionCommit(List.of(orderNo), targetStatus);
+        if (targetStatus == OrderStatus.CANCELLED) {
+            releaseReservationsAfterCommit(List.of(orderNo));
+        }
 
         log.info("订单 {} 状态更新成功：{} -> {}，{}",
-                orderNo, currentStatus.getName(), targetStatus.getName(), logMessage);
+                orderNo, describeStatuses(fromCodes), targetStatus.getName(), logMessage);
 
+        Orders order = new Orders();
+        order.setOrderNo(orderNo);
+        order.setStatus(targetStatus.getCode());
         return order;
     }
 
     /**
-     * 根据订单号获取订单（先查缓存，再查数据库）
+     * 批量改变订单状态
+     * 订单号去重后按 chunkSize 分块，每块一个事务：SELECT ... FOR UPDATE 锁定并校验整块订单，
+     * 再对合法的订单执行一次 UPDATE ... WHERE order_no IN (...) AND status IN (允许的前置状态)。
+     * 某一块失败只影响该块内的订单，提交成功的块用一次脚本调用批量写入订单状态缓存。
+     */
+    private OrderBatchTransitionResult changeOrderStatusBatch(List<String> orderNos, OrderStatus targetStatus,
+                                                              Set<OrderStatus> allowedFrom, String logMessage) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(orderNos));
+        distinct.removeIf(orderNo -> orderNo == null || orderNo.trim().isEmpty());
+        if (distinct.size() > batchProperties.getMaxOrders()) {
+            throw new IllegalArgumentException("单次最多处理" + batchProperties.getMaxOrders() + "个订单");
+        }
+
+        long start = System.currentTimeMillis();
+        OrderBatchTransitionResult result = new OrderBatchTransitionResult(targetStatus.getCode(), distinct.size());
+        int chunkSize = Math.max(1, batchProperties.getChunkSize());
+
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<String> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            ChunkOutcome outcome;
+            try {
+                outcome = transactionTemplate.execute(status -> transitionChunk(chunk, targetStatus, allowedFrom));
+            } catch (Exception e) {
+                log.error("批量状态更新失败：目标状态={}，订单数={}", targetStatus.getName(), chunk.size(), e);
+                for (String orderNo : chunk) {
+                    OrderBatchTransitionResult.Item item = new OrderBatchTransitionResult.Item(orderNo, false, null,
+                            "批量状态更新失败，请重试：" + e.getMessage());
+                    item.setRetryable(true);
+                    result.add(item);
+                }
+                continue;
+            }
+
+            for (OrderBatchTransitionResult.Item item : outcome.items) {
+                result.add(item);
+            }
+            List<String> updatedNos = new ArrayList<>(outcome.updated.size());
+            for (Orders order : outcome.updated) {
+                updatedNos.add(order.getOrderNo());
+            }
+            orderStatusCache.putAll(updatedNos, targetStatus);
+            paymentDeadlineRegistry.unregisterAll(updatedNos);
+            rollupService.recordTransitions(targetStatus, updatedNos.size());
+            if (targetStatus == OrderStatus.CANCELLED) {
+                releaseReservationsAfterCommit(updatedNos);
+            }
+        }
+
+        result.setElapsedMs(System.currentTimeMillis() - start);
+        log.info("{}：目标状态={}，总数={}，成功={}，失败={}，耗时={}ms", logMessage, targetStatus.getName(),
+                result.getTotal(), result.getSuccessCount(), result.getFailureCount(), result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * 在当前事务中处理一块订单（行锁保证校验结果与更新结果一致）
      */
-    private Orders getOrderByNo(String orderNo) {
-        String cacheKey = ORDER_STATUS_CACHE_PREFIX + orderNo;
+    private ChunkOutcome transitionChunk(List<String> chunk, OrderStatus targetStatus, Set<OrderStatus> allowedFrom) {
+        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("order_no", chunk).last("FOR UPDATE");
+        List<Orders> rows = ordersMapper.selectList(queryWrapper);
+        Map<String, Orders> ordersByNo = new HashMap<>(rows.size() * 2);
+        for (Orders row : rows) {
+            ordersByNo.put(row.getOrderNo(), row);
+        }
 
-        // 先查缓存
-        Orders cachedOrder = (Orders) redisTemplate.opsForValue().get(cacheKey);
-        if (cachedOrder != null) {
-            return cachedOrder;
+        ChunkOutcome outcome = new ChunkOutcome(chunk.size());
+        List<Orders> eligible = new ArrayList<>(chunk.size());
+        for (String orderNo : chunk) {
+            Orders order = ordersByNo.get(orderNo);
+            if (order == null) {
+                outcome.items.add(new OrderBatchTransitionResult.Item(orderNo, false, null, "订单不存在"));
+                continue;
+            }
+            OrderStatus currentStatus = OrderStatus.fromCode(order.getStatus());
+            if (!allowedFrom.contains(currentStatus)) {
+                outcome.items.add(new OrderBatchTransitionResult.Item(orderNo, false, currentStatus.getCode(),
+                        String.format("订单状态转换不合法：%s -> %s", currentStatus.getName(), targetStatus.getName())));
+                continue;
+            }
+            eligible.add(order);
         }
 
-        // 查数据库
+        if (eligible.isEmpty()) {
+            return outcome;
+        }
+
+        List<String> eligibleNos = new ArrayList<>(eligible.size());
+        for (Orders order : eligible) {
+            eligibleNos.add(order.getOrderNo());
+        }
+        List<String> fromCodes = new ArrayList<>(allowedFrom.size());
+        for (OrderStatus status : allowedFrom) {
+            fromCodes.add(status.getCode());
+        }
+        UpdateWrapper<Orders> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.in("order_no", eligibleNos)
+                .in("status", fromCodes)
+                .set("status", targetStatus.getCode());
+        int updateCount = ordersMapper.update(null, updateWrapper);
+        if (updateCount != eligible.size()) {
+            // 行已被锁定，正常情况下不会出现；回滚整块交给调用方重试
+            throw new IllegalStateException(String.format("批量更新行数不一致：期望%d，实际%d", eligible.size(), updateCount));
+        }
+
+        List<OrderStatusOutbox> events = new ArrayList<>(eligible.size());
+        for (Orders order : eligible) {
+            // 数据库中的状态为小写枚举值，事件和返回结果统一使用 OrderStatus 的状态码
+            String fromStatus = OrderStatus.fromCode(order.getStatus()).getCode();
+            outcome.items.add(new OrderBatchTransitionResult.Item(order.getOrderNo(), true, fromStatus, "状态更新成功"));
+            events.add(new OrderStatusOutbox(order.getOrderNo(), fromStatus, targetStatus.getCode()));
+            order.setStatus(targetStatus.getCode());
+            outcome.updated.add(order);
+        }
+        outboxMapper.insertBatch(events);
+        return outcome;
+    }
+
+    /**
+     * 在当前事务中写入状态变更事件（一条INSERT）
+     *
+     * @param fromStatus 变更前状态，无法确定时为空
+     */
+    private void appendStatusEvents(List<String> orderNos, String fromStatus, OrderStatus targetStatus) {
+        List<OrderStatusOutbox> events = new ArrayList<>(orderNos.size());
+        for (String orderNo : orderNos) {
+            events.add(new OrderStatusOutbox(orderNo, fromStatus, targetStatus.getCode()));
+        }
+        outboxMapper.insertBatch(events);
+    }
+
+    /**
+     * 条件更新失败后回读订单，确定失败原因
+     */
+    private RuntimeException transitionFailure(String orderNo, OrderStatus targetStatus, List<String> fromCodes) {
         QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("order_no", orderNo);
-        Orders order = ordersMapper.selectOne(queryWrapper);
+        Orders latest = ordersMapper.selectOne(queryWrapper);
+        if (latest == null) {
+            log.error("订单不存在：{}", orderNo);
+            return new IllegalArgumentException("订单不存在：" + orderNo);
+        }
 
-        // 更新缓存
-        if (order != null) {
-            updateOrderCache(order);
+        // 回读的是数据库最新状态，顺便修正可能过期的缓存
+        OrderStatus currentStatus = OrderStatus.fromCode(latest.getStatus());
+        orderStatusCache.put(orderNo, currentStatus);
+
+        // 数据库中的状态为小写枚举值，统一转换为 OrderStatus 再比较
+        if (fromCodes.stream().map(OrderStatus::fromCode).anyMatch(status -> status == currentStatus)) {
+            log.error("订单 {} 状态更新失败，可能存在并发修改", orderNo);
+            return new IllegalStateException("订单状态更新失败，请重试");
         }
 
-        return order;
+        log.error("订单 {} 状态转换不合法：{} -> {}", orderNo, currentStatus.getName(), targetStatus.getName());
+        return new IllegalStateException(
+                String.format("订单状态转换不合法：%s -> %s", currentStatus.getName(), targetStatus.getName())
+        );
+    }
+
+    private String describeStatuses(List<String> codes) {
+        StringJoiner joiner = new StringJoiner("/");
+        for (String code : codes) {
+            joiner.add(OrderStatus.fromCode(code).getName());
+        }
+        return joiner.toString();
     }
 
     /**
-     * 更新订单缓存
+     * 根据订单号获取订单状态（先查缓存，再查数据库）
      */
-    private void updateOrderCache(Orders order) {
-        String cacheKey = ORDER_STATUS_CACHE_PREFIX + order.getOrderNo();
-        redisTemplate.opsForValue().set(cacheKey, order, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
+    private OrderStatus getOrderStatus(String orderNo) {
+        OrderStatus cached = orderStatusCache.get(orderNo);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 查数据库（同一订单只由一个线程回源，其余线程等待并共享结果）
+        return statusLoader.load(orderNo, () -> {
+            OrderStatus latest = orderStatusCache.get(orderNo);
+            if (latest != null) {
+                return latest;
+            }
+
+            QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("status").eq("order_no", orderNo);
+            Orders order = ordersMapper.selectOne(queryWrapper);
+            if (order == null) {
+                return null;
+            }
+
+            // 更新缓存（写入脚本不会用旧状态覆盖并发提交的新状态）
+            OrderStatus status = OrderStatus.fromCode(order.getStatus());
+            orderStatusCache.put(orderNo, status);
+            return status;
+        });
+    }
+
+    /**
+     * 事务提交后写入订单的新状态（提交前写入可能被回滚），注销订单的支付截止时间并记录分钟汇总
+     */
+    private void afterTransitionCommit(List<String> orderNos, OrderStatus targetStatus) {
+        runAfterCommit(() -> {
+            paymentDeadlineRegistry.unregisterAll(orderNos);
+            orderStatusCache.putAll(orderNos, targetStatus);
+            rollupService.recordTransitions(targetStatus, orderNos.size());
+        });
+    }
+
+    /**
+     * 事务提交后归还已取消订单的预扣库存
+     * 归还失败不影响取消结果：未认领的预扣记录到期后由过期预扣清理任务归还。
+     * 按订单归还依赖预扣记录（inventory.reservation.enabled=true），未开启时不会归还
+     */
+    private void releaseReservationsAfterCommit(List<String> orderNos) {
+        runAfterCommit(() -> {
+            try {
+                reservationReleaser.releaseByOrders(orderNos);
+            } catch (Exception e) {
+                log.error("取消订单后归还预扣库存失败，订单数={}", orderNos.size(), e);
+            }
+        });
+    }
+
+    /**
+     * 有事务时在提交后执行，否则立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 一块订单的处理结果
+     */
+    private static final class ChunkOutcome {
+        private final List<OrderBatchTransitionResult.Item> items;
+        private final List<Orders> updated;
+
+        private ChunkOutcome(int size) {
+            this.items = new ArrayList<>(size);
+            this.updated = new ArrayList<>(size);
+        }
     }
 }
@@ -1,9 +1,13 @@
 package com.cloudDemo.orderservice.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.dto.OrderGroupCount;
+import com.cloudDemo.orderservice.dto.OrderRollupSummary;
+import com.cloudDemo.orderservice.dto.OrderWindowAggregate;
+import com.cloudDemo.orderservice.dto.UserOrderCount;
+import com.cloudDemo.orderservice.enums.OrderStatus;
 import com.cloudDemo.orderservice.mapper.OrdersMapper;
 import com.cloudDemo.orderservice.service.OrderStatisticsService;
+import com.cloudDemo.orderservice.service.rollup.OrderRollupService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -18,11 +22,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * 订单统计服务实现类
  * 基于数据库查询和Redis缓存的高性能统计分析
+ * 实时统计、金额统计和趋势分析优先合并分钟汇总（OrderRollupService），窗口超出汇总覆盖范围时查询数据库；
+ * 数据库查询都在 MySQL 中 GROUP BY 聚合，只返回聚合后的窄结果行，不加载订单明细
  */
 @Slf4j
 @Service
@@ -34,6 +39,8 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
     private OrdersMapper ordersMapper;
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private OrderRollupService rollupService;
 
     @Override
     public OrderTimeWindowStats getRealtimeStats(int minutes) {
@@ -50,27 +57,27 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime = endTime.minusMinutes(minutes);
 
-        // 查询订单数据
-        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
-        queryWrapper.between("create_time", startTime, endTime);
-        List<Orders> orders = ordersMapper.selectList(queryWrapper);
+        int totalOrders;
+        BigDecimal totalAmount;
+        int uniqueUsers;
+        if (rollupService.covers(startTime)) {
+            // 合并分钟汇总，下单用户数由 HyperLogLog 估算
+            OrderRollupSummary summary = rollupService.summarize(startTime, endTime);
+            totalOrders = (int) summary.getOrderCount();
+            totalAmount = summary.getTotalAmount();
+            uniqueUsers = (int) rollupService.countUniqueUsers(startTime, endTime);
+        } else {
+            OrderWindowAggregate aggregate = ordersMapper.aggregateWindow(startTime, endTime);
+            totalOrders = Math.toIntExact(aggregate.getOrderCount());
+            totalAmount = aggregate.getTotalAmount();
+            uniqueUsers = Math.toIntExact(aggregate.getUniqueUsers());
+        }
 
         // 统计计算
-        int totalOrders = orders.size();
-        BigDecimal totalAmount = orders.stream()
-                .map(Orders::getTotalAmount)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
         BigDecimal avgAmount = totalOrders > 0 ?
                 totalAmount.divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP) :
                 BigDecimal.ZERO;
 
-        int uniqueUsers = (int) orders.stream()
-                .map(Orders::getUserId)
-                .distinct()
-                .count();
-
         double ordersPerMinute = totalOrders > 0 ? (double) totalOrders / minutes : 0.0;
 
         String timeWindow = String.format("最近%d分钟 (%s ~ %s)",
@@ -100,15 +107,11 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
             return cachedDist;
         }
 
-        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
-        queryWrapper.between("create_time", startTime, endTime);
-        List<Orders> orders = ordersMapper.selectList(queryWrapper);
-
-        Map<String, Long> statusDistribution = orders.stream()
-                .collect(Collectors.groupingBy(
-                        order -> order.getStatus() != null ? order.getStatus() : "UNKNOWN",
-                        Collectors.counting()
-                ));
+        // 数据库中的状态值为小写枚举，统一转换为状态码
+        Map<String, Long> statusDistribution = new LinkedHashMap<>();
+        for (OrderGroupCount row : ordersMapper.countByStatus(startTime, endTime)) {
+            statusDistribution.merge(normalizeStatus(row.getGroupKey()), row.getOrderCount(), Long::sum);
+        }
 
         // 确保所有状态都有值（即使为0）
         String[] allStatuses = {"PENDING", "PAID", "SHIPPED", "COMPLETED", "CANCELLED"};
@@ -123,26 +126,7 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
     @Override
     public Map<Long, Integer> getUserActivityStats(int minutes, int topN) {
         LocalDateTime startTime = LocalDateTime.now().minusMinutes(minutes);
-
-        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
-        queryWrapper.ge("create_time", startTime);
-        List<Orders> orders = ordersMapper.selectList(queryWrapper);
-
-        Map<Long, Integer> userActivityMap = orders.stream()
-                .collect(Collectors.groupingBy(
-                        order -> (long) order.getUserId(),
-                        Collectors.collectingAndThen(Collectors.counting(), Math::toIntExact)
-                ));
-
-        return userActivityMap.entrySet().stream()
-                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
-                .limit(topN)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        return toUserCountMap(ordersMapper.countByUser(startTime, 1, topN));
     }
 
     @Override
@@ -154,28 +138,35 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
             return cachedStats;
         }
 
-        LocalDateTime startTime = LocalDateTime.now().minusMinutes(minutes);
+        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime startTime = endTime.minusMinutes(minutes);
 
-        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
-        queryWrapper.ge("create_time", startTime);
-        List<Orders> orders = ordersMapper.selectList(queryWrapper);
+        if (rollupService.covers(startTime)) {
+            OrderRollupSummary summary = rollupService.summarize(startTime, endTime);
+            if (summary.getOrderCount() == 0) {
+                return new OrderAmountStats(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0);
+            }
+            int orderCount = (int) summary.getOrderCount();
+            BigDecimal avgAmount = summary.getTotalAmount().divide(BigDecimal.valueOf(orderCount), 2, RoundingMode.HALF_UP);
+            OrderAmountStats stats = new OrderAmountStats(summary.getTotalAmount(),
+                    Objects.requireNonNullElse(summary.getMaxAmount(), BigDecimal.ZERO),
+                    Objects.requireNonNullElse(summary.getMinAmount(), BigDecimal.ZERO),
+                    avgAmount, orderCount);
+            redisTemplate.opsForValue().set(cacheKey, stats, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
+            return stats;
+        }
 
-        if (orders.isEmpty()) {
+        OrderWindowAggregate aggregate = ordersMapper.aggregateWindow(startTime, null);
+        if (aggregate.getOrderCount() == 0) {
             return new OrderAmountStats(BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0);
         }
 
-        List<BigDecimal> amounts = orders.stream()
-                .map(Orders::getTotalAmount)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        BigDecimal totalAmount = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal maxAmount = amounts.stream().max(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-        BigDecimal minAmount = amounts.stream().min(BigDecimal::compareTo).orElse(BigDecimal.ZERO);
-        BigDecimal avgAmount = amounts.isEmpty() ? BigDecimal.ZERO :
-                totalAmount.divide(BigDecimal.valueOf(amounts.size()), 2, RoundingMode.HALF_UP);
-
-        OrderAmountStats stats = new OrderAmountStats(totalAmount, maxAmount, minAmount, avgAmount, amounts.size());
+        int orderCount = Math.toIntExact(aggregate.getOrderCount());
+        BigDecimal avgAmount = aggregate.getTotalAmount().divide(BigDecimal.valueOf(orderCount), 2, RoundingMode.HALF_UP);
+        OrderAmountStats stats = new OrderAmountStats(aggregate.getTotalAmount(),
+                Objects.requireNonNullElse(aggregate.getMaxAmount(), BigDecimal.ZERO),
+                Objects.requireNonNullElse(aggregate.getMinAmount(), BigDecimal.ZERO),
+                avgAmount, orderCount);
 
         redisTemplate.opsForValue().set(cacheKey, stats, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
         return stats;
@@ -183,17 +174,9 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
 
     @Override
     public Map<Long, Integer> detectHighFrequencyUsers(int minutes, int threshold) {
-        Map<Long, Integer> userActivity = getUserActivityStats(minutes, 1000); // 获取所有用户活动
-
-        return userActivity.entrySet().stream()
-                .filter(entry -> entry.getValue() >= threshold)
-                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        LocalDateTime startTime = LocalDateTime.now().minusMinutes(minutes);
+        // 阈值在数据库中用 HAVING 过滤，最多返回1000个用户
+        return toUserCountMap(ordersMapper.countByUser(startTime, Math.max(1, threshold), 1000));
     }
 
     @Override
@@ -209,10 +192,6 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime = endTime.minusHours(hours);
 
-        QueryWrapper<Orders> queryWrapper = new QueryWrapper<>();
-        queryWrapper.between("create_time", startTime, endTime);
-        List<Orders> orders = ordersMapper.selectList(queryWrapper);
-
         // 按小时分组统计
         Map<String, Integer> hourlyStats = new LinkedHashMap<>();
 
@@ -223,15 +202,57 @@ public class OrderStatisticsServiceImpl implements OrderStatisticsService {
             hourlyStats.put(hourKey, 0);
         }
 
-        // 统计每小时的订单数
-        for (Orders order : orders) {
-            if (order.getCreateTime() != null) {
-                String hourKey = order.getCreateTime().format(DateTimeFormatter.ofPattern("MM-dd HH:00"));
-                hourlyStats.put(hourKey, hourlyStats.getOrDefault(hourKey, 0) + 1);
+        if (rollupService.covers(startTime)) {
+            // 分钟汇总已按小时合并
+            OrderRollupSummary summary = rollupService.summarize(startTime, endTime);
+            for (Map.Entry<LocalDateTime, Long> entry : summary.getHourlyOrderCounts().entrySet()) {
+                String hourKey = entry.getKey().format(DateTimeFormatter.ofPattern("MM-dd HH:00"));
+                hourlyStats.merge(hourKey, Math.toIntExact(entry.getValue()), Integer::sum);
+            }
+        } else {
+            // 统计每小时的订单数（数据库按小时分组）
+            for (OrderGroupCount row : ordersMapper.countByHour(startTime, endTime)) {
+                hourlyStats.merge(row.getGroupKey(), Math.toIntExact(row.getOrderCount()), Integer::sum);
             }
         }
 
         redisTemplate.opsForValue().set(cacheKey, hourlyStats, CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES);
         return hourlyStats;
     }
+
+    @Override
+    public Map<String, Long> getStatusTransitionStats(int minutes) {
+        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime startTime = endTime.minusMinutes(minutes);
+        if (!rollupService.covers(startTime)) {
+            // orders 表只保存当前状态，状态转入次数只能从分钟汇总得到
+            throw new IllegalArgumentException("时间窗口超出状态变更汇总的覆盖范围");
+        }
+
+        Map<String, Long> transitions = new LinkedHashMap<>();
+        for (OrderStatus status : OrderStatus.values()) {
+            transitions.put(status.getCode(), 0L);
+        }
+        transitions.putAll(rollupService.summarize(startTime, endTime).getStatusTransitions());
+        return transitions;
+    }
+
+    private Map<Long, Integer> toUserCountMap(List<UserOrderCount> rows) {
+        Map<Long, Integer> userCounts = new LinkedHashMap<>();
+        for (UserOrderCount row : rows) {
+            userCounts.put(row.getUserId(), row.getOrderCount());
+        }
+        return userCounts;
+    }
+
+    private String normalizeStatus(String status) {
+        if (status == null) {
+            return "UNKNOWN";
+        }
+        try {
+            return OrderStatus.fromCode(status).getCode();
+        } catch (IllegalArgumentException e) {
+            return status;
+        }
+    }
 }
@@ -0,0 +1,481 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.entity.ProductInventoryBucket;
+import com.cloudDemo.orderservice.exception.InsufficientStockException;
+import com.cloudDemo.orderservice.mapper.ProductInventoryBucketMapper;
+import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import com.cloudDemo.orderservice.service.DistributedLockService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 热点商品分桶库存服务（SHARDED模式）
+ * 将商品的库存拆分到 product_inventory_bucket 的N个子桶中，Redis中为每个桶维护一份计数器
+ * （inventory:bucket:{productId}:{bucketNo}，HASH：a 可用、r 预扣、s 已售），可用数量作为预扣的准入判断，
+ * 查询库存时各桶计数器之和即为商品库存，计数器缺失时才回源数据库。
+ * 预扣时按线程哈希选择起始桶，桶内不足时依次尝试相邻的桶；每个桶都是独立的条件UPDATE，
+ * 不再需要商品级的分布式锁，同一商品的吞吐可以随实例数线性扩展。
+ * 注意：分桶后 product_inventory 主记录中的可用/预扣/已售数量不再更新，库存总量以各桶之和为准。
+ * 各实例在本地缓存商品的分桶数量，重新拆分时通过Redis发布订阅通知所有实例清除，
+ * 通知丢失时由缓存过期时间兜底。
+ */
+@Slf4j
+@Service
+public class InventoryBucketService implements MessageListener {
+
+    public static final String BUCKET_KEY_PREFIX = "inventory:bucket:";
+    public static final String RESPLIT_CHANNEL = "inventory:bucket:resplit";
+    private static final Duration BUCKET_COUNT_TTL = Duration.ofMinutes(1);
+
+    private static final String FIELD_AVAILABLE = "a";
+    private static final String FIELD_RESERVED = "r";
+    private static final String FIELD_SOLD = "s";
+    private static final List<Object> COUNTER_FIELDS = List.of(FIELD_AVAILABLE, FIELD_RESERVED, FIELD_SOLD);
+
+    /**
+     * 从桶计数器中预扣（可用 -> 预扣）：1 成功，0 不足，-1 计数器未加载
+     */
+    private static final RedisScript<Long> TAKE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[1], 'a')\n" +
+                    "if not current then return -1 end\n" +
+                    "local quantity = tonumber(ARGV[1])\n" +
+                    "if tonumber(current) < quantity then return 0 end\n" +
+                    "redis.call('HINCRBY', KEYS[1], 'a', -quantity)\n" +
+                    "redis.call('HINCRBY', KEYS[1], 'r', quantity)\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 在桶计数器的两个字段之间转移数量（ARGV: 源字段, 目标字段, 数量），计数器未加载时不处理（下次从数据库加载）
+     */
+    private static final RedisScript<Long> MOVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+                    "local quantity = tonumber(ARGV[3])\n" +
+                    "redis.call('HINCRBY', KEYS[1], ARGV[1], -quantity)\n" +
+                    "redis.call('HINCRBY', KEYS[1], ARGV[2], quantity)\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 计数器不存在时按数据库中的桶记录加载（ARGV: 可用, 预扣, 已售）
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+                    "redis.call('HSET', KEYS[1], 'a', ARGV[1], 'r', ARGV[2], 's', ARGV[3])\n" +
+                    "return 1",
+            Long.class);
+
+    // 每个商品实际的分桶数量（以数据库为准，配置变更不影响已分桶的商品）
+    private final Cache<String, Integer> bucketCounts = Caffeine.newBuilder()
+            .expireAfterWrite(BUCKET_COUNT_TTL)
+            .build();
+
+    @Autowired
+    private ProductInventoryBucketMapper bucketMapper;
+    @Autowired
+    private ProductInventoryMapper inventoryMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private DistributedLockService lockService;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(RESPLIT_CHANNEL));
+    }
+
+    /**
+     * 接收其他实例（以及本实例）发布的重新拆分通知，清除本地缓存的分桶数量
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        bucketCounts.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 预扣库存：优先单桶扣减，所有单桶都不足时再跨桶凑齐
+     */
+    public boolean reserve(String productId, Integer quantity) {
+        int buckets = getBucketCount(productId);
+        int start = preferredBucket(buckets);
+
+        for (int i = 0; i < buckets; i++) {
+            int bucketNo = (start + i) % buckets;
+            if (!takeFromCounter(productId, bucketNo, quantity)) {
+                continue;
+            }
+            int updated;
+            try {
+                updated = bucketMapper.reserveFromBucket(productId, bucketNo, quantity);
+            } catch (RuntimeException e) {
+                // 数据库扣减失败，归还已提前扣减的Redis计数
+                moveCounter(productId, bucketNo, FIELD_RESERVED, FIELD_AVAILABLE, quantity);
+                throw e;
+            }
+            if (updated == 1) {
+                log.debug("分桶预扣成功，商品: {}, 桶: {}, 数量: {}", productId, bucketNo, quantity);
+                return true;
+            }
+            // Redis计数器与数据库不一致，删除后下次从数据库重新加载
+            stringRedisTemplate.delete(bucketKey(productId, bucketNo));
+        }
+
+        return applyAcrossBuckets(productId, quantity, BucketOperation.RESERVE);
+    }
+
+    /**
+     * 确认扣减：从任意持有足够预扣库存的桶中确认
+     */
+    public boolean confirm(String productId, Integer quantity) {
+        int buckets = getBucketCount(productId);
+        int start = preferredBucket(buckets);
+
+        for (int i = 0; i < buckets; i++) {
+            int bucketNo = (start + i) % buckets;
+            if (bucketMapper.confirmFromBucket(productId, bucketNo, quantity) == 1) {
+                moveCounter(productId, bucketNo, FIELD_RESERVED, FIELD_SOLD, quantity);
+                return true;
+            }
+        }
+        return applyAcrossBuckets(productId, quantity, BucketOperation.CONFIRM);
+    }
+
+    /**
+     * 释放预扣：归还到任意持有足够预扣库存的桶
+     */
+    public boolean release(String productId, Integer quantity) {
+        int buckets = getBucketCount(productId);
+        int start = preferredBucket(buckets);
+
+        for (int i = 0; i < buckets; i++) {
+            int bucketNo = (start + i) % buckets;
+            if (bucketMapper.releaseToBucket(productId, bucketNo, quantity) == 1) {
+                moveCounter(productId, bucketNo, FIELD_RESERVED, FIELD_AVAILABLE, quantity);
+                return true;
+            }
+        }
+        return applyAcrossBuckets(productId, quantity, BucketOperation.RELEASE);
+    }
+
+    /**
+     * 用各桶之和覆盖库存对象的数量字段（商品未分桶时保持原值）
+     * 优先一次管道读取各桶的Redis计数器求和；分桶数量未缓存或任一计数器缺失时读取数据库中的桶记录，
+     * 并加载缺失的计数器，之后的查询不再回源
+     */
+    public void overlayBucketTotals(ProductInventory inventory) {
+        String productId = inventory.getProductId();
+        Integer buckets = bucketCounts.getIfPresent(productId);
+        if (buckets != null && overlayFromCounters(inventory, buckets)) {
+            return;
+        }
+
+        List<ProductInventoryBucket> rows = bucketMapper.selectList(new QueryWrapper<ProductInventoryBucket>()
+                .eq("product_id", productId));
+        if (rows.isEmpty()) {
+            return;
+        }
+        bucketCounts.put(productId, rows.size());
+        int available = 0;
+        int reserved = 0;
+        int sold = 0;
+        for (ProductInventoryBucket row : rows) {
+            available += row.getAvailableStock();
+            reserved += row.getReservedStock();
+            sold += row.getSoldStock();
+            loadCounter(productId, row);
+        }
+        inventory.setAvailableStock(available);
+        inventory.setReservedStock(reserved);
+        inventory.setSoldStock(sold);
+    }
+
+    /**
+     * @return 全部计数器都存在并已覆盖时返回 true
+     */
+    private boolean overlayFromCounters(ProductInventory inventory, int buckets) {
+        String productId = inventory.getProductId();
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (int i = 0; i < buckets; i++) {
+                    ops.opsForHash().multiGet(bucketKey(productId, i), COUNTER_FIELDS);
+                }
+                return null;
+            }
+        });
+
+        int[] totals = new int[COUNTER_FIELDS.size()];
+        for (Object result : results) {
+            List<?> values = (List<?>) result;
+            for (int field = 0; field < totals.length; field++) {
+                Object value = values == null ? null : values.get(field);
+                if (value == null) {
+                    return false;
+                }
+                totals[field] += Integer.parseInt(value.toString());
+            }
+        }
+        inventory.setAvailableStock(totals[0]);
+        inventory.setReservedStock(totals[1]);
+        inventory.setSoldStock(totals[2]);
+        return true;
+    }
+
+    /**
+     * 将商品主记录的库存拆分到N个桶中
+     *
+     * @param productId 商品ID
+     * @param force     已分桶时是否重新拆分
+     * @return 分桶数量
+     */
+    public int splitInventory(String productId, boolean force) {
+        String lockKey = lockService.getInventoryLockKey(productId);
+        int[] previousCount = {0};
+        int bucketCount = lockService.executeWithLock(lockKey, () -> transactionTemplate.execute(status -> {
+            ProductInventoryBucket existing = bucketMapper.sumBuckets(productId);
+            if (existing != null && !force) {
+                return existing.getBucketNo();
+            }
+            previousCount[0] = existing == null ? 0 : existing.getBucketNo();
+
+            ProductInventory inventory = inventoryMapper.selectOne(
+                    new QueryWrapper<ProductInventory>().eq("product_id", productId));
+            if (inventory == null) {
+                throw new RuntimeException("商品不存在");
+            }
+
+            int buckets = Math.max(1, inventoryProperties.getShard().getBucketCount());
+            int[] available = split(inventory.getAvailableStock(), buckets);
+            int[] reserved = split(inventory.getReservedStock(), buckets);
+            int[] sold = split(inventory.getSoldStock(), buckets);
+
+            bucketMapper.delete(new QueryWrapper<ProductInventoryBucket>().eq("product_id", productId));
+            for (int i = 0; i < buckets; i++) {
+                ProductInventoryBucket bucket = new ProductInventoryBucket();
+                bucket.setProductId(productId);
+                bucket.setBucketNo(i);
+                bucket.setAvailableStock(available[i]);
+                bucket.setReservedStock(reserved[i]);
+                bucket.setSoldStock(sold[i]);
+                bucket.setUpdateTime(LocalDateTime.now());
+                bucketMapper.insert(bucket);
+            }
+            return buckets;
+        }));
+
+        // 桶数变少时多出的旧桶计数器一并删除
+        List<String> counterKeys = new ArrayList<>();
+        for (int i = 0; i < Math.max(bucketCount, previousCount[0]); i++) {
+            counterKeys.add(bucketKey(productId, i));
+        }
+        stringRedisTemplate.delete(counterKeys);
+        bucketCounts.put(productId, bucketCount);
+        if (previousCount[0] > 0) {
+            publishResplit(productId);
+        }
+
+        log.info("商品库存分桶完成，商品: {}, 桶数: {}", productId, bucketCount);
+        return bucketCount;
+    }
+
+    /**
+     * 删除商品的全部桶计数器，下次使用时从数据库重新加载
+     * 用于数据库事务回滚后纠正已提前扣减的Redis计数
+     */
+    public void evictCounters(Collection<String> productIds) {
+        List<String> counterKeys = new ArrayList<>();
+        for (String productId : productIds) {
+            int buckets = getBucketCount(productId);
+            for (int i = 0; i < buckets; i++) {
+                counterKeys.add(bucketKey(productId, i));
+            }
+        }
+        if (!counterKeys.isEmpty()) {
+            stringRedisTemplate.delete(counterKeys);
+        }
+    }
+
+    /**
+     * 所有单桶都无法满足时，在商品锁保护下跨桶凑齐数量（单个事务内完成）
+     */
+    private boolean applyAcrossBuckets(String productId, Integer quantity, BucketOperation operation) {
+        String lockKey = lockService.getInventoryLockKey(productId);
+        List<Integer> touched = lockService.executeWithLock(lockKey, () -> transactionTemplate.execute(status -> {
+            List<ProductInventoryBucket> buckets = bucketMapper.selectList(
+                    new QueryWrapper<ProductInventoryBucket>().eq("product_id", productId).orderByAsc("bucket_no"));
+
+            int total = buckets.stream().mapToInt(operation::source).sum();
+            if (total < quantity) {
+                log.warn("{}，商品: {}, 各桶合计: {}, 需要: {}", operation.shortageMessage, productId, total, quantity);
+                throw new InsufficientStockException(operation.shortageMessage);
+            }
+
+            List<Integer> used = new ArrayList<>();
+            int remaining = quantity;
+            for (ProductInventoryBucket bucket : buckets) {
+                int take = Math.min(remaining, operation.source(bucket));
+                if (take <= 0) {
+                    continue;
+                }
+                if (operation.apply(bucketMapper, productId, bucket.getBucketNo(), take) == 0) {
+                    throw new RuntimeException("库存更新失败，请重试");
+                }
+                used.add(bucket.getBucketNo());
+                remaining -= take;
+                if (remaining == 0) {
+                    break;
+                }
+            }
+            return used;
+        }));
+
+        // 各操作都会改变计数器中的字段，删除后下次从数据库重新加载
+        List<String> counterKeys = new ArrayList<>();
+        for (Integer bucketNo : touched) {
+            counterKeys.add(bucketKey(productId, bucketNo));
+        }
+        stringRedisTemplate.delete(counterKeys);
+        log.info("跨桶库存操作成功，商品: {}, 操作: {}, 数量: {}, 涉及桶: {}", productId, operation, quantity, touched);
+        return true;
+    }
+
+    private int getBucketCount(String productId) {
+        Integer count = bucketCounts.getIfPresent(productId);
+        if (count != null) {
+            return count;
+        }
+        ProductInventoryBucket total = bucketMapper.sumBuckets(productId);
+        if (total == null) {
+            // 首次使用时按当前库存懒拆分
+            return splitInventory(productId, false);
+        }
+        bucketCounts.put(productId, total.getBucketNo());
+        return total.getBucketNo();
+    }
+
+    private boolean takeFromCounter(String productId, int bucketNo, int quantity) {
+        String key = bucketKey(productId, bucketNo);
+        Long result = stringRedisTemplate.execute(TAKE_SCRIPT, List.of(key), String.valueOf(quantity));
+        if (result != null && result == -1) {
+            ProductInventoryBucket bucket = bucketMapper.selectOne(new QueryWrapper<ProductInventoryBucket>()
+                    .eq("product_id", productId).eq("bucket_no", bucketNo));
+            if (bucket == null) {
+                // 本地缓存的分桶数量已过期（其他实例重新拆分且通知丢失）
+                bucketCounts.invalidate(productId);
+                return false;
+            }
+            loadCounter(productId, bucket);
+            result = stringRedisTemplate.execute(TAKE_SCRIPT, List.of(key), String.valueOf(quantity));
+        }
+        return result != null && result == 1;
+    }
+
+    private void loadCounter(String productId, ProductInventoryBucket bucket) {
+        stringRedisTemplate.execute(LOAD_SCRIPT, List.of(bucketKey(productId, bucket.getBucketNo())),
+                String.valueOf(bucket.getAvailableStock()),
+                String.valueOf(bucket.getReservedStock()),
+                String.valueOf(bucket.getSoldStock()));
+    }
+
+    private void moveCounter(String productId, int bucketNo, String from, String to, int quantity) {
+        stringRedisTemplate.execute(MOVE_SCRIPT, List.of(bucketKey(productId, bucketNo)),
+                from, to, String.valueOf(quantity));
+    }
+
+    private void publishResplit(String productId) {
+        try {
+            stringRedisTemplate.convertAndSend(RESPLIT_CHANNEL, productId);
+        } catch (Exception e) {
+            // 通知失败时其他实例的分桶数量由缓存过期时间兜底
+            log.warn("分桶重新拆分通知发送失败，商品: {}", productId, e);
+        }
+    }
+
+    /**
+     * 按线程哈希选择起始桶，同一线程总是从同一个桶开始，不同线程分散到不同桶
+     */
+    private int preferredBucket(int buckets) {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 33) % buckets);
+    }
+
+    private String bucketKey(String productId, int bucketNo) {
+        return BUCKET_KEY_PREFIX + productId + ":" + bucketNo;
+    }
+
+    /**
+     * 将数量尽量均匀地拆分到N个桶，余数分配给前面的桶
+     */
+    private int[] split(Integer amount, int buckets) {
+        int value = amount == null ? 0 : amount;
+        int[] result = new int[buckets];
+        for (int i = 0; i < buckets; i++) {
+            result[i] = value / buckets + (i < value % buckets ? 1 : 0);
+        }
+        return result;
+    }
+
+    /**
+     * 分桶库存操作类型
+     */
+    private enum BucketOperation {
+        RESERVE("库存不足"),
+        CONFIRM("预扣库存不足"),
+        RELEASE("预扣库存不足");
+
+        private final String shortageMessage;
+
+        BucketOperation(String shortageMessage) {
+            this.shortageMessage = shortageMessage;
+        }
+
+        int source(ProductInventoryBucket bucket) {
+            Integer value = this == RESERVE ? bucket.getAvailableStock() : bucket.getReservedStock();
+            return value == null ? 0 : value;
+        }
+
+        int apply(ProductInventoryBucketMapper mapper, String productId, Integer bucketNo, int quantity) {
+            switch (this) {
+                case RESERVE:
+                    return mapper.reserveFromBucket(productId, bucketNo, quantity);
+                case CONFIRM:
+                    return mapper.confirmFromBucket(productId, bucketNo, quantity);
+                case RELEASE:
+                default:
+                    return mapper.releaseToBucket(productId, bucketNo, quantity);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import com.cloudDemo.orderservice.service.InventoryService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 库存缓存预热
+ * 通过数据库游标流式读取 product_inventory，按批次用Redis管道写入 inventory:{productId} 缓存，
+ * 每批只需一次网络往返，避免发布或Redis故障切换后第一波流量逐个回源数据库。
+ * 启动时在 ApplicationRunner 阶段同步执行：Spring Boot 在所有 Runner 完成后才发布 ACCEPTING_TRAFFIC，
+ * 预热期间就绪探针（/actuator/health/readiness）返回不可用；手动触发时实例已在接收流量，不切换就绪状态。
+ * 预热只写入缓存中不存在的键（SETNX），不会覆盖写穿刷新写入的更新数据。
+ * 预热失败只记录日志，实例仍会接收流量，缓存按原来的方式逐个加载。
+ */
+@Slf4j
+@Service
+public class InventoryCacheWarmer implements ApplicationRunner {
+
+    // 过期时间随机增加的最大比例，避免预热写入的大量缓存在同一时刻集中过期
+    private static final double TTL_JITTER_RATIO = 0.2;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Autowired
+    private ProductInventoryMapper inventoryMapper;
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!inventoryProperties.getPrewarm().isEnabled()) {
+            return;
+        }
+        // 启动阶段标记为不接收流量，由 Spring Boot 在所有 Runner 完成后恢复为 ACCEPTING_TRAFFIC
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        try {
+            warm();
+        } catch (Exception e) {
+            log.error("启动时库存缓存预热失败，缓存将在访问时逐个加载", e);
+        }
+    }
+
+    /**
+     * 执行一次预热，只补齐缓存中缺失的库存记录
+     *
+     * @return 预热统计（记录数、批次数、耗时）
+     */
+    public Map<String, Object> warm() {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("库存缓存预热正在进行中");
+        }
+        try {
+            return load();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 是否正在预热
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private Map<String, Object> load() {
+        int batchSize = Math.max(1, inventoryProperties.getPrewarm().getBatchSize());
+        long startTime = System.currentTimeMillis();
+        log.info("开始预热库存缓存，批次大小: {}", batchSize);
+
+        long[] counters = readOnlyTransaction.execute(status -> {
+            long rows = 0;
+            long batches = 0;
+            List<ProductInventory> batch = new ArrayList<>(batchSize);
+            try (Cursor<ProductInventory> cursor = inventoryMapper.streamAll()) {
+                for (ProductInventory inventory : cursor) {
+                    batch.add(inventory);
+                    if (batch.size() >= batchSize) {
+                        writeBatch(batch);
+                        rows += batch.size();
+                        batches++;
+                        batch.clear();
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("关闭库存游标失败", e);
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                rows += batch.size();
+                batches++;
+            }
+            return new long[]{rows, batches};
+        });
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rows", counters[0]);
+        stats.put("batches", counters[1]);
+        stats.put("elapsedMs", elapsed);
+        log.info("库存缓存预热完成，记录数: {}, 批次数: {}, 耗时: {}ms", counters[0], counters[1], elapsed);
+        return stats;
+    }
+
+    private void writeBatch(List<ProductInventory> batch) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (ProductInventory inventory : batch) {
+                    // 游标读到的可能已是旧数据，已存在的缓存由写穿刷新维护，不覆盖
+                    ops.opsForValue().setIfAbsent(InventoryService.INVENTORY_CACHE_KEY + inventory.getProductId(),
+                            inventory, jitteredTtl(), TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+    private long jitteredTtl() {
+        long base = InventoryService.CACHE_EXPIRE_TIME;
+        return base + ThreadLocalRandom.current().nextLong((long) (base * TTL_JITTER_RATIO) + 1);
+    }
+}
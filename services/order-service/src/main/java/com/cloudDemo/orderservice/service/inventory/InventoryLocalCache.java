@@ -0,0 +1,118 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * 库存进程内一级缓存（L1）
+ * 位于Redis缓存（L2）之前，容量有界、短TTL，热点商品的查询无需访问Redis和反序列化。
+ * 库存变更时通过Redis发布订阅通知所有订单服务实例清除本地缓存，
+ * 通知丢失（如订阅连接断开）时由TTL兜底，最长只会读到TTL时长内的旧数据。
+ */
+@Slf4j
+@Component
+public class InventoryLocalCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "inventory:cache:invalidate";
+
+    // 失效消息格式：类型:商品ID
+    private static final String MSG_EVICT = "EVICT:";
+    private static final String MSG_EVICT_ALL = "EVICT_ALL";
+
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private Cache<String, ProductInventory> cache;
+
+    @PostConstruct
+    public void init() {
+        InventoryProperties.LocalCache config = inventoryProperties.getLocalCache();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(Duration.ofMillis(config.getTtlMs()))
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.info("库存本地缓存已启用: {}, 容量: {}, TTL: {}ms",
+                config.isEnabled(), config.getMaximumSize(), config.getTtlMs());
+    }
+
+    /**
+     * 查询本地缓存，未命中返回null
+     */
+    public ProductInventory get(String productId) {
+        if (!inventoryProperties.getLocalCache().isEnabled()) {
+            return null;
+        }
+        return cache.getIfPresent(productId);
+    }
+
+    public void put(ProductInventory inventory) {
+        if (inventoryProperties.getLocalCache().isEnabled()) {
+            cache.put(inventory.getProductId(), inventory);
+        }
+    }
+
+    /**
+     * 清除本实例缓存并通知其他实例（未启用本地缓存时不发送通知）
+     */
+    public void invalidate(String productId) {
+        if (!inventoryProperties.getLocalCache().isEnabled()) {
+            return;
+        }
+        cache.invalidate(productId);
+        publish(MSG_EVICT + productId);
+    }
+
+    /**
+     * 清除本实例全部缓存并通知其他实例（未启用本地缓存时不发送通知）
+     */
+    public void invalidateAll() {
+        if (!inventoryProperties.getLocalCache().isEnabled()) {
+            return;
+        }
+        cache.invalidateAll();
+        publish(MSG_EVICT_ALL);
+    }
+
+    /**
+     * 接收其他实例（以及本实例）发布的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(MSG_EVICT)) {
+            cache.invalidate(body.substring(MSG_EVICT.length()));
+        } else if (MSG_EVICT_ALL.equals(body)) {
+            cache.invalidateAll();
+        } else {
+            log.warn("未知的库存缓存失效消息: {}", body);
+        }
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // 通知失败不影响主流程，其他实例的本地缓存由TTL兜底过期
+            log.warn("库存缓存失效通知发送失败: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.enums.InventoryOperation;
+import com.cloudDemo.orderservice.exception.InsufficientStockException;
+import com.cloudDemo.orderservice.exception.InventoryConflictException;
+import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import com.cloudDemo.orderservice.metrics.InventoryMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 无锁乐观库存服务（OPTIMISTIC模式）
+ * 条件UPDATE本身已按版本号和库存数量做了校验，不再额外获取Redisson分布式锁：
+ * 直接读取数据库当前版本并条件更新，未命中时区分"库存不足"和"版本冲突"，
+ * 只有版本冲突才按指数退避 + 随机抖动重试，超过最大尝试次数后放弃。
+ * 没有外层事务时重试循环在事务之外执行（每条语句自动提交），否则可重复读隔离级别下重新查询仍会读到旧快照；
+ * 调用方已开启事务时加入该事务，不挂起外层事务，改为一条按库存条件的UPDATE（当前读 + 行锁）完成变更。
+ */
+@Slf4j
+@Service
+public class InventoryOptimisticService {
+
+    @Autowired
+    private ProductInventoryMapper inventoryMapper;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private InventoryMetrics inventoryMetrics;
+
+    /**
+     * 预扣库存：available -> reserved
+     */
+    public boolean reserve(String productId, Integer quantity) {
+        return update(productId, quantity, InventoryOperation.RESERVE);
+    }
+
+    /**
+     * 确认扣减：reserved -> sold
+     */
+    public boolean confirm(String productId, Integer quantity) {
+        return update(productId, quantity, InventoryOperation.CONFIRM);
+    }
+
+    /**
+     * 释放预扣：reserved -> available
+     */
+    public boolean release(String productId, Integer quantity) {
+        return update(productId, quantity, InventoryOperation.RELEASE);
+    }
+
+    private boolean update(String productId, Integer quantity, InventoryOperation operation) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return updateInTransaction(productId, quantity, operation);
+        }
+        return updateWithRetry(productId, quantity, operation);
+    }
+
+    /**
+     * 在调用方事务中变更：事务内的快照读不会看到其他请求的提交，版本号重试没有意义，
+     * 直接执行带库存条件的UPDATE，随外层事务提交或回滚
+     */
+    private boolean updateInTransaction(String productId, Integer quantity, InventoryOperation operation) {
+        if (inventoryMapper.applyStockDeltasGuarded(List.of(operation.toDelta(productId, quantity))) == 1) {
+            return true;
+        }
+        if (inventoryMapper.selectCount(new QueryWrapper<ProductInventory>().eq("product_id", productId)) == 0) {
+            log.warn("商品不存在: {}", productId);
+            throw new RuntimeException("商品不存在");
+        }
+        String message = operation == InventoryOperation.RESERVE ? "库存不足" : "预扣库存不足";
+        log.warn("{}，商品: {}, 需要: {}", message, productId, quantity);
+        throw new InsufficientStockException(message);
+    }
+
+    private boolean updateWithRetry(String productId, Integer quantity, InventoryOperation operation) {
+        InventoryProperties.Optimistic config = inventoryProperties.getOptimistic();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            ProductInventory inventory = inventoryMapper.selectOne(
+                    new QueryWrapper<ProductInventory>().eq("product_id", productId));
+            if (inventory == null) {
+                log.warn("商品不存在: {}", productId);
+                throw new RuntimeException("商品不存在");
+            }
+
+            int source = operation == InventoryOperation.RESERVE
+                    ? inventory.getAvailableStock() : inventory.getReservedStock();
+            if (source < quantity) {
+                String message = operation == InventoryOperation.RESERVE ? "库存不足" : "预扣库存不足";
+                log.warn("{}，商品: {}, 当前: {}, 需要: {}", message, productId, source, quantity);
+                throw new InsufficientStockException(message);
+            }
+
+            if (execute(productId, quantity, inventory.getVersion(), operation) == 1) {
+                if (attempt > 1) {
+                    log.debug("乐观更新重试后成功，商品: {}, 操作: {}, 尝试次数: {}", productId, operation, attempt);
+                }
+                return true;
+            }
+
+            // 库存充足但未命中，说明版本号已被其他请求修改
+            inventoryMetrics.incrementOptimisticConflict(operation);
+            if (attempt < maxAttempts) {
+                inventoryMetrics.incrementOptimisticRetry(operation);
+                backoff(attempt, config);
+            }
+        }
+
+        inventoryMetrics.incrementOptimisticExhausted(operation);
+        log.warn("乐观更新冲突次数超过上限，商品: {}, 操作: {}, 最大尝试次数: {}", productId, operation, maxAttempts);
+        throw new InventoryConflictException("库存更新冲突，请重试");
+    }
+
+    private int execute(String productId, Integer quantity, Integer version, InventoryOperation operation) {
+        switch (operation) {
+            case RESERVE:
+                return inventoryMapper.reserveStockWithVersion(productId, quantity, version);
+            case CONFIRM:
+                return inventoryMapper.confirmStockReduction(productId, quantity, version);
+            case RELEASE:
+            default:
+                return inventoryMapper.releaseReservedStock(productId, quantity, version);
+        }
+    }
+
+    /**
+     * 指数退避 + 全量随机抖动：在 [0, min(最大退避, 基础退避 * 2^(attempt-1))] 内随机等待，
+     * 避免冲突的请求在同一时刻再次碰撞
+     */
+    private void backoff(int attempt, InventoryProperties.Optimistic config) {
+        long ceiling = Math.min(config.getMaxBackoffMs(), config.getBaseBackoffMs() << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("操作被中断");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.InventoryReservation;
+import com.cloudDemo.orderservice.service.InventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 预扣库存归还
+ * 按商品合并数量后通过批量释放接口一次归还；批量释放失败时逐个商品重试，仍失败的记录延后放回延时队列，
+ * 由过期预扣清理任务再次处理。记录都是先原子认领再释放的，同一条预扣不会被重复归还。
+ */
+@Slf4j
+@Service
+public class InventoryReservationReleaser {
+
+    @Autowired
+    private InventoryReservationStore reservationStore;
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+
+    /**
+     * 认领并归还订单关联的全部预扣库存（订单取消时调用）
+     * 订单与商品数量的对应关系只保存在预扣记录中，需开启 inventory.reservation.enabled；
+     * 未开启时没有可归还的记录，直接返回0，库存需由调用方按商品释放
+     *
+     * @return 归还的预扣记录数
+     */
+    public int releaseByOrders(Collection<String> orderNos) {
+        if (!inventoryProperties.getReservation().isEnabled()) {
+            log.debug("未开启预扣有效期，跳过按订单归还预扣库存，订单数: {}", orderNos.size());
+            return 0;
+        }
+        List<InventoryReservation> claimed = new ArrayList<>();
+        for (String orderNo : orderNos) {
+            claimed.addAll(reservationStore.claimByOrder(orderNo));
+        }
+        if (!claimed.isEmpty()) {
+            release(claimed);
+        }
+        return claimed.size();
+    }
+
+    /**
+     * 归还一批已认领的预扣记录
+     */
+    public void release(List<InventoryReservation> claimed) {
+        Map<String, Integer> quantities = new TreeMap<>();
+        for (InventoryReservation reservation : claimed) {
+            quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+        }
+
+        try {
+            inventoryService.releaseStockBatch(quantities);
+            log.info("预扣库存已释放，记录数: {}, 商品数: {}", claimed.size(), quantities.size());
+            return;
+        } catch (Exception e) {
+            log.warn("预扣库存批量释放失败，改为逐个商品释放，商品数: {}", quantities.size(), e);
+        }
+
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            try {
+                inventoryService.releaseStock(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                log.error("预扣库存释放失败，稍后重试，商品: {}, 数量: {}", entry.getKey(), entry.getValue(), e);
+                requeue(claimed, entry.getKey());
+            }
+        }
+    }
+
+    private void requeue(List<InventoryReservation> claimed, String productId) {
+        long retryAt = System.currentTimeMillis() + inventoryProperties.getReservation().getRetryDelaySeconds() * 1000;
+        for (InventoryReservation reservation : claimed) {
+            if (reservation.getProductId().equals(productId)) {
+                reservation.setDeadline(retryAt);
+                reservationStore.save(reservation);
+            }
+        }
+    }
+}
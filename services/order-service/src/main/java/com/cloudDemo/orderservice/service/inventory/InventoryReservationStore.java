@@ -0,0 +1,232 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.dto.InventoryReservation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 库存预扣记录存储（Redis延时队列）
+ * inventory:reservation:deadline  ZSET，成员为预扣ID，分值为到期时间，按时间有序，取到期记录为 O(log N + M)；
+ * inventory:reservation:data      HASH，预扣ID -> "数量|到期时间|商品ID长度|商品ID订单号"（商品ID按长度截取，可以包含任意字符）；
+ * inventory:reservation:order:{订单号}  SET，订单关联的预扣ID。
+ * 确认、释放和到期清理都通过"认领"脚本原子地删除记录，同一条预扣只会被其中一方处理。
+ * 脚本访问的键全部通过 KEYS 传入；认领时不知道订单号的（按ID认领、到期清理），认领后再从订单集合中移除，
+ * 订单集合中残留的ID认领时返回空，不影响结果。
+ */
+@Slf4j
+@Service
+public class InventoryReservationStore {
+
+    public static final String DEADLINE_KEY = "inventory:reservation:deadline";
+    public static final String DATA_KEY = "inventory:reservation:data";
+    public static final String ORDER_KEY_PREFIX = "inventory:reservation:order:";
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 登记预扣记录：KEYS[3]（可选）为订单集合
+     */
+    private static final RedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])\n" +
+                    "redis.call('HSET', KEYS[2], ARGV[1], ARGV[3])\n" +
+                    "if KEYS[3] then redis.call('SADD', KEYS[3], ARGV[1]) end\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 认领指定预扣记录，返回记录内容，不存在（已被确认、释放或清理）时返回空；
+     * KEYS[3]（可选）为已知的订单集合，认领时一并移除
+     */
+    private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then return false end\n" +
+                    "local data = redis.call('HGET', KEYS[2], ARGV[1])\n" +
+                    "if not data then return false end\n" +
+                    "redis.call('HDEL', KEYS[2], ARGV[1])\n" +
+                    "if KEYS[3] then redis.call('SREM', KEYS[3], ARGV[1]) end\n" +
+                    "return data",
+            String.class);
+
+    /**
+     * 认领一批已到期的预扣记录，返回 {预扣ID1, 内容1, 预扣ID2, 内容2, ...}，订单集合由调用方清理
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_EXPIRED_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])\n" +
+                    "local result = {}\n" +
+                    "for _, id in ipairs(ids) do\n" +
+                    "  redis.call('ZREM', KEYS[1], id)\n" +
+                    "  local data = redis.call('HGET', KEYS[2], id)\n" +
+                    "  if data then\n" +
+                    "    redis.call('HDEL', KEYS[2], id)\n" +
+                    "    table.insert(result, id)\n" +
+                    "    table.insert(result, data)\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return result",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 登记一条预扣记录
+     *
+     * @param productId  商品ID
+     * @param quantity   预扣数量
+     * @param orderNo    关联订单号（可为空）
+     * @param ttlSeconds 有效期（秒）
+     * @return 预扣记录
+     */
+    public InventoryReservation register(String productId, int quantity, String orderNo, long ttlSeconds) {
+        InventoryReservation reservation = create(productId, quantity, orderNo, ttlSeconds);
+        save(reservation);
+        return reservation;
+    }
+
+    /**
+     * 生成预扣记录但不登记（库存变更提交后再调用 save 登记）
+     */
+    public InventoryReservation create(String productId, int quantity, String orderNo, long ttlSeconds) {
+        return new InventoryReservation(UUID.randomUUID().toString().replace("-", ""),
+                productId, quantity, orderNo, System.currentTimeMillis() + ttlSeconds * 1000);
+    }
+
+    /**
+     * 重新登记（处理失败时放回队列）
+     */
+    public void save(InventoryReservation reservation) {
+        stringRedisTemplate.execute(REGISTER_SCRIPT, keys(reservation.getOrderNo()),
+                reservation.getReservationId(),
+                String.valueOf(reservation.getDeadline()),
+                encode(reservation));
+    }
+
+    /**
+     * 认领指定预扣记录
+     *
+     * @return 预扣记录，已被其他操作处理时返回null
+     */
+    public InventoryReservation claim(String reservationId) {
+        InventoryReservation reservation = claim(reservationId, null);
+        if (reservation != null && reservation.getOrderNo() != null) {
+            stringRedisTemplate.opsForSet().remove(ORDER_KEY_PREFIX + reservation.getOrderNo(), reservationId);
+        }
+        return reservation;
+    }
+
+    private InventoryReservation claim(String reservationId, String orderNo) {
+        String data = stringRedisTemplate.execute(CLAIM_SCRIPT, keys(orderNo), reservationId);
+        return data == null ? null : decode(reservationId, data);
+    }
+
+    /**
+     * 认领订单关联的全部预扣记录
+     */
+    public List<InventoryReservation> claimByOrder(String orderNo) {
+        Set<String> reservationIds = stringRedisTemplate.opsForSet().members(ORDER_KEY_PREFIX + orderNo);
+        List<InventoryReservation> claimed = new ArrayList<>();
+        if (reservationIds == null) {
+            return claimed;
+        }
+        for (String reservationId : reservationIds) {
+            InventoryReservation reservation = claim(reservationId, orderNo);
+            if (reservation != null) {
+                claimed.add(reservation);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 认领一批已到期的预扣记录
+     *
+     * @param now   当前时间（毫秒时间戳）
+     * @param limit 最多认领条数
+     */
+    public List<InventoryReservation> claimExpired(long now, int limit) {
+        List<?> result = stringRedisTemplate.execute(CLAIM_EXPIRED_SCRIPT, List.of(DEADLINE_KEY, DATA_KEY),
+                String.valueOf(now), String.valueOf(limit));
+        List<InventoryReservation> claimed = new ArrayList<>();
+        if (result == null) {
+            return claimed;
+        }
+        Map<String, List<String>> idsByOrder = new HashMap<>();
+        for (int i = 0; i + 1 < result.size(); i += 2) {
+            InventoryReservation reservation = decode((String) result.get(i), (String) result.get(i + 1));
+            claimed.add(reservation);
+            if (reservation.getOrderNo() != null) {
+                idsByOrder.computeIfAbsent(reservation.getOrderNo(), key -> new ArrayList<>())
+                        .add(reservation.getReservationId());
+            }
+        }
+        removeFromOrders(idsByOrder);
+        return claimed;
+    }
+
+    /**
+     * 从订单集合中移除已认领的预扣ID（管道批量执行）；失败只留下残留ID，不影响认领结果
+     */
+    private void removeFromOrders(Map<String, List<String>> idsByOrder) {
+        if (idsByOrder.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    idsByOrder.forEach((orderNo, ids) ->
+                            ops.opsForSet().remove(ORDER_KEY_PREFIX + orderNo, ids.toArray()));
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("清理订单预扣集合失败，订单数: {}", idsByOrder.size(), e);
+        }
+    }
+
+    /**
+     * 待处理的预扣记录数量
+     */
+    public long pendingCount() {
+        Long count = stringRedisTemplate.opsForZSet().zCard(DEADLINE_KEY);
+        return count == null ? 0 : count;
+    }
+
+    private static List<String> keys(String orderNo) {
+        return orderNo == null
+                ? List.of(DEADLINE_KEY, DATA_KEY)
+                : List.of(DEADLINE_KEY, DATA_KEY, ORDER_KEY_PREFIX + orderNo);
+    }
+
+    private String encode(InventoryReservation reservation) {
+        String productId = reservation.getProductId();
+        return reservation.getQuantity() + SEPARATOR + reservation.getDeadline() + SEPARATOR
+                + productId.length() + SEPARATOR + productId
+                + (reservation.getOrderNo() == null ? "" : reservation.getOrderNo());
+    }
+
+    private InventoryReservation decode(String reservationId, String data) {
+        // 前三段都是数字，不含分隔符；商品ID和订单号按商品ID长度切分
+        String[] parts = data.split("\\|", 4);
+        int productIdLength = Integer.parseInt(parts[2]);
+        String productId = parts[3].substring(0, productIdLength);
+        String orderNo = parts[3].length() > productIdLength ? parts[3].substring(productIdLength) : null;
+        return new InventoryReservation(reservationId, productId, Integer.parseInt(parts[0]),
+                orderNo, Long.parseLong(parts[1]));
+    }
+}
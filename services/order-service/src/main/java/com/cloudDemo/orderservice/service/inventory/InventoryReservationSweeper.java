@@ -0,0 +1,54 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.InventoryReservation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 过期预扣清理任务
+ * 定时从延时队列中批量认领已到期的预扣记录，交给 InventoryReservationReleaser 按商品合并后一次归还，
+ * 释放失败的记录延后放回队列。
+ * 认领脚本是原子的，多实例可同时运行而不会重复释放。
+ */
+@Slf4j
+@Service
+public class InventoryReservationSweeper {
+
+    // 单次调度最多处理的批次数，避免长时间占用调度线程
+    private static final int MAX_BATCHES_PER_SWEEP = 20;
+
+    @Autowired
+    private InventoryReservationStore reservationStore;
+    @Autowired
+    private InventoryReservationReleaser reservationReleaser;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweep-interval-ms:1000}")
+    public void sweep() {
+        InventoryProperties.Reservation config = inventoryProperties.getReservation();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            for (int batch = 0; batch < MAX_BATCHES_PER_SWEEP; batch++) {
+                List<InventoryReservation> expired = reservationStore.claimExpired(
+                        System.currentTimeMillis(), config.getSweepBatchSize());
+                if (expired.isEmpty()) {
+                    return;
+                }
+                reservationReleaser.release(expired);
+                if (expired.size() < config.getSweepBatchSize()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("过期预扣清理失败", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.metrics.InventoryMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同商品预扣请求合并器（组提交）
+ * 同一商品的并发预扣请求先进入该商品的队列，首个请求到达后等待一个很短的合并窗口，
+ * 由后台线程一次取出整批请求交给处理器，用一次加锁 + 一条聚合UPDATE完成，
+ * 再按到达顺序把成功/失败结果分别返回给各个调用方。
+ * 并发越高每批合并的请求越多，单商品吞吐随并发增长而不是被锁竞争拖垮。
+ * 商品队列处理完且没有新请求时从映射中移除，入队与移除都在该商品的 compute 中完成，不会丢失新到达的请求。
+ */
+@Slf4j
+@Component
+public class InventoryReserveCoalescer {
+
+    // 调用方等待合并结果的最长时间（秒），需大于分布式锁的等待时间
+    private static final long RESULT_TIMEOUT_SECONDS = 30;
+
+    private final Map<String, ProductQueue> queues = new ConcurrentHashMap<>();
+
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private InventoryMetrics inventoryMetrics;
+
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        flushExecutor = new ScheduledThreadPoolExecutor(
+                Math.max(1, inventoryProperties.getCoalesce().getFlushThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "inventory-coalescer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+    }
+
+    /**
+     * 提交一个预扣请求并等待所在批次的结果
+     *
+     * @param productId 商品ID
+     * @param quantity  扣减数量
+     * @param handler   批量处理器，按到达顺序返回每个请求是否成功
+     * @return 本请求是否预扣成功
+     */
+    public boolean submit(String productId, int quantity, GroupHandler handler) {
+        PendingReserve pending = new PendingReserve(quantity);
+        ProductQueue queue = queues.compute(productId, (key, existing) -> {
+            ProductQueue current = existing == null ? new ProductQueue() : existing;
+            current.requests.add(pending);
+            return current;
+        });
+        if (queue.scheduled.compareAndSet(false, true)) {
+            flushExecutor.schedule(() -> flush(productId, queue, handler),
+                    inventoryProperties.getCoalesce().getWindowMicros(), TimeUnit.MICROSECONDS);
+        }
+
+        try {
+            return pending.result.get(RESULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("操作被中断");
+        } catch (TimeoutException e) {
+            throw new RuntimeException("系统繁忙，请稍后重试");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    private void flush(String productId, ProductQueue queue, GroupHandler handler) {
+        try {
+            int maxBatchSize = Math.max(1, inventoryProperties.getCoalesce().getMaxBatchSize());
+            List<PendingReserve> batch = new ArrayList<>();
+            PendingReserve next;
+            while (batch.size() < maxBatchSize && (next = queue.requests.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                apply(productId, batch, handler);
+            }
+        } finally {
+            queue.scheduled.set(false);
+            // 处理期间又有新请求到达，且没有其他线程接手时立即开始下一批
+            if (!queue.requests.isEmpty() && queue.scheduled.compareAndSet(false, true)) {
+                flushExecutor.execute(() -> flush(productId, queue, handler));
+            } else {
+                removeIfIdle(productId, queue);
+            }
+        }
+    }
+
+    /**
+     * 队列已空且没有待执行的处理任务时移除，避免映射随商品数量无限增长
+     */
+    private void removeIfIdle(String productId, ProductQueue queue) {
+        queues.computeIfPresent(productId, (key, current) ->
+                current == queue && current.requests.isEmpty() && !current.scheduled.get() ? null : current);
+    }
+
+    private void apply(String productId, List<PendingReserve> batch, GroupHandler handler) {
+        List<Integer> quantities = new ArrayList<>(batch.size());
+        for (PendingReserve pending : batch) {
+            quantities.add(pending.quantity);
+        }
+        inventoryMetrics.recordCoalesceBatchSize(batch.size());
+
+        try {
+            boolean[] results = handler.apply(productId, quantities);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results[i]);
+            }
+        } catch (RuntimeException e) {
+            log.error("合并预扣失败，商品: {}, 请求数: {}", productId, batch.size(), e);
+            for (PendingReserve pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 批量预扣处理器
+     */
+    @FunctionalInterface
+    public interface GroupHandler {
+        /**
+         * @param productId  商品ID
+         * @param quantities 按到达顺序排列的各请求数量
+         * @return 与quantities一一对应的预扣结果
+         */
+        boolean[] apply(String productId, List<Integer> quantities);
+    }
+
+    private static class ProductQueue {
+        private final Queue<PendingReserve> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    }
+
+    private static class PendingReserve {
+        private final int quantity;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingReserve(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
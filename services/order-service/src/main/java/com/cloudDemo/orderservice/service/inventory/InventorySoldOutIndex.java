@@ -0,0 +1,117 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 售罄商品索引（进程内负缓存）
+ * 商品可用库存为0后记录到本地索引，后续预扣请求在获取锁、访问Redis或数据库之前直接失败；
+ * 释放预扣库存或重新初始化库存时清除标记。标记与清除都通过Redis发布订阅同步到所有订单服务实例。
+ * 每个标记都有有效期：通知丢失或乱序时，最多在有效期内误判售罄，过期后由下一次真实预扣重新判断。
+ */
+@Slf4j
+@Component
+public class InventorySoldOutIndex implements MessageListener {
+
+    public static final String BROADCAST_CHANNEL = "inventory:soldout:broadcast";
+
+    // 广播消息格式：类型:商品ID
+    private static final String MSG_SOLD_OUT = "SOLD_OUT:";
+    private static final String MSG_RESTOCK = "RESTOCK:";
+
+    // 商品ID -> 标记过期时间（毫秒时间戳）
+    private final Map<String, Long> soldOutUntil = new ConcurrentHashMap<>();
+
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(BROADCAST_CHANNEL));
+    }
+
+    /**
+     * 商品是否已售罄（标记过期后自动失效）
+     */
+    public boolean isSoldOut(String productId) {
+        if (!inventoryProperties.getSoldOut().isEnabled()) {
+            return false;
+        }
+        Long until = soldOutUntil.get(productId);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            soldOutUntil.remove(productId, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 标记商品售罄并通知其他实例
+     */
+    public void markSoldOut(String productId) {
+        if (!inventoryProperties.getSoldOut().isEnabled()) {
+            return;
+        }
+        if (soldOutUntil.put(productId, expiresAt()) == null) {
+            log.info("商品已售罄，后续预扣将直接失败: {}", productId);
+        }
+        publish(MSG_SOLD_OUT + productId);
+    }
+
+    /**
+     * 清除售罄标记并通知其他实例（库存增加并提交后调用）
+     * 标记由售罄广播同步到所有实例，本实例没有标记时其他实例通常也没有，不再发送通知
+     */
+    public void markRestocked(String productId) {
+        if (soldOutUntil.remove(productId) != null) {
+            log.info("商品库存已补充，清除售罄标记: {}", productId);
+            publish(MSG_RESTOCK + productId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(MSG_SOLD_OUT)) {
+            if (inventoryProperties.getSoldOut().isEnabled()) {
+                soldOutUntil.put(body.substring(MSG_SOLD_OUT.length()), expiresAt());
+            }
+        } else if (body.startsWith(MSG_RESTOCK)) {
+            soldOutUntil.remove(body.substring(MSG_RESTOCK.length()));
+        } else {
+            log.warn("未知的售罄广播消息: {}", body);
+        }
+    }
+
+    private long expiresAt() {
+        return System.currentTimeMillis() + inventoryProperties.getSoldOut().getTtlMs();
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(BROADCAST_CHANNEL, message);
+        } catch (Exception e) {
+            // 广播失败不影响主流程，其他实例的标记由有效期兜底
+            log.warn("售罄广播发送失败: {}", message, e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.cloudDemo.orderservice.entity.ProductInventory;
+import com.cloudDemo.orderservice.enums.InventoryOperation;
+import com.cloudDemo.orderservice.exception.InsufficientStockException;
+import com.cloudDemo.orderservice.mapper.InventoryWriteBehindCheckpointMapper;
+import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于Redis Lua脚本的库存计数服务（REDIS_SCRIPT模式）
+ * 库存计数器保存在 inventory:counter:{productId} 哈希中（available/reserved/sold），
+ * 每次变更由一个脚本原子完成"校验 + 变更 + 追加回写流水"，只需一次网络往返。
+ * 数据库由 InventoryWriteBehindService 按流水异步批量回写。
+ * 每条流水带有 inventory:writebehind:seq 分配的递增序号，回写时与数据库中的检查点比较，重放时跳过已回写的流水；
+ * 序号键不存在时（首次启用或Redis数据丢失）从检查点续接，避免新序号落在已回写的范围内。
+ */
+@Slf4j
+@Service
+public class InventoryStockScriptService {
+
+    public static final String COUNTER_KEY_PREFIX = "inventory:counter:";
+    public static final String JOURNAL_KEY = "inventory:writebehind:journal";
+    public static final String SEQUENCE_KEY = "inventory:writebehind:seq";
+
+    // 回写流水的操作类型
+    public static final String OP_RESERVE = "R";
+    public static final String OP_CONFIRM = "C";
+    public static final String OP_RELEASE = "L";
+    public static final String OP_RESET = "S";
+
+    private static final String FIELD_AVAILABLE = "available";
+    private static final String FIELD_RESERVED = "reserved";
+    private static final String FIELD_SOLD = "sold";
+
+    /**
+     * 将数量从一个计数字段转移到另一个字段，并追加回写流水（序号|操作|商品ID|数量）
+     * KEYS: 计数器, 回写流水, 流水序号
+     * 返回：1 成功，0 源字段数量不足，-1 计数器或流水序号尚未加载
+     */
+    private static final RedisScript<Long> MOVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 or redis.call('EXISTS', KEYS[3]) == 0 then return -1 end\n" +
+                    "local qty = tonumber(ARGV[3])\n" +
+                    "local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')\n" +
+                    "if current < qty then return 0 end\n" +
+                    "redis.call('HINCRBY', KEYS[1], ARGV[1], -qty)\n" +
+                    "redis.call('HINCRBY', KEYS[1], ARGV[2], qty)\n" +
+                    "local seq = redis.call('INCR', KEYS[3])\n" +
+                    "redis.call('RPUSH', KEYS[2], seq .. '|' .. ARGV[4] .. '|' .. ARGV[5] .. '|' .. ARGV[3])\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 流水序号不存在时从回写检查点续接；计数器不存在时从数据库快照加载，已存在则不覆盖（避免覆盖尚未回写的变更）
+     * KEYS: 计数器, 流水序号；ARGV: 可用, 预扣, 已售, 检查点
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[2], ARGV[4], 'NX')\n" +
+                    "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+                    "redis.call('HSET', KEYS[1], 'available', ARGV[1], 'reserved', ARGV[2], 'sold', ARGV[3])\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 覆盖计数器并追加一条重置流水（序号|S|商品ID|可用|预扣|已售），回写时以重置值替换此前尚未回写的增量
+     * KEYS: 计数器, 回写流水, 流水序号；ARGV: 商品ID, 可用, 预扣, 已售
+     * 返回：1 成功，-1 流水序号尚未加载
+     */
+    private static final RedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[3]) == 0 then return -1 end\n" +
+                    "redis.call('HSET', KEYS[1], 'available', ARGV[2], 'reserved', ARGV[3], 'sold', ARGV[4])\n" +
+                    "local seq = redis.call('INCR', KEYS[3])\n" +
+                    "redis.call('RPUSH', KEYS[2], seq .. '|S|' .. ARGV[1] .. '|' .. ARGV[2] .. '|' .. ARGV[3] .. '|' .. ARGV[4])\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 多商品批量转移，先校验全部商品再统一变更，全部成功或全部失败
+     * KEYS: 各商品计数器..., 回写流水, 流水序号；ARGV: 源字段, 目标字段, 操作类型, 商品ID1, 数量1, 商品ID2, 数量2...
+     * 返回 {状态, 商品下标}：状态 1 成功，0 该商品数量不足，-1 该商品计数器（或流水序号）尚未加载
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MOVE_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "local n = #KEYS - 2\n" +
+                    "if redis.call('EXISTS', KEYS[n + 2]) == 0 then return {-1, 1} end\n" +
+                    "for i = 1, n do\n" +
+                    "  if redis.call('EXISTS', KEYS[i]) == 0 then return {-1, i} end\n" +
+                    "  local current = tonumber(redis.call('HGET', KEYS[i], ARGV[1]) or '0')\n" +
+                    "  if current < tonumber(ARGV[3 + i * 2]) then return {0, i} end\n" +
+                    "end\n" +
+                    "for i = 1, n do\n" +
+                    "  local qty = tonumber(ARGV[3 + i * 2])\n" +
+                    "  redis.call('HINCRBY', KEYS[i], ARGV[1], -qty)\n" +
+                    "  redis.call('HINCRBY', KEYS[i], ARGV[2], qty)\n" +
+                    "  local seq = redis.call('INCR', KEYS[n + 2])\n" +
+                    "  redis.call('RPUSH', KEYS[n + 1], seq .. '|' .. ARGV[3] .. '|' .. ARGV[2 + i * 2] .. '|' .. ARGV[3 + i * 2])\n" +
+                    "end\n" +
+                    "return {1, 0}",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ProductInventoryMapper inventoryMapper;
+    @Autowired
+    private InventoryWriteBehindCheckpointMapper checkpointMapper;
+
+    /**
+     * 预扣库存：available -> reserved
+     */
+    public boolean reserve(String productId, Integer quantity) {
+        return move(productId, quantity, FIELD_AVAILABLE, FIELD_RESERVED, OP_RESERVE, "库存不足");
+    }
+
+    /**
+     * 确认扣减：reserved -> sold
+     */
+    public boolean confirm(String productId, Integer quantity) {
+        return move(productId, quantity, FIELD_RESERVED, FIELD_SOLD, OP_CONFIRM, "预扣库存不足");
+    }
+
+    /**
+     * 释放预扣：reserved -> available
+     */
+    public boolean release(String productId, Integer quantity) {
+        return move(productId, quantity, FIELD_RESERVED, FIELD_AVAILABLE, OP_RELEASE, "预扣库存不足");
+    }
+
+    /**
+     * 批量执行库存操作（一次脚本调用完成整个购物车），全部成功或全部失败
+     *
+     * @param items     商品ID -> 数量
+     * @param operation 操作类型
+     * @return 是否成功
+     */
+    public boolean moveBatch(Map<String, Integer> items, InventoryOperation operation) {
+        String from;
+        String to;
+        String op;
+        switch (operation) {
+            case RESERVE:
+                from = FIELD_AVAILABLE;
+                to = FIELD_RESERVED;
+                op = OP_RESERVE;
+                break;
+            case CONFIRM:
+                from = FIELD_RESERVED;
+                to = FIELD_SOLD;
+                op = OP_CONFIRM;
+                break;
+            case RELEASE:
+            default:
+                from = FIELD_RESERVED;
+                to = FIELD_AVAILABLE;
+                op = OP_RELEASE;
+        }
+
+        List<String> productIds = new ArrayList<>(items.keySet());
+        List<String> keys = new ArrayList<>(productIds.size() + 2);
+        List<String> args = new ArrayList<>(productIds.size() * 2 + 3);
+        args.add(from);
+        args.add(to);
+        args.add(op);
+        for (String productId : productIds) {
+            keys.add(COUNTER_KEY_PREFIX + productId);
+            args.add(productId);
+            args.add(String.valueOf(items.get(productId)));
+        }
+        keys.add(JOURNAL_KEY);
+        keys.add(SEQUENCE_KEY);
+
+        // 每轮最多补加载一个缺失的计数器
+        for (int attempt = 0; attempt <= productIds.size(); attempt++) {
+            List<?> result = stringRedisTemplate.execute(MOVE_BATCH_SCRIPT, keys, args.toArray());
+            if (result == null || result.size() < 2) {
+                throw new RuntimeException("库存脚本执行失败");
+            }
+            long status = ((Number) result.get(0)).longValue();
+            int index = ((Number) result.get(1)).intValue();
+            if (status == 1) {
+                log.debug("Redis脚本批量库存变更成功，操作: {}, 商品: {}", op, items);
+                return true;
+            }
+            String productId = productIds.get(index - 1);
+            if (status == 0) {
+                String message = operation == InventoryOperation.RESERVE ? "库存不足" : "预扣库存不足";
+                log.warn("{}，商品: {}, 需要: {}", message, productId, items.get(productId));
+                throw new InsufficientStockException(message + "，商品: " + productId);
+            }
+            loadCounters(productId);
+        }
+        throw new RuntimeException("库存计数器加载失败");
+    }
+
+    /**
+     * 用数据库记录覆盖Redis计数器（初始化库存提交后调用）
+     * 覆盖与追加重置流水在同一脚本中完成，流水中排在重置之前、尚未回写的增量不会再叠加到新库存上
+     */
+    public void resetCounters(ProductInventory inventory) {
+        List<String> keys = Arrays.asList(COUNTER_KEY_PREFIX + inventory.getProductId(), JOURNAL_KEY, SEQUENCE_KEY);
+        Object[] args = {inventory.getProductId(),
+                String.valueOf(inventory.getAvailableStock()),
+                String.valueOf(inventory.getReservedStock()),
+                String.valueOf(inventory.getSoldStock())};
+        Long result = stringRedisTemplate.execute(RESET_SCRIPT, keys, args);
+        if (result != null && result == -1) {
+            loadSequence();
+            result = stringRedisTemplate.execute(RESET_SCRIPT, keys, args);
+        }
+        if (result == null || result != 1) {
+            throw new RuntimeException("库存计数器重置失败");
+        }
+    }
+
+    /**
+     * 用Redis中的实时计数覆盖库存对象的数量字段（计数器未加载时保持原值）
+     */
+    public void overlayCounters(ProductInventory inventory) {
+        String counterKey = COUNTER_KEY_PREFIX + inventory.getProductId();
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(counterKey,
+                Arrays.asList(FIELD_AVAILABLE, FIELD_RESERVED, FIELD_SOLD));
+        if (values.get(0) == null) {
+            return;
+        }
+        inventory.setAvailableStock(Integer.valueOf((String) values.get(0)));
+        inventory.setReservedStock(Integer.valueOf((String) values.get(1)));
+        inventory.setSoldStock(Integer.valueOf((String) values.get(2)));
+    }
+
+    private boolean move(String productId, Integer quantity, String from, String to, String op, String shortageMessage) {
+        List<String> keys = Arrays.asList(COUNTER_KEY_PREFIX + productId, JOURNAL_KEY, SEQUENCE_KEY);
+        Long result = executeMove(keys, productId, quantity, from, to, op);
+
+        if (result != null && result == -1) {
+            // 计数器或流水序号未加载，从数据库加载后重试一次
+            loadCounters(productId);
+            result = executeMove(keys, productId, quantity, from, to, op);
+        }
+
+        if (result == null || result == -1) {
+            throw new RuntimeException("库存计数器加载失败");
+        }
+        if (result == 0) {
+            log.warn("{}，商品: {}, 需要: {}", shortageMessage, productId, quantity);
+            throw new InsufficientStockException(shortageMessage);
+        }
+
+        log.debug("Redis脚本库存变更成功，商品: {}, 操作: {}, 数量: {}", productId, op, quantity);
+        return true;
+    }
+
+    private Long executeMove(List<String> keys, String productId, Integer quantity, String from, String to, String op) {
+        return stringRedisTemplate.execute(MOVE_SCRIPT, keys,
+                from, to, String.valueOf(quantity), op, productId);
+    }
+
+    private void loadCounters(String productId) {
+        ProductInventory inventory = inventoryMapper.selectOne(
+                new QueryWrapper<ProductInventory>().eq("product_id", productId));
+        if (inventory == null) {
+            log.warn("商品不存在: {}", productId);
+            throw new RuntimeException("商品不存在");
+        }
+
+        Long loaded = stringRedisTemplate.execute(LOAD_SCRIPT,
+                Arrays.asList(COUNTER_KEY_PREFIX + productId, SEQUENCE_KEY),
+                String.valueOf(inventory.getAvailableStock()),
+                String.valueOf(inventory.getReservedStock()),
+                String.valueOf(inventory.getSoldStock()),
+                String.valueOf(lastFlushedSeq()));
+        if (loaded != null && loaded == 1) {
+            log.info("库存计数器已从数据库加载，商品: {}, 可用库存: {}", productId, inventory.getAvailableStock());
+        }
+    }
+
+    private void loadSequence() {
+        Boolean loaded = stringRedisTemplate.opsForValue().setIfAbsent(SEQUENCE_KEY, String.valueOf(lastFlushedSeq()));
+        if (Boolean.TRUE.equals(loaded)) {
+            log.info("库存回写流水序号已从检查点续接");
+        }
+    }
+
+    private long lastFlushedSeq() {
+        Long lastSeq = checkpointMapper.selectLastSeq();
+        return lastSeq == null ? 0 : lastSeq;
+    }
+}
@@ -0,0 +1,241 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.StressTestRequest;
+import com.cloudDemo.orderservice.enums.InventoryReserveMode;
+import com.cloudDemo.orderservice.exception.InsufficientStockException;
+import com.cloudDemo.orderservice.exception.InventoryConflictException;
+import com.cloudDemo.orderservice.exception.LockAcquisitionException;
+import com.cloudDemo.orderservice.metrics.LatencyHistogram;
+import com.cloudDemo.orderservice.service.InventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 库存预扣并发压测引擎（使用当前配置的预扣模式）
+ * N个线程（平台线程或虚拟线程）先执行预热，全部预热完成后同时开始正式压测：
+ * 闭环模式下每个线程上一次完成后立即发起下一次；定速模式下按目标总速率为每次操作计算计划发起时间，
+ * 延迟从计划时间开始计算（避免协调遗漏，系统变慢时排队时间也计入延迟）。
+ * 每次操作的延迟记录到HDR风格直方图，失败按库存不足、锁获取失败、版本冲突和其他原因分类统计。
+ * 平台线程数量不超过 inventory.stress-test.max-platform-threads，请求的并发数更大时
+ * 全部操作平均分配给这些工作线程，总操作数不变。
+ */
+@Slf4j
+@Service
+public class InventoryStressTestService {
+
+    // 整个压测的最长执行时间（分钟）
+    private static final long MAX_RUN_MINUTES = 10;
+
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+
+    /**
+     * 执行压测
+     *
+     * @param request 压测参数
+     * @return 压测报告
+     */
+    public Map<String, Object> run(StressTestRequest request) throws InterruptedException {
+        int requestedThreads = request.getThreadCount();
+        int operationsPerThread = request.getOperationsPerThread();
+        int warmupOperations = request.getWarmupOperationsPerThread() == null ? 0 : request.getWarmupOperationsPerThread();
+        int quantity = request.getQuantity() == null ? 1 : request.getQuantity();
+        InventoryReserveMode mode = inventoryProperties.getReserveMode();
+        boolean rateMode = request.getTargetRate() != null && request.getTargetRate() > 0;
+
+        ExecutorService executor = Boolean.TRUE.equals(request.getVirtualThreads()) ? newVirtualThreadExecutor() : null;
+        boolean virtualThreads = executor != null;
+        int threadCount = virtualThreads ? requestedThreads
+                : Math.min(requestedThreads, Math.max(1, inventoryProperties.getStressTest().getMaxPlatformThreads()));
+        if (executor == null) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threadCount,
+                    runnable -> new Thread(runnable, "inventory-stress-" + threadIndex.incrementAndGet()));
+        }
+        // 请求的全部操作分配给实际的工作线程，余数分给前面的线程
+        long totalPlanned = (long) requestedThreads * operationsPerThread;
+        long totalWarmup = (long) requestedThreads * warmupOperations;
+        // 定速模式下每个线程两次发起之间的间隔
+        long intervalNanos = rateMode ? TimeUnit.SECONDS.toNanos(1) * threadCount / request.getTargetRate() : 0;
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        Map<Outcome, LongAdder> outcomes = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+        CountDownLatch warmedUp = new CountDownLatch(threadCount);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicLong measureStartNanos = new AtomicLong();
+
+        log.info("开始库存压测，商品: {}, 模式: {}, 并发: {}, 工作线程: {}（{}）, 总操作: {}, 预热: {}, 目标速率: {}",
+                request.getProductId(), mode, requestedThreads, threadCount, virtualThreads ? "虚拟线程" : "平台线程",
+                totalPlanned, totalWarmup, rateMode ? request.getTargetRate() : "闭环");
+
+        List<Future<?>> futures = new ArrayList<>(threadCount);
+        long elapsedNanos;
+        try {
+            for (int t = 0; t < threadCount; t++) {
+                // 定速模式下各线程的发起时间错开，避免同时到达
+                long offsetNanos = rateMode ? intervalNanos * t / threadCount : 0;
+                long operations = share(totalPlanned, threadCount, t);
+                long warmups = share(totalWarmup, threadCount, t);
+                futures.add(executor.submit(() -> {
+                    for (long i = 0; i < warmups; i++) {
+                        execute(request.getProductId(), quantity);
+                    }
+                    warmedUp.countDown();
+                    startSignal.await();
+
+                    long start = measureStartNanos.get() + offsetNanos;
+                    for (long i = 0; i < operations; i++) {
+                        long intendedStart = rateMode ? start + i * intervalNanos : System.nanoTime();
+                        if (rateMode) {
+                            parkUntil(intendedStart);
+                        }
+                        Outcome outcome = execute(request.getProductId(), quantity);
+                        histogram.record(System.nanoTime() - intendedStart);
+                        outcomes.get(outcome).increment();
+                    }
+                    return null;
+                }));
+            }
+
+            if (!warmedUp.await(MAX_RUN_MINUTES, TimeUnit.MINUTES)) {
+                throw new RuntimeException("压测预热超时");
+            }
+            measureStartNanos.set(System.nanoTime());
+            startSignal.countDown();
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(MAX_RUN_MINUTES, TimeUnit.MINUTES);
+                } catch (ExecutionException | TimeoutException e) {
+                    throw new RuntimeException("压测线程执行失败: " + e.getMessage(), e);
+                }
+            }
+            elapsedNanos = System.nanoTime() - measureStartNanos.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long totalOperations = histogram.getCount();
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("min", toMillis(histogram.getMinNanos()));
+        latency.put("mean", toMillis((long) histogram.getMeanNanos()));
+        latency.put("p50", toMillis(histogram.getPercentileNanos(50)));
+        latency.put("p95", toMillis(histogram.getPercentileNanos(95)));
+        latency.put("p99", toMillis(histogram.getPercentileNanos(99)));
+        latency.put("p999", toMillis(histogram.getPercentileNanos(99.9)));
+        latency.put("max", toMillis(histogram.getMaxNanos()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("productId", request.getProductId());
+        report.put("reserveMode", mode);
+        report.put("loadMode", rateMode ? "RATE" : "CLOSED_LOOP");
+        report.put("targetRate", rateMode ? request.getTargetRate() : null);
+        report.put("threadType", virtualThreads ? "VIRTUAL" : "PLATFORM");
+        report.put("threadCount", requestedThreads);
+        report.put("workerThreads", threadCount);
+        report.put("warmupOperations", totalWarmup);
+        report.put("totalOperations", totalOperations);
+        report.put("successCount", outcomes.get(Outcome.SUCCESS).sum());
+        report.put("stockFailureCount", outcomes.get(Outcome.STOCK_FAILURE).sum());
+        report.put("lockFailureCount", outcomes.get(Outcome.LOCK_FAILURE).sum());
+        report.put("conflictFailureCount", outcomes.get(Outcome.CONFLICT_FAILURE).sum());
+        report.put("otherFailureCount", outcomes.get(Outcome.OTHER_FAILURE).sum());
+        report.put("executionTimeMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        report.put("throughputPerSecond", elapsedSeconds > 0 ? Math.round(totalOperations / elapsedSeconds * 100) / 100.0 : 0);
+        report.put("latencyMs", latency);
+
+        log.info("库存压测完成，商品: {}, 模式: {}, 结果: {}", request.getProductId(), mode, report);
+        return report;
+    }
+
+    private Outcome execute(String productId, int quantity) {
+        try {
+            return inventoryService.reserveStock(productId, quantity) ? Outcome.SUCCESS : Outcome.OTHER_FAILURE;
+        } catch (Exception e) {
+            return classify(e);
+        }
+    }
+
+    /**
+     * 沿异常链查找第一个可识别的失败类型
+     */
+    private Outcome classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InsufficientStockException) {
+                return Outcome.STOCK_FAILURE;
+            }
+            if (cause instanceof LockAcquisitionException) {
+                return Outcome.LOCK_FAILURE;
+            }
+            if (cause instanceof InventoryConflictException) {
+                return Outcome.CONFLICT_FAILURE;
+            }
+        }
+        return Outcome.OTHER_FAILURE;
+    }
+
+    /**
+     * 第 index 个线程分到的操作数
+     */
+    private static long share(long total, int threads, int index) {
+        return total / threads + (index < total % threads ? 1 : 0);
+    }
+
+    private void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 创建虚拟线程执行器（运行在Java 21+时可用），不支持时返回null
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("当前JVM不支持虚拟线程（需要Java 21+），改用平台线程");
+            return null;
+        }
+    }
+
+    private double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        STOCK_FAILURE,
+        LOCK_FAILURE,
+        CONFLICT_FAILURE,
+        OTHER_FAILURE
+    }
+}
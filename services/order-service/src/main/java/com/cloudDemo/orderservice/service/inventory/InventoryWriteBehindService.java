@@ -0,0 +1,245 @@
+package com.cloudDemo.orderservice.service.inventory;
+
+import com.cloudDemo.orderservice.config.InventoryProperties;
+import com.cloudDemo.orderservice.dto.InventoryStockDelta;
+import com.cloudDemo.orderservice.mapper.InventoryWriteBehindCheckpointMapper;
+import com.cloudDemo.orderservice.mapper.ProductInventoryMapper;
+import com.cloudDemo.orderservice.service.DistributedLockService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService.JOURNAL_KEY;
+import static com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService.OP_CONFIRM;
+import static com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService.OP_RELEASE;
+import static com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService.OP_RESERVE;
+import static com.cloudDemo.orderservice.service.inventory.InventoryStockScriptService.OP_RESET;
+
+/**
+ * 库存异步批量回写服务
+ * 定时读取Redis中的库存变更流水，按商品聚合后用一条UPDATE回写 product_inventory。
+ * 流水在数据库提交成功后才从Redis中裁剪，应用异常时保留流水等待下次重试。
+ * 已回写的最大流水序号作为检查点与增量在同一事务中提交，重放已回写的流水不会重复累加。
+ */
+@Slf4j
+@Service
+public class InventoryWriteBehindService {
+
+    private static final String FLUSH_LOCK_KEY = "inventory:lock:writebehind";
+    private static final long FLUSH_LOCK_LEASE_SECONDS = 30;
+    private static final int MAX_BATCHES_PER_FLUSH = 20;
+
+    /**
+     * 从队头裁剪已回写的流水：序号不大于检查点的条目，最多 ARGV[2] 条；
+     * 遇到不带序号的条目停止，无法确认其是否已回写，保留在队头等待人工处理
+     */
+    private static final RedisScript<Long> TRIM_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0\n" +
+                    "while removed < tonumber(ARGV[2]) do\n" +
+                    "  local head = redis.call('LINDEX', KEYS[1], 0)\n" +
+                    "  if not head then break end\n" +
+                    "  local seq = tonumber(string.match(head, '^(%d+)|'))\n" +
+                    "  if not seq or seq > tonumber(ARGV[1]) then break end\n" +
+                    "  redis.call('LPOP', KEYS[1])\n" +
+                    "  removed = removed + 1\n" +
+                    "end\n" +
+                    "return removed",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ProductInventoryMapper inventoryMapper;
+    @Autowired
+    private DistributedLockService lockService;
+    @Autowired
+    private InventoryProperties inventoryProperties;
+    @Autowired
+    private InventoryWriteBehindCheckpointMapper checkpointMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 定时回写，多实例部署时只有持有回写锁的实例执行
+     */
+    @Scheduled(fixedDelayString = "${inventory.write-behind.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        try {
+            Long pending = stringRedisTemplate.opsForList().size(JOURNAL_KEY);
+            if (pending == null || pending == 0) {
+                return;
+            }
+            lockService.tryRunWithLock(FLUSH_LOCK_KEY, FLUSH_LOCK_LEASE_SECONDS, this::flush);
+        } catch (Exception e) {
+            log.error("库存异步回写失败", e);
+        }
+    }
+
+    /**
+     * 回写当前积压的流水，单次最多处理 MAX_BATCHES_PER_FLUSH 批
+     *
+     * @return 本次回写的流水条数
+     */
+    public int flush() {
+        int total = 0;
+        int batchSize = inventoryProperties.getWriteBehind().getBatchSize();
+        for (int i = 0; i < MAX_BATCHES_PER_FLUSH; i++) {
+            int flushed = flushBatch(batchSize);
+            total += flushed;
+            if (flushed < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.debug("库存异步回写完成，流水条数: {}", total);
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            lockService.tryRunWithLock(FLUSH_LOCK_KEY, FLUSH_LOCK_LEASE_SECONDS, this::flush);
+        } catch (Exception e) {
+            log.warn("停机前库存回写失败，流水保留在Redis中等待下次回写: {}", e.getMessage());
+        }
+    }
+
+    private int flushBatch(int batchSize) {
+        List<String> entries = stringRedisTemplate.opsForList().range(JOURNAL_KEY, 0, batchSize - 1);
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        // 增量与检查点在同一事务中提交，提交后、裁剪前宕机时重放的流水会按序号跳过
+        Long checkpoint = transactionTemplate.execute(status -> {
+            Long locked = checkpointMapper.selectLastSeqForUpdate();
+            if (locked == null) {
+                throw new IllegalStateException("库存回写检查点不存在");
+            }
+            JournalBatch batch = aggregate(entries, locked);
+            batch.resets.values().forEach(stock -> {
+                if (inventoryMapper.overwriteStock(stock.getProductId(), stock.getAvailableDelta(),
+                        stock.getReservedDelta(), stock.getSoldDelta()) == 0) {
+                    log.warn("库存重置回写未命中数据库记录，商品: {}", stock.getProductId());
+                }
+            });
+            if (!batch.deltas.isEmpty()) {
+                int updated = inventoryMapper.applyStockDeltas(new ArrayList<>(batch.deltas.values()));
+                if (updated < batch.deltas.size()) {
+                    log.warn("库存回写部分商品未命中数据库记录，期望: {}, 实际: {}", batch.deltas.size(), updated);
+                }
+            }
+            if (batch.maxSeq > locked) {
+                checkpointMapper.updateLastSeq(batch.maxSeq);
+                return batch.maxSeq;
+            }
+            return locked;
+        });
+
+        // 数据库提交后再裁剪流水，只裁剪检查点以内的部分（锁过期时另一实例可能已裁剪过）
+        Long trimmed = stringRedisTemplate.execute(TRIM_SCRIPT, List.of(JOURNAL_KEY),
+                String.valueOf(checkpoint), String.valueOf(entries.size()));
+        return trimmed == null ? 0 : trimmed.intValue();
+    }
+
+    /**
+     * 流水格式：序号|操作|商品ID|数量，重置流水为 序号|S|商品ID|可用|预扣|已售；
+     * 不带序号的流水视为格式错误，记录日志后跳过。
+     * 序号不大于检查点的流水已经回写过，直接跳过；重置流水丢弃该商品此前的增量，之后的增量在重置值上累加。
+     */
+    private JournalBatch aggregate(List<String> entries, long checkpoint) {
+        JournalBatch batch = new JournalBatch();
+        batch.maxSeq = checkpoint;
+        for (String entry : entries) {
+            try {
+                int sep = entry.indexOf('|');
+                if (sep <= 0 || !Character.isDigit(entry.charAt(0))) {
+                    log.error("忽略不带序号的库存流水，该条目不会被裁剪，需人工处理: {}", entry);
+                    continue;
+                }
+                long seq = Long.parseLong(entry.substring(0, sep));
+                String body = entry.substring(sep + 1);
+                if (seq <= checkpoint) {
+                    continue;
+                }
+                batch.maxSeq = Math.max(batch.maxSeq, seq);
+
+                int opEnd = body.indexOf('|');
+                String op = body.substring(0, opEnd);
+                String rest = body.substring(opEnd + 1);
+                if (OP_RESET.equals(op)) {
+                    String[] fields = splitTail(rest, 3);
+                    batch.deltas.remove(fields[0]);
+                    batch.resets.put(fields[0], new InventoryStockDelta(fields[0],
+                            Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+                    continue;
+                }
+
+                String[] fields = splitTail(rest, 1);
+                String productId = fields[0];
+                int quantity = Integer.parseInt(fields[1]);
+                InventoryStockDelta delta = batch.resets.containsKey(productId)
+                        ? batch.resets.get(productId)
+                        : batch.deltas.computeIfAbsent(productId, id -> new InventoryStockDelta(id, 0, 0, 0));
+                switch (op) {
+                    case OP_RESERVE:
+                        delta.setAvailableDelta(delta.getAvailableDelta() - quantity);
+                        delta.setReservedDelta(delta.getReservedDelta() + quantity);
+                        break;
+                    case OP_CONFIRM:
+                        delta.setReservedDelta(delta.getReservedDelta() - quantity);
+                        delta.setSoldDelta(delta.getSoldDelta() + quantity);
+                        break;
+                    case OP_RELEASE:
+                        delta.setReservedDelta(delta.getReservedDelta() - quantity);
+                        delta.setAvailableDelta(delta.getAvailableDelta() + quantity);
+                        break;
+                    default:
+                        log.warn("忽略未知操作类型的库存流水: {}", entry);
+                }
+            } catch (RuntimeException e) {
+                log.warn("忽略格式错误的库存流水: {}", entry);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 从右侧拆出 count 个数值字段，剩余的左侧部分为商品ID（商品ID中可能含有分隔符）
+     */
+    private static String[] splitTail(String text, int count) {
+        String[] fields = new String[count + 1];
+        int end = text.length();
+        for (int i = count; i > 0; i--) {
+            int sep = text.lastIndexOf('|', end - 1);
+            if (sep <= 0) {
+                throw new IllegalArgumentException("库存流水字段不足");
+            }
+            fields[i] = text.substring(sep + 1, end);
+            end = sep;
+        }
+        fields[0] = text.substring(0, end);
+        return fields;
+    }
+
+    /**
+     * 一批流水聚合结果：重置值按商品覆盖，增量按商品累加
+     */
+    private static class JournalBatch {
+        private final Map<String, InventoryStockDelta> deltas = new LinkedHashMap<>();
+        private final Map<String, InventoryStockDelta> resets = new LinkedHashMap<>();
+        private long maxSeq;
+    }
+}
@@ -0,0 +1,135 @@
+package com.cloudDemo.orderservice.service.outbox;
+
+import com.cloudDemo.orderservice.config.OrderOutboxProperties;
+import com.cloudDemo.orderservice.entity.OrderStatusOutbox;
+import com.cloudDemo.orderservice.mapper.OrderStatusOutboxMapper;
+import com.cloudDemo.orderservice.service.DistributedLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单状态变更事件中继
+ * 定时按ID顺序读取发件箱中最早的一批事件，用一次Lua脚本调用批量 XADD 到 Redis Stream，
+ * 投递成功后删除这批事件：ID连续时按主键范围删除，否则按ID列表删除。
+ * 投递与删除之间进程异常会导致事件重复投递（至少一次），消费者按 eventId 字段去重。
+ * 同一订单的状态变更受行锁串行化，其事件按提交顺序写入，因此同一订单的事件在Stream中保持有序。
+ * 多实例部署时只有持有中继锁的实例执行。
+ */
+@Slf4j
+@Service
+public class OrderStatusOutboxRelay {
+
+    private static final String RELAY_LOCK_KEY = "order:lock:outbox-relay";
+    private static final long RELAY_LOCK_LEASE_SECONDS = 30;
+    private static final int FIELDS_PER_EVENT = 5;
+
+    /**
+     * 批量追加事件：ARGV[1] 为近似最大长度（0不裁剪），之后每5个参数为一个事件，返回追加条数
+     */
+    private static final RedisScript<Long> XADD_BATCH_SCRIPT = new DefaultRedisScript<>(
+            "local maxLen = tonumber(ARGV[1])\n" +
+                    "local count = 0\n" +
+                    "for i = 2, #ARGV, " + FIELDS_PER_EVENT + " do\n" +
+                    "  local fields = {'eventId', ARGV[i], 'orderNo', ARGV[i + 1], 'fromStatus', ARGV[i + 2],\n" +
+                    "                  'toStatus', ARGV[i + 3], 'changedAt', ARGV[i + 4]}\n" +
+                    "  if maxLen > 0 then\n" +
+                    "    redis.call('XADD', KEYS[1], 'MAXLEN', '~', maxLen, '*', unpack(fields))\n" +
+                    "  else\n" +
+                    "    redis.call('XADD', KEYS[1], '*', unpack(fields))\n" +
+                    "  end\n" +
+                    "  count = count + 1\n" +
+                    "end\n" +
+                    "return count",
+            Long.class);
+
+    @Autowired
+    private OrderStatusOutboxMapper outboxMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private DistributedLockService lockService;
+    @Autowired
+    private OrderOutboxProperties outboxProperties;
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:200}")
+    public void scheduledRelay() {
+        if (!outboxProperties.isRelayEnabled()) {
+            return;
+        }
+        try {
+            lockService.tryRunWithLock(RELAY_LOCK_KEY, RELAY_LOCK_LEASE_SECONDS, this::relay);
+        } catch (Exception e) {
+            log.error("订单状态变更事件投递失败", e);
+        }
+    }
+
+    /**
+     * 投递当前积压的事件，单次最多投递 maxBatchesPerRun 批
+     *
+     * @return 本次投递的事件数
+     */
+    public int relay() {
+        int batchSize = Math.max(1, outboxProperties.getBatchSize());
+        int total = 0;
+        for (int i = 0; i < outboxProperties.getMaxBatchesPerRun(); i++) {
+            List<OrderStatusOutbox> events = outboxMapper.selectOldest(batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            publish(events);
+            delete(events);
+            total += events.size();
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.debug("订单状态变更事件投递完成，事件数: {}", total);
+        }
+        return total;
+    }
+
+    private void publish(List<OrderStatusOutbox> events) {
+        List<String> args = new ArrayList<>(1 + events.size() * FIELDS_PER_EVENT);
+        args.add(Long.toString(Math.max(0, outboxProperties.getStreamMaxLen())));
+        for (OrderStatusOutbox event : events) {
+            args.add(Long.toString(event.getId()));
+            args.add(event.getOrderNo());
+            args.add(event.getFromStatus() == null ? "" : event.getFromStatus());
+            args.add(event.getToStatus());
+            args.add(event.getCreateTime() == null ? ""
+                    : Long.toString(event.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        }
+        Long appended = stringRedisTemplate.execute(XADD_BATCH_SCRIPT, List.of(outboxProperties.getStreamKey()),
+                args.toArray());
+        if (appended == null || appended != events.size()) {
+            // 不删除，下次重新投递整批
+            throw new IllegalStateException(String.format("事件投递条数不一致：期望%d，实际%s", events.size(), appended));
+        }
+    }
+
+    private void delete(List<OrderStatusOutbox> events) {
+        long firstId = events.get(0).getId();
+        long lastId = events.get(events.size() - 1).getId();
+        if (lastId - firstId + 1 == events.size()) {
+            // 结果按ID有序且无间隙：范围内的事件都已投递
+            outboxMapper.deleteRange(firstId, lastId);
+            return;
+        }
+        // 有间隙（回滚的事务或尚未提交的事件占用了中间的ID），只删除本批读到的事件
+        List<Long> ids = new ArrayList<>(events.size());
+        for (OrderStatusOutbox event : events) {
+            ids.add(event.getId());
+        }
+        outboxMapper.deleteByIds(ids);
+    }
+}
@@ -0,0 +1,430 @@
+package com.cloudDemo.orderservice.service.payment;
+
+import com.cloudDemo.orderservice.config.PaymentCallbackProperties;
+import com.cloudDemo.orderservice.service.OrderStateMachineService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 支付回调接收器
+ * 接收线程只做去重和追加写本地日志（多个回调合并为一次落盘），落盘后立即应答，应答延迟与数据库快慢无关；
+ * 分发线程顺序读取日志，按订单号哈希分配给固定的工作线程（同一订单的回调按到达顺序处理），
+ * 工作线程凑成小批量后一次性更新订单状态，处理失败时退避重试，不丢弃回调。
+ * 检查点之前的回调均已处理完成，重启后从检查点重放，状态更新带有状态条件，重放是幂等的。
+ * 去重只在本实例内按订单号+支付流水号进行，多实例之间的重复回调由状态条件更新兜底。
+ * 已应答但订单已不是待支付状态（已取消、重复支付等）的支付成功回调不会更新订单，
+ * 按订单号和支付流水号记录WARN日志并计数，供对账和退款处理。
+ */
+@Slf4j
+@Component
+public class PaymentCallbackIngestor {
+
+    private static final int MAX_FIELD_LENGTH = 128;
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5000;
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000;
+
+    @Autowired
+    private PaymentCallbackProperties properties;
+    @Autowired
+    private OrderStateMachineService orderStateMachineService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private PaymentCallbackJournal journal;
+    private BlockingQueue<PendingAppend> appendQueue;
+    private final List<BlockingQueue<PaymentCallbackRecord>> workerQueues = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    // 已分发但尚未处理完成的回调（日志偏移量）
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    // 订单号+支付流水号 -> 去重过期时间
+    private final Map<String, Long> recentCallbacks = new ConcurrentHashMap<>();
+    private final Object appendSignal = new Object();
+
+    private volatile long dispatchedOffset;
+    private volatile long lastCheckpoint;
+    private volatile boolean running;
+
+    private Counter unappliedPaidCounter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        journal = new PaymentCallbackJournal(Paths.get(properties.getJournalDir()), properties.getSegmentBytes());
+        dispatchedOffset = journal.loadCheckpoint();
+        lastCheckpoint = dispatchedOffset;
+        if (dispatchedOffset < journal.committedOffset()) {
+            log.info("从检查点恢复未处理的支付回调：检查点={}，日志末尾={}", dispatchedOffset, journal.committedOffset());
+        }
+
+        appendQueue = new ArrayBlockingQueue<>(Math.max(1, properties.getPendingCapacity()));
+        running = true;
+        startThread("payment-callback-journal", this::writeLoop);
+        int workers = Math.max(1, properties.getWorkerThreads());
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<PaymentCallbackRecord> queue = new ArrayBlockingQueue<>(Math.max(1, properties.getWorkerQueueCapacity()));
+            workerQueues.add(queue);
+            startThread("payment-callback-worker-" + (i + 1), () -> workLoop(queue));
+        }
+        startThread("payment-callback-dispatcher", this::dispatchLoop);
+
+        Gauge.builder("payment.callback.in.flight", inFlight, ConcurrentSkipListSet::size)
+                .description("Payment callbacks dispatched to workers but not yet applied")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+        Gauge.builder("payment.callback.backlog.bytes", this, ingestor -> ingestor.journal.committedOffset() - ingestor.lastCheckpoint)
+                .description("Journal bytes after the last checkpoint")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+        unappliedPaidCounter = Counter.builder("payment.callback.unapplied.paid")
+                .description("Successful payment callbacks that matched no pending order and need reconciliation")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        synchronized (appendSignal) {
+            appendSignal.notifyAll();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(SHUTDOWN_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        checkpoint();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("关闭支付回调日志失败", e);
+        }
+    }
+
+    /**
+     * 接收一个支付回调：去重后写入本地日志，落盘后返回
+     *
+     * @param orderNo       订单号
+     * @param paymentId     支付流水号，为空时以支付结果代替
+     * @param paymentResult 支付结果 (SUCCESS/FAILED)
+     */
+    public AckStatus ingest(String orderNo, String paymentId, String paymentResult) {
+        if (paymentId == null || paymentId.trim().isEmpty()) {
+            paymentId = paymentResult;
+        }
+        validateField("订单号", orderNo);
+        validateField("支付流水号", paymentId);
+
+        long now = System.currentTimeMillis();
+        long expiresAt = now + TimeUnit.SECONDS.toMillis(properties.getDedupTtlSeconds());
+        String dedupKey = PaymentCallbackRecord.dedupKey(orderNo, paymentId);
+        Long previous = recentCallbacks.putIfAbsent(dedupKey, expiresAt);
+        if (previous != null) {
+            if (previous > now) {
+                log.debug("忽略重复支付回调：订单={}，流水号={}", orderNo, paymentId);
+                return AckStatus.DUPLICATE;
+            }
+            recentCallbacks.put(dedupKey, expiresAt);
+        }
+
+        PendingAppend pending = new PendingAppend(
+                PaymentCallbackRecord.encode(orderNo, paymentId, "SUCCESS".equals(paymentResult), now));
+        if (!running || !appendQueue.offer(pending)) {
+            recentCallbacks.remove(dedupKey);
+            log.warn("支付回调写入队列已满，订单={}", orderNo);
+            return AckStatus.BUSY;
+        }
+
+        try {
+            pending.done.get(properties.getAckTimeoutMs(), TimeUnit.MILLISECONDS);
+            return AckStatus.ACCEPTED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            // 尚未写入的回调不再写入；已经在写的回调可能仍会落盘，重复处理由状态条件更新保证幂等
+            pending.done.cancel(false);
+            log.warn("支付回调落盘超时，订单={}", orderNo);
+        } catch (ExecutionException e) {
+            log.error("支付回调写入日志失败，订单={}", orderNo, e.getCause());
+        }
+        recentCallbacks.remove(dedupKey);
+        return AckStatus.BUSY;
+    }
+
+    /**
+     * 定期保存检查点并清理过期的去重记录
+     */
+    @Scheduled(fixedDelayString = "${order.payment-callback.checkpoint-interval-ms:1000}")
+    public synchronized void checkpoint() {
+        // 先读分发位置再读最小的未完成偏移量：分发线程总是先登记未完成再推进分发位置
+        long dispatched = dispatchedOffset;
+        Long firstInFlight = inFlight.ceiling(Long.MIN_VALUE);
+        long checkpoint = firstInFlight == null ? dispatched : Math.min(firstInFlight, dispatched);
+        if (checkpoint != lastCheckpoint) {
+            try {
+                journal.saveCheckpoint(checkpoint);
+                lastCheckpoint = checkpoint;
+            } catch (IOException e) {
+                log.error("保存支付回调检查点失败", e);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        recentCallbacks.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>();
+        List<byte[]> records = new ArrayList<>();
+        while (running || !appendQueue.isEmpty()) {
+            try {
+                PendingAppend first = appendQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                appendQueue.drainTo(batch);
+                batch.removeIf(pending -> pending.done.isCancelled());
+                for (PendingAppend pending : batch) {
+                    records.add(pending.record);
+                }
+
+                if (!records.isEmpty()) {
+                    try {
+                        journal.append(records);
+                        for (PendingAppend pending : batch) {
+                            pending.done.complete(null);
+                        }
+                    } catch (IOException e) {
+                        for (PendingAppend pending : batch) {
+                            pending.done.completeExceptionally(e);
+                        }
+                    }
+                    synchronized (appendSignal) {
+                        appendSignal.notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        int readBatch = Math.max(1, properties.getBatchSize());
+        while (running) {
+            try {
+                if (dispatchedOffset >= journal.committedOffset()) {
+                    synchronized (appendSignal) {
+                        if (running && dispatchedOffset >= journal.committedOffset()) {
+                            appendSignal.wait(IDLE_POLL_MILLIS);
+                        }
+                    }
+                    continue;
+                }
+
+                for (PaymentCallbackRecord record : journal.read(dispatchedOffset, readBatch)) {
+                    if (!record.isSkipped() && !dispatch(record)) {
+                        return;
+                    }
+                    dispatchedOffset = record.getNextOffset();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("读取支付回调日志失败，偏移量={}", dispatchedOffset, e);
+                sleepQuietly(IDLE_POLL_MILLIS * 10);
+            }
+        }
+    }
+
+    /**
+     * 把回调交给订单号对应的工作线程，队列满时等待（不影响接收应答）
+     *
+     * @return 停止时返回 false，未分发的回调重启后从日志恢复
+     */
+    private boolean dispatch(PaymentCallbackRecord record) throws InterruptedException {
+        // 重放的回调也参与去重
+        recentCallbacks.putIfAbsent(PaymentCallbackRecord.dedupKey(record.getOrderNo(), record.getPaymentId()),
+                record.getReceivedAt() + TimeUnit.SECONDS.toMillis(properties.getDedupTtlSeconds()));
+
+        BlockingQueue<PaymentCallbackRecord> queue = workerQueues.get(
+                Math.floorMod(record.getOrderNo().hashCode(), workerQueues.size()));
+        inFlight.add(record.getOffset());
+        while (!queue.offer(record, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                inFlight.remove(record.getOffset());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void workLoop(BlockingQueue<PaymentCallbackRecord> queue) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(properties.getBatchWaitMs());
+        List<PaymentCallbackRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PaymentCallbackRecord first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + batchWaitNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PaymentCallbackRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量更新订单状态，失败时退避重试直到成功或服务停止
+     */
+    private void apply(List<PaymentCallbackRecord> batch) {
+        // 同一订单在一批内只要有支付成功的回调，就按支付成功处理
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        for (PaymentCallbackRecord record : batch) {
+            results.merge(record.getOrderNo(), record.isSuccess(), Boolean::logicalOr);
+        }
+        List<String> paidOrderNos = new ArrayList<>();
+        List<String> failedOrderNos = new ArrayList<>();
+        results.forEach((orderNo, success) -> (success ? paidOrderNos : failedOrderNos).add(orderNo));
+
+        long backoff = IDLE_POLL_MILLIS;
+        while (true) {
+            try {
+                Set<String> applied = orderStateMachineService.applyPaymentResults(paidOrderNos, failedOrderNos);
+                log.debug("批量处理支付回调：回调数={}，订单数={}，实际更新={}", batch.size(), results.size(), applied.size());
+                reportUnapplied(batch, applied);
+                break;
+            } catch (Exception e) {
+                if (!running) {
+                    log.warn("服务停止时仍有 {} 条支付回调未处理，重启后从日志恢复", batch.size());
+                    return;
+                }
+                log.error("批量处理支付回调失败，{}ms后重试，回调数={}", backoff, batch.size(), e);
+                sleepQuietly(backoff);
+                backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+            }
+        }
+
+        for (PaymentCallbackRecord record : batch) {
+            inFlight.remove(record.getOffset());
+        }
+    }
+
+    /**
+     * 未更新订单的回调：支付失败的只记录调试日志；支付成功的说明用户已付款但订单不是待支付状态
+     * （已取消、已被其他支付流水支付等），需要对账后退款或人工处理
+     */
+    private void reportUnapplied(List<PaymentCallbackRecord> batch, Set<String> applied) {
+        for (PaymentCallbackRecord record : batch) {
+            if (applied.contains(record.getOrderNo())) {
+                continue;
+            }
+            if (record.isSuccess()) {
+                unappliedPaidCounter.increment();
+                log.warn("支付成功回调未能更新订单，需对账处理：订单号={}，支付流水号={}",
+                        record.getOrderNo(), record.getPaymentId());
+            } else {
+                log.debug("支付失败回调未更新订单：订单号={}，支付流水号={}", record.getOrderNo(), record.getPaymentId());
+            }
+        }
+    }
+
+    private void validateField(String name, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + "不能为空");
+        }
+        if (value.length() > MAX_FIELD_LENGTH || value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException(name + "格式不正确");
+        }
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 回调接收结果
+     */
+    public enum AckStatus {
+        // 已写入本地日志，等待处理
+        ACCEPTED,
+        // 重复回调，已忽略
+        DUPLICATE,
+        // 系统繁忙，需由支付网关重试
+        BUSY
+    }
+
+    /**
+     * 等待写入日志的回调
+     */
+    private static final class PendingAppend {
+        private final byte[] record;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingAppend(byte[] record) {
+            this.record = record;
+        }
+    }
+}
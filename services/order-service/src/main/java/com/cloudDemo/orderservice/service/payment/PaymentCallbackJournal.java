@@ -0,0 +1,255 @@
+package com.cloudDemo.orderservice.service.payment;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 支付回调本地日志（只追加，按大小分段）
+ * 每条回调编码为一行文本，逻辑偏移量在所有分段间连续，分段文件以起始偏移量命名；
+ * 检查点记录第一条尚未处理完成的回调偏移量，检查点之前的整段文件会被删除。
+ * 追加只由写线程调用，读取只由分发线程调用，检查点只由定时任务调用。
+ */
+@Slf4j
+final class PaymentCallbackJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    // 分段起始偏移量 -> 分段文件
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+
+    private FileChannel writeChannel;
+    private long writeBase;
+    private volatile long committedOffset;
+
+    private FileChannel readChannel;
+    private long readBase = -1;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+    PaymentCallbackJournal(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(READ_BUFFER_BYTES, segmentBytes);
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), path);
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的支付回调日志文件：{}", path);
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            openSegment(readCheckpointFile(0));
+        } else {
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            writeBase = last.getKey();
+            writeChannel = FileChannel.open(last.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long validLength = truncateTornTail(writeChannel);
+            writeChannel.position(validLength);
+            committedOffset = writeBase + validLength;
+        }
+    }
+
+    /**
+     * 已落盘的日志末尾偏移量
+     */
+    long committedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * 追加一批回调记录并落盘（组提交：整批只调用一次 force）
+     *
+     * @return 追加后的日志末尾偏移量
+     */
+    long append(List<byte[]> records) throws IOException {
+        if (writeChannel.size() >= segmentBytes) {
+            writeChannel.close();
+            openSegment(committedOffset);
+        }
+
+        int total = 0;
+        for (byte[] record : records) {
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                writeChannel.write(buffer);
+            }
+            writeChannel.force(false);
+        } catch (IOException e) {
+            // 回退写了一部分的数据，保证日志只包含完整且已确认的记录
+            long validLength = committedOffset - writeBase;
+            writeChannel.truncate(validLength);
+            writeChannel.position(validLength);
+            throw e;
+        }
+        committedOffset += total;
+        return committedOffset;
+    }
+
+    /**
+     * 从指定偏移量读取已落盘的记录，最多读取一个缓冲区的数据
+     */
+    List<PaymentCallbackRecord> read(long offset, int maxRecords) throws IOException {
+        List<PaymentCallbackRecord> records = new ArrayList<>();
+        long committed = committedOffset;
+        if (offset >= committed) {
+            return records;
+        }
+
+        Map.Entry<Long, Path> segment = segments.floorEntry(offset);
+        if (segment == null) {
+            throw new IOException("支付回调日志分段不存在，偏移量：" + offset);
+        }
+        if (segment.getKey() != readBase) {
+            if (readChannel != null) {
+                readChannel.close();
+            }
+            readChannel = FileChannel.open(segment.getValue(), StandardOpenOption.READ);
+            readBase = segment.getKey();
+        }
+
+        // 不跨分段读取：当前分段的末尾是下一个分段的起始偏移量
+        Long nextBase = segments.higherKey(readBase);
+        long end = nextBase == null ? committed : Math.min(nextBase, committed);
+        readBuffer.clear();
+        readBuffer.limit((int) Math.min(READ_BUFFER_BYTES, end - offset));
+        long position = offset - readBase;
+        while (readBuffer.hasRemaining()) {
+            int read = readChannel.read(readBuffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        readBuffer.flip();
+
+        byte[] bytes = readBuffer.array();
+        int lineStart = 0;
+        for (int i = 0; i < readBuffer.limit() && records.size() < maxRecords; i++) {
+            if (bytes[i] == '\n') {
+                PaymentCallbackRecord record = PaymentCallbackRecord.decode(offset + lineStart, offset + i + 1,
+                        new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                if (record != null) {
+                    records.add(record);
+                } else {
+                    log.warn("跳过无法解析的支付回调记录，偏移量：{}", offset + lineStart);
+                    records.add(PaymentCallbackRecord.skipped(offset + lineStart, offset + i + 1));
+                }
+                lineStart = i + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 读取检查点，没有检查点时从最早的分段开始
+     */
+    long loadCheckpoint() throws IOException {
+        long checkpoint = readCheckpointFile(segments.firstKey());
+        return Math.max(segments.firstKey(), Math.min(checkpoint, committedOffset));
+    }
+
+    /**
+     * 保存检查点并删除已全部处理完成的分段
+     */
+    void saveCheckpoint(long offset) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Iterator<Map.Entry<Long, Path>> iterator = segments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Path> entry = iterator.next();
+            Long nextBase = segments.higherKey(entry.getKey());
+            if (nextBase == null || nextBase > offset) {
+                break;
+            }
+            Files.deleteIfExists(entry.getValue());
+            iterator.remove();
+            log.info("删除已处理完成的支付回调日志分段：{}", entry.getValue().getFileName());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (readChannel != null) {
+            readChannel.close();
+        }
+        writeChannel.close();
+    }
+
+    private void openSegment(long base) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        writeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeChannel.position(writeChannel.size());
+        writeBase = base;
+        segments.put(base, path);
+        committedOffset = base + writeChannel.size();
+    }
+
+    private long readCheckpointFile(long defaultValue) throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            log.warn("支付回调检查点文件损坏，从最早的日志分段开始恢复");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 截掉进程崩溃时写了一半的最后一行，返回有效长度
+     */
+    private long truncateTornTail(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer one = ByteBuffer.allocate(1);
+        long validLength = size;
+        while (validLength > 0) {
+            one.clear();
+            channel.read(one, validLength - 1);
+            if (one.get(0) == '\n') {
+                break;
+            }
+            validLength--;
+        }
+        if (validLength < size) {
+            log.warn("支付回调日志末尾存在不完整记录，截断 {} 字节", size - validLength);
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        return validLength;
+    }
+}
@@ -0,0 +1,93 @@
+package com.cloudDemo.orderservice.service.payment;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 支付回调日志中的一条记录
+ * 编码格式（一行）：订单号\t支付流水号\tSUCCESS|FAILED\t接收时间戳\n
+ */
+final class PaymentCallbackRecord {
+
+    private static final char SEPARATOR = '\t';
+    private static final String SUCCESS = "SUCCESS";
+    private static final String FAILED = "FAILED";
+
+    // 在日志中的起始偏移量和下一条记录的偏移量
+    private final long offset;
+    private final long nextOffset;
+    private final String orderNo;
+    private final String paymentId;
+    private final boolean success;
+    private final long receivedAt;
+
+    private PaymentCallbackRecord(long offset, long nextOffset, String orderNo, String paymentId,
+                                  boolean success, long receivedAt) {
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+        this.orderNo = orderNo;
+        this.paymentId = paymentId;
+        this.success = success;
+        this.receivedAt = receivedAt;
+    }
+
+    static byte[] encode(String orderNo, String paymentId, boolean success, long receivedAt) {
+        String line = orderNo + SEPARATOR + paymentId + SEPARATOR + (success ? SUCCESS : FAILED)
+                + SEPARATOR + receivedAt + '\n';
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析一行记录（不含换行符），格式错误时返回 null
+     */
+    static PaymentCallbackRecord decode(long offset, long nextOffset, String line) {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != 4 || fields[0].isEmpty()) {
+            return null;
+        }
+        try {
+            return new PaymentCallbackRecord(offset, nextOffset, fields[0], fields[1],
+                    SUCCESS.equals(fields[2]), Long.parseLong(fields[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 无法解析的记录，只用于推进读取位置
+     */
+    static PaymentCallbackRecord skipped(long offset, long nextOffset) {
+        return new PaymentCallbackRecord(offset, nextOffset, null, null, false, 0);
+    }
+
+    static String dedupKey(String orderNo, String paymentId) {
+        return orderNo + ':' + paymentId;
+    }
+
+    boolean isSkipped() {
+        return orderNo == null;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    String getOrderNo() {
+        return orderNo;
+    }
+
+    String getPaymentId() {
+        return paymentId;
+    }
+
+    boolean isSuccess() {
+        return success;
+    }
+
+    long getReceivedAt() {
+        return receivedAt;
+    }
+}
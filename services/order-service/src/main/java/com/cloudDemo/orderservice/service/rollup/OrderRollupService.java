@@ -0,0 +1,246 @@
+package com.cloudDemo.orderservice.service.rollup;
+
+import com.cloudDemo.orderservice.config.OrderRollupProperties;
+import com.cloudDemo.orderservice.dto.OrderRollupSummary;
+import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.enums.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单分钟汇总
+ * 每分钟一个Redis哈希 order:rollup:m:{分钟数}，字段为 count（新建订单数）、amount / min / max（金额，单位分）
+ * 和 in:{状态}（转入该状态的次数，新建订单计入待支付），另有 order:rollup:u:{分钟数} HyperLogLog 记录下单用户。
+ * 下单和状态变更提交后增量更新当前分钟的汇总，统计查询合并窗口内各分钟的汇总，查询成本只与窗口分钟数有关。
+ * 时间窗口按整分钟对齐。汇总从首次启用的下一分钟开始记录，并只保留 retentionHours，
+ * 早于覆盖范围的窗口由调用方改查数据库。汇总写入失败只记录日志，不影响下单和状态变更。
+ */
+@Slf4j
+@Service
+public class OrderRollupService {
+
+    private static final String BUCKET_KEY_PREFIX = "order:rollup:m:";
+    private static final String USERS_KEY_PREFIX = "order:rollup:u:";
+    private static final String SINCE_KEY = "order:rollup:since";
+    private static final String FIELD_COUNT = "count";
+    private static final String FIELD_AMOUNT = "amount";
+    private static final String FIELD_MIN = "min";
+    private static final String FIELD_MAX = "max";
+    private static final String FIELD_IN_PREFIX = "in:";
+
+    /**
+     * 记录新建订单：ARGV 为 金额（分，可为空串）、用户ID（可为空串）、状态码（可为空串）、过期秒数
+     */
+    private static final RedisScript<Long> RECORD_CREATED_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HINCRBY', KEYS[1], 'count', 1)\n" +
+                    "if ARGV[1] ~= '' then\n" +
+                    "  local amount = tonumber(ARGV[1])\n" +
+                    "  redis.call('HINCRBY', KEYS[1], 'amount', ARGV[1])\n" +
+                    "  local min = redis.call('HGET', KEYS[1], 'min')\n" +
+                    "  if not min or amount < tonumber(min) then redis.call('HSET', KEYS[1], 'min', ARGV[1]) end\n" +
+                    "  local max = redis.call('HGET', KEYS[1], 'max')\n" +
+                    "  if not max or amount > tonumber(max) then redis.call('HSET', KEYS[1], 'max', ARGV[1]) end\n" +
+                    "end\n" +
+                    "if ARGV[3] ~= '' then redis.call('HINCRBY', KEYS[1], 'in:' .. ARGV[3], 1) end\n" +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[4])\n" +
+                    "if ARGV[2] ~= '' then\n" +
+                    "  redis.call('PFADD', KEYS[2], ARGV[2])\n" +
+                    "  redis.call('EXPIRE', KEYS[2], ARGV[4])\n" +
+                    "end\n" +
+                    "return 1",
+            Long.class);
+
+    /**
+     * 记录状态转入：ARGV 为 字段名、次数、过期秒数
+     */
+    private static final RedisScript<Long> RECORD_TRANSITIONS_SCRIPT = new DefaultRedisScript<>(
+            "local total = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])\n" +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[3])\n" +
+                    "return total",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderRollupProperties rollupProperties;
+
+    private volatile long sinceMinute = Long.MAX_VALUE;
+
+    @PostConstruct
+    public void init() {
+        if (!rollupProperties.isEnabled()) {
+            return;
+        }
+        try {
+            // 当前分钟在启用前可能已有订单，从下一分钟开始才是完整的汇总
+            stringRedisTemplate.opsForValue().setIfAbsent(SINCE_KEY, Long.toString(currentMinute() + 1));
+            String since = stringRedisTemplate.opsForValue().get(SINCE_KEY);
+            sinceMinute = since == null ? Long.MAX_VALUE : Long.parseLong(since);
+        } catch (Exception e) {
+            log.error("读取订单分钟汇总起始时间失败，统计查询将走数据库", e);
+        }
+    }
+
+    /**
+     * 时间窗口是否完全在汇总覆盖范围内
+     */
+    public boolean covers(LocalDateTime startTime) {
+        if (!rollupProperties.isEnabled()) {
+            return false;
+        }
+        long startMinute = toMinute(startTime);
+        long oldestRetained = currentMinute() - TimeUnit.HOURS.toMinutes(rollupProperties.getRetentionHours()) + 1;
+        return startMinute >= sinceMinute && startMinute >= oldestRetained;
+    }
+
+    /**
+     * 记录新建订单
+     */
+    public void recordCreated(Orders order) {
+        if (!rollupProperties.isEnabled()) {
+            return;
+        }
+        try {
+            long minute = toMinute(order.getCreateTime() == null ? LocalDateTime.now() : order.getCreateTime());
+            String amount = order.getTotalAmount() == null ? ""
+                    : Long.toString(order.getTotalAmount().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+            String userId = order.getUserId() == null ? "" : order.getUserId().toString();
+            String status = order.getStatus() == null ? "" : OrderStatus.fromCode(order.getStatus()).getCode();
+            stringRedisTemplate.execute(RECORD_CREATED_SCRIPT,
+                    List.of(BUCKET_KEY_PREFIX + minute, USERS_KEY_PREFIX + minute),
+                    amount, userId, status, Long.toString(expireSeconds()));
+        } catch (Exception e) {
+            log.error("记录订单分钟汇总失败，订单号={}", order.getOrderNo(), e);
+        }
+    }
+
+    /**
+     * 记录一批订单转入目标状态（事务提交后调用）
+     */
+    public void recordTransitions(OrderStatus targetStatus, int count) {
+        if (!rollupProperties.isEnabled() || count <= 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RECORD_TRANSITIONS_SCRIPT, List.of(BUCKET_KEY_PREFIX + currentMinute()),
+                    FIELD_IN_PREFIX + targetStatus.getCode(), Integer.toString(count), Long.toString(expireSeconds()));
+        } catch (Exception e) {
+            log.error("记录订单状态转入汇总失败，目标状态={}，订单数={}", targetStatus.getName(), count, e);
+        }
+    }
+
+    /**
+     * 合并时间窗口内各分钟的汇总（一次管道读取全部分钟）
+     */
+    public OrderRollupSummary summarize(LocalDateTime startTime, LocalDateTime endTime) {
+        long startMinute = toMinute(startTime);
+        long endMinute = toMinute(endTime);
+        List<Object> buckets = readBuckets(startMinute, endMinute);
+
+        OrderRollupSummary summary = new OrderRollupSummary();
+        long amountCents = 0;
+        Long minCents = null;
+        Long maxCents = null;
+        for (int i = 0; i < buckets.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> bucket = (Map<Object, Object>) buckets.get(i);
+            if (bucket == null || bucket.isEmpty()) {
+                continue;
+            }
+            long count = parseLong(bucket.get(FIELD_COUNT));
+            summary.setOrderCount(summary.getOrderCount() + count);
+            amountCents += parseLong(bucket.get(FIELD_AMOUNT));
+            if (bucket.get(FIELD_MIN) != null) {
+                long min = parseLong(bucket.get(FIELD_MIN));
+                minCents = minCents == null ? min : Math.min(minCents, min);
+            }
+            if (bucket.get(FIELD_MAX) != null) {
+                long max = parseLong(bucket.get(FIELD_MAX));
+                maxCents = maxCents == null ? max : Math.max(maxCents, max);
+            }
+            for (Map.Entry<Object, Object> field : bucket.entrySet()) {
+                String name = (String) field.getKey();
+                if (name.startsWith(FIELD_IN_PREFIX)) {
+                    summary.getStatusTransitions().merge(name.substring(FIELD_IN_PREFIX.length()),
+                            parseLong(field.getValue()), Long::sum);
+                }
+            }
+            if (count > 0) {
+                LocalDateTime hour = toLocalDateTime(startMinute + i).truncatedTo(ChronoUnit.HOURS);
+                summary.getHourlyOrderCounts().merge(hour, count, Long::sum);
+            }
+        }
+
+        summary.setTotalAmount(BigDecimal.valueOf(amountCents, 2));
+        summary.setMinAmount(minCents == null ? null : BigDecimal.valueOf(minCents, 2));
+        summary.setMaxAmount(maxCents == null ? null : BigDecimal.valueOf(maxCents, 2));
+        return summary;
+    }
+
+    /**
+     * 时间窗口内的下单用户数（HyperLogLog 合并估算，标准误差约0.81%）
+     */
+    public long countUniqueUsers(LocalDateTime startTime, LocalDateTime endTime) {
+        long startMinute = toMinute(startTime);
+        long endMinute = toMinute(endTime);
+        String[] keys = new String[(int) (endMinute - startMinute + 1)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = USERS_KEY_PREFIX + (startMinute + i);
+        }
+        Long count = stringRedisTemplate.opsForHyperLogLog().size(keys);
+        return count == null ? 0 : count;
+    }
+
+    private List<Object> readBuckets(long startMinute, long endMinute) {
+        return stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (long minute = startMinute; minute <= endMinute; minute++) {
+                    ops.opsForHash().entries(BUCKET_KEY_PREFIX + minute);
+                }
+                return null;
+            }
+        });
+    }
+
+    private long expireSeconds() {
+        // 多保留一小时，保证覆盖范围边界上的分钟仍然可读
+        return TimeUnit.HOURS.toSeconds(rollupProperties.getRetentionHours() + 1L);
+    }
+
+    private static long parseLong(Object value) {
+        return value == null ? 0 : Long.parseLong((String) value);
+    }
+
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private static long toMinute(LocalDateTime time) {
+        return TimeUnit.MILLISECONDS.toMinutes(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    private static LocalDateTime toLocalDateTime(long minute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(TimeUnit.MINUTES.toMillis(minute)), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,184 @@
+package com.cloudDemo.orderservice.service.timeout;
+
+import com.cloudDemo.orderservice.config.OrderTimeoutProperties;
+import com.cloudDemo.orderservice.dto.OrderBatchTransitionResult;
+import com.cloudDemo.orderservice.entity.Orders;
+import com.cloudDemo.orderservice.mapper.OrdersMapper;
+import com.cloudDemo.orderservice.service.OrderStateMachineService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待支付订单超时自动取消
+ * 新订单创建时登记支付截止时间（创建时间 + 超时时长），截止时间保存在内存时间轮中，
+ * 后台线程每个 tick 推进一次时间轮，到期的订单按批通过状态机取消（只取消仍为待支付的订单），
+ * 取消后由状态机归还订单的预扣库存。运行期间不需要轮询 orders 表。
+ * 启动时用游标流式读取全部待支付订单重建时间轮，已过截止时间的订单在第一个 tick 取消。
+ * 多实例部署时每个实例都会恢复全部待支付订单，重复取消由行锁和状态条件保证只生效一次。
+ */
+@Slf4j
+@Service
+public class OrderPaymentTimeoutCanceller implements ApplicationRunner {
+
+    private static final String CANCEL_REASON = "支付超时自动取消";
+
+    @Autowired
+    private OrderTimeoutProperties timeoutProperties;
+    @Autowired
+    private PaymentDeadlineRegistry deadlineRegistry;
+    @Autowired
+    private OrderStateMachineService orderStateMachineService;
+    @Autowired
+    private OrdersMapper ordersMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate readOnlyTransaction;
+    private ScheduledExecutorService tickExecutor;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        Gauge.builder("order.payment.deadline.registered", deadlineRegistry, PaymentDeadlineRegistry::size)
+                .description("Pending orders with a registered payment deadline")
+                .tag("service", "order-service")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!timeoutProperties.isEnabled()) {
+            return;
+        }
+        try {
+            recover();
+        } catch (Exception e) {
+            log.error("恢复待支付订单的支付截止时间失败，重启前创建的订单不会自动取消", e);
+        }
+
+        tickExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "order-payment-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMs = Math.max(1, timeoutProperties.getTickMs());
+        tickExecutor.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (tickExecutor != null) {
+            tickExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 登记新订单的支付截止时间
+     *
+     * @param orderNo    订单号
+     * @param createTime 下单时间，为空时按当前时间
+     */
+    public void register(String orderNo, LocalDateTime createTime) {
+        if (!timeoutProperties.isEnabled()) {
+            return;
+        }
+        long createdAt = createTime == null ? System.currentTimeMillis()
+                : createTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long deadline = createdAt + TimeUnit.MINUTES.toMillis(timeoutProperties.getTimeoutMinutes());
+        if (!deadlineRegistry.register(orderNo, deadline)) {
+            // 已过截止时间：放到下一个 tick 处理，不占用调用方线程
+            deadlineRegistry.register(orderNo, System.currentTimeMillis() + timeoutProperties.getTickMs());
+        }
+    }
+
+    /**
+     * 推进时间轮并取消到期的订单
+     */
+    private void tick() {
+        try {
+            List<String> expired = deadlineRegistry.advance(System.currentTimeMillis());
+            if (expired.isEmpty()) {
+                return;
+            }
+            int batchSize = Math.max(1, timeoutProperties.getCancelBatchSize());
+            for (int from = 0; from < expired.size(); from += batchSize) {
+                cancel(expired.subList(from, Math.min(from + batchSize, expired.size())));
+            }
+        } catch (Exception e) {
+            log.error("支付超时订单处理失败", e);
+        }
+    }
+
+    private void cancel(List<String> orderNos) {
+        OrderBatchTransitionResult result;
+        try {
+            result = orderStateMachineService.batchCancelUnpaidOrders(orderNos, CANCEL_REASON);
+        } catch (Exception e) {
+            log.error("支付超时订单取消失败，{}秒后重试，订单数={}", timeoutProperties.getRetryDelaySeconds(), orderNos.size(), e);
+            retryLater(orderNos);
+            return;
+        }
+
+        // 订单不存在或已不是待支付状态的直接忽略，数据库异常导致失败的稍后重试
+        List<String> retry = new ArrayList<>();
+        for (OrderBatchTransitionResult.Item item : result.getResults()) {
+            if (item.isRetryable()) {
+                retry.add(item.getOrderNo());
+            }
+        }
+        if (!retry.isEmpty()) {
+            retryLater(retry);
+        }
+        log.info("支付超时订单已处理：到期={}，取消={}，重试={}", orderNos.size(), result.getSuccessCount(), retry.size());
+    }
+
+    private void retryLater(List<String> orderNos) {
+        long retryAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutProperties.getRetryDelaySeconds());
+        for (String orderNo : orderNos) {
+            deadlineRegistry.register(orderNo, retryAt);
+        }
+    }
+
+    /**
+     * 从数据库恢复全部待支付订单的支付截止时间
+     */
+    private void recover() {
+        long start = System.currentTimeMillis();
+        Integer recovered = readOnlyTransaction.execute(status -> {
+            int count = 0;
+            try (Cursor<Orders> cursor = ordersMapper.streamPendingOrders()) {
+                for (Orders order : cursor) {
+                    register(order.getOrderNo(), order.getCreateTime());
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("关闭待支付订单游标失败", e);
+            }
+            return count;
+        });
+        log.info("已恢复待支付订单的支付截止时间：订单数={}，耗时={}ms", recovered, System.currentTimeMillis() - start);
+    }
+}
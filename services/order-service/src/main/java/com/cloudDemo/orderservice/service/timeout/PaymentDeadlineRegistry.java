@@ -0,0 +1,106 @@
+package com.cloudDemo.orderservice.service.timeout;
+
+import com.cloudDemo.orderservice.config.OrderTimeoutProperties;
+import com.cloudDemo.orderservice.util.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 待支付订单的支付截止时间登记表
+ * 截止时间放在分层时间轮中，登记和注销都是 O(1)：注销只从索引中删除并给定时任务打上取消标记，
+ * 时间轮推进到截止时间时跳过已取消的任务。
+ * 本类不依赖其他业务组件，状态机在订单离开待支付状态时直接注销，不会产生循环依赖。
+ */
+@Component
+public class PaymentDeadlineRegistry {
+
+    private final Map<String, Deadline> deadlines = new ConcurrentHashMap<>();
+
+    @Autowired
+    private OrderTimeoutProperties timeoutProperties;
+
+    private HierarchicalTimingWheel<Deadline> wheel;
+
+    @PostConstruct
+    public void init() {
+        wheel = new HierarchicalTimingWheel<>(Math.max(1, timeoutProperties.getTickMs()),
+                Math.max(2, timeoutProperties.getWheelSize()), System.currentTimeMillis());
+    }
+
+    /**
+     * 登记订单的支付截止时间（重复登记时以最后一次为准）
+     *
+     * @return 已经过了截止时间时返回 false，由调用方立即处理
+     */
+    public boolean register(String orderNo, long deadlineMs) {
+        Deadline deadline = new Deadline(orderNo);
+        Deadline previous = deadlines.put(orderNo, deadline);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        if (!wheel.add(deadline, deadlineMs)) {
+            deadlines.remove(orderNo, deadline);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 注销订单的支付截止时间（订单已支付或已取消）
+     */
+    public void unregister(String orderNo) {
+        Deadline deadline = deadlines.remove(orderNo);
+        if (deadline != null) {
+            deadline.cancelled = true;
+        }
+    }
+
+    public void unregisterAll(Collection<String> orderNos) {
+        for (String orderNo : orderNos) {
+            unregister(orderNo);
+        }
+    }
+
+    /**
+     * 推进时间轮，返回已到截止时间且未注销的订单号
+     */
+    public List<String> advance(long nowMs) {
+        List<String> expired = new ArrayList<>();
+        wheel.advance(nowMs, deadline -> {
+            if (!deadline.cancelled && deadlines.remove(deadline.orderNo, deadline)) {
+                expired.add(deadline.orderNo);
+            }
+        });
+        return expired;
+    }
+
+    /**
+     * 登记中的订单数
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * 时间轮中的定时任务数（含已注销但尚未到期的任务）
+     */
+    public int timerCount() {
+        return wheel.size();
+    }
+
+    private static final class Deadline {
+        private final String orderNo;
+        private volatile boolean cancelled;
+
+        private Deadline(String orderNo) {
+            this.orderNo = orderNo;
+        }
+    }
+}
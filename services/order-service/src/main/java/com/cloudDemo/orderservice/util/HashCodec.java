@@ -0,0 +1,258 @@
+package com.cloudDemo.orderservice.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 低分配的哈希与十六进制编码工具（线程安全）
+ * murmur3Hex：MurmurHash3 x64 128位非加密哈希，输入按UTF-8编码到线程本地缓冲区后直接计算，
+ * 结果与 Guava Hashing.murmur3_128() 一致，仅用于不需要抗碰撞攻击的场景（如同一用户命名空间内的幂等键）。
+ * 幂等令牌由 IdempotentTokenCodec 签发。
+ * 十六进制编码使用查表，每次调用只分配结果字符串。
+ */
+public final class HashCodec {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int SEED = 0;
+    private static final char SEPARATOR = ':';
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    // 每个字节对应的两个十六进制字符
+    private static final byte[] HEX_PAIRS = new byte[512];
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i << 1] = digits[i >>> 4];
+            HEX_PAIRS[(i << 1) + 1] = digits[i & 0xF];
+        }
+    }
+
+    private HashCodec() {
+    }
+
+    /**
+     * 计算各部分以冒号连接后的 MurmurHash3 x64 128 哈希，返回32位十六进制字符串
+     * 各部分直接编码到缓冲区，不生成中间拼接字符串
+     */
+    public static String murmur3Hex(CharSequence... parts) {
+        Scratch scratch = SCRATCH.get();
+        int length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                length = scratch.put(length, (byte) SEPARATOR);
+            }
+            length = scratch.putUtf8(length, parts[i] == null ? "null" : parts[i]);
+        }
+        return murmur3Hex(scratch.bytes, length);
+    }
+
+    /**
+     * 计算字节数组前 length 个字节的 MurmurHash3 x64 128 哈希（十六进制）
+     */
+    public static String murmur3Hex(byte[] data, int length) {
+        long h1 = SEED;
+        long h2 = SEED;
+        int blocks = length >>> 4;
+
+        for (int i = 0; i < blocks; i++) {
+            int offset = i << 4;
+            long k1 = (long) LONG_LE.get(data, offset);
+            long k2 = (long) LONG_LE.get(data, offset + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = blocks << 4;
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[tail + 14] & 0xFF) << 48;
+                // fall through
+            case 14:
+                k2 ^= (long) (data[tail + 13] & 0xFF) << 40;
+                // fall through
+            case 13:
+                k2 ^= (long) (data[tail + 12] & 0xFF) << 32;
+                // fall through
+            case 12:
+                k2 ^= (long) (data[tail + 11] & 0xFF) << 24;
+                // fall through
+            case 11:
+                k2 ^= (long) (data[tail + 10] & 0xFF) << 16;
+                // fall through
+            case 10:
+                k2 ^= (long) (data[tail + 9] & 0xFF) << 8;
+                // fall through
+            case 9:
+                k2 ^= data[tail + 8] & 0xFF;
+                h2 ^= mixK2(k2);
+                // fall through
+            case 8:
+                k1 ^= (long) (data[tail + 7] & 0xFF) << 56;
+                // fall through
+            case 7:
+                k1 ^= (long) (data[tail + 6] & 0xFF) << 48;
+                // fall through
+            case 6:
+                k1 ^= (long) (data[tail + 5] & 0xFF) << 40;
+                // fall through
+            case 5:
+                k1 ^= (long) (data[tail + 4] & 0xFF) << 32;
+                // fall through
+            case 4:
+                k1 ^= (long) (data[tail + 3] & 0xFF) << 24;
+                // fall through
+            case 3:
+                k1 ^= (long) (data[tail + 2] & 0xFF) << 16;
+                // fall through
+            case 2:
+                k1 ^= (long) (data[tail + 1] & 0xFF) << 8;
+                // fall through
+            case 1:
+                k1 ^= data[tail] & 0xFF;
+                h1 ^= mixK1(k1);
+                break;
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return toHex(h1, h2);
+    }
+
+    /**
+     * 两个long按小端字节序编码为32位十六进制（与 Guava HashCode.toString 的字节顺序一致）
+     */
+    public static String toHex(long first, long second) {
+        byte[] out = new byte[32];
+        writeHexLE(out, 0, first);
+        writeHexLE(out, 16, second);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 字节数组编码为十六进制
+     */
+    public static String toHex(byte[] bytes) {
+        return toHex(bytes, bytes.length);
+    }
+
+    /**
+     * 字节数组前 length 个字节编码为十六进制
+     */
+    public static String toHex(byte[] bytes, int length) {
+        byte[] out = new byte[length << 1];
+        for (int i = 0; i < length; i++) {
+            int pair = (bytes[i] & 0xFF) << 1;
+            out[i << 1] = HEX_PAIRS[pair];
+            out[(i << 1) + 1] = HEX_PAIRS[pair + 1];
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeHexLE(byte[] out, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            int pair = (int) (value & 0xFF) << 1;
+            out[offset + (i << 1)] = HEX_PAIRS[pair];
+            out[offset + (i << 1) + 1] = HEX_PAIRS[pair + 1];
+            value >>>= 8;
+        }
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * 线程本地的UTF-8编码缓冲区，按需扩容后复用
+     */
+    private static final class Scratch {
+        private byte[] bytes = new byte[256];
+
+        private int put(int position, byte value) {
+            ensureCapacity(position + 1);
+            bytes[position] = value;
+            return position + 1;
+        }
+
+        private int putUtf8(int position, CharSequence value) {
+            int length = value.length();
+            // 每个char最多编码为3个字节（代理对两个char编码为4个字节）
+            ensureCapacity(position + length * 3);
+            byte[] buffer = bytes;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | (c >>> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (codePoint >>> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符与 String.getBytes(UTF_8) 一致替换为 '?'
+                    buffer[position++] = (byte) '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (c >>> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return position;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                byte[] grown = new byte[Math.max(capacity, bytes.length << 1)];
+                System.arraycopy(bytes, 0, grown, 0, bytes.length);
+                bytes = grown;
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.cloudDemo.orderservice.util;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮（线程安全）
+ * 第一层每格 tickMs，共 wheelSize 格；超出本层范围的定时任务放入上一层（每格为下一层的一整圈），
+ * 上一层按需创建。添加定时任务为 O(1)；时间推进到某层某格的起点时，该格中的任务重新放入下层，
+ * 到达最底层当前格时触发，每个任务最多被搬移层数次。
+ * 到期时间向上取整到 tickMs，任务不会早于到期时间触发，最多晚一个 tick。
+ * 取消由调用方在任务上打标记实现（触发时跳过），不需要在格子中查找。
+ */
+public final class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final Level root;
+    private int size;
+
+    /**
+     * @param tickMs    每格时长（毫秒）
+     * @param wheelSize 每层格数
+     * @param startMs   起始时间（毫秒时间戳）
+     */
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMs必须大于0，wheelSize必须大于1");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.root = new Level(tickMs, startMs - Math.floorMod(startMs, tickMs));
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param item       任务
+     * @param deadlineMs 到期时间（毫秒时间戳）
+     * @return 已经到期时返回 false（未加入时间轮，由调用方立即处理）
+     */
+    public synchronized boolean add(T item, long deadlineMs) {
+        long expiration = Math.floorDiv(deadlineMs + tickMs - 1, tickMs) * tickMs;
+        if (!root.add(new Entry<>(item, expiration))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * 推进时间到 nowMs，依次回调所有到期的任务
+     *
+     * @return 触发的任务数
+     */
+    public synchronized int advance(long nowMs, Consumer<T> expired) {
+        int fired = 0;
+        while (root.currentTime + tickMs <= nowMs) {
+            long time = root.currentTime + tickMs;
+            // 先对齐各层当前时间，再从高层到低层把到期格中的任务搬到下层
+            for (Level level = root; level != null; level = level.overflow) {
+                level.currentTime = time - Math.floorMod(time, level.tickMs);
+            }
+            fired += cascade(root.overflow, time, expired);
+
+            ArrayDeque<Entry<T>> bucket = root.bucketAt(time);
+            Entry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                size--;
+                fired++;
+                expired.accept(entry.item);
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * 当前时间轮中的任务数（含已取消但尚未到期的任务）
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 已推进到的时间
+     */
+    public synchronized long currentTime() {
+        return root.currentTime;
+    }
+
+    private int cascade(Level level, long time, Consumer<T> expired) {
+        if (level == null || Math.floorMod(time, level.tickMs) != 0) {
+            return 0;
+        }
+        int fired = cascade(level.overflow, time, expired);
+        ArrayDeque<Entry<T>> bucket = level.bucketAt(time);
+        Entry<T> entry;
+        while ((entry = bucket.poll()) != null) {
+            if (!root.add(entry)) {
+                size--;
+                fired++;
+                expired.accept(entry.item);
+            }
+        }
+        return fired;
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long expiration;
+
+        private Entry(T item, long expiration) {
+            this.item = item;
+            this.expiration = expiration;
+        }
+    }
+
+    private final class Level {
+        private final long tickMs;
+        private final long interval;
+        private final ArrayDeque<Entry<T>>[] buckets;
+        private long currentTime;
+        private Level overflow;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tickMs, long currentTime) {
+            this.tickMs = tickMs;
+            this.interval = tickMs * wheelSize;
+            this.currentTime = currentTime;
+            this.buckets = new ArrayDeque[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+        }
+
+        private boolean add(Entry<T> entry) {
+            if (entry.expiration < currentTime + tickMs) {
+                // 只有最底层会出现：上层的当前格正好是下一层的一整圈
+                return false;
+            }
+            if (entry.expiration < currentTime + interval) {
+                bucketAt(entry.expiration).add(entry);
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(interval, currentTime - Math.floorMod(currentTime, interval));
+            }
+            return overflow.add(entry);
+        }
+
+        private ArrayDeque<Entry<T>> bucketAt(long time) {
+            return buckets[(int) Math.floorMod(Math.floorDiv(time, tickMs), (long) wheelSize)];
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.cloudDemo.orderservice.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自校验的幂等令牌编解码（线程安全）
+ * 令牌格式：{userId}.{过期时间（秒）}.{随机数}.{签名}，签名为 HMAC-SHA256 截断到128位的十六进制，
+ * 签发和校验都不需要访问Redis；Redis只记录令牌是否已被使用。
+ */
+public class IdempotentTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 16;
+    private static final char SEPARATOR = '.';
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final ThreadLocal<Mac> macs;
+
+    public IdempotentTokenCodec(String secret, long ttlSeconds) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("幂等令牌签名密钥不能为空");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 签发令牌
+     */
+    public String issue(Long userId, long nowSeconds) {
+        String payload = String.valueOf(userId) + SEPARATOR + (nowSeconds + ttlSeconds) + SEPARATOR
+                + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        return payload + SEPARATOR + sign(payload);
+    }
+
+    /**
+     * 校验令牌签名、所属用户和有效期
+     *
+     * @return 令牌剩余有效时间（秒），签名有效但已过期时返回0，令牌无效时返回-1
+     */
+    public long verify(String token, Long userId, long nowSeconds) {
+        if (token == null || userId == null) {
+            return -1;
+        }
+        int macStart = token.lastIndexOf(SEPARATOR);
+        String userPrefix = String.valueOf(userId) + SEPARATOR;
+        if (macStart <= 0 || !token.startsWith(userPrefix)) {
+            return -1;
+        }
+        int expiryEnd = token.indexOf(SEPARATOR, userPrefix.length());
+        if (expiryEnd < 0 || expiryEnd >= macStart) {
+            return -1;
+        }
+
+        String payload = token.substring(0, macStart);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(macStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return -1;
+        }
+
+        long expiry;
+        try {
+            expiry = Long.parseLong(token, userPrefix.length(), expiryEnd, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return Math.max(0, expiry - nowSeconds);
+    }
+
+    /**
+     * 令牌签名部分，可作为令牌的唯一标识
+     */
+    public static String signatureOf(String token) {
+        return token.substring(token.lastIndexOf(SEPARATOR) + 1);
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    private String sign(String payload) {
+        byte[] mac = macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return HashCodec.toHex(mac, MAC_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256算法不可用", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cloudDemo.orderservice.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 按键合并并发加载（single-flight）
+ * 同一个键同一时刻只有一个线程执行加载，其余线程等待并共享它的结果（包括异常），
+ * 用于缓存失效瞬间防止大量并发请求同时回源数据库。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 加载指定键的值，已有线程在加载时等待其结果
+     *
+     * @param key    键
+     * @param loader 加载逻辑（只会由其中一个线程执行）
+     * @return 加载结果，可能为null
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+}
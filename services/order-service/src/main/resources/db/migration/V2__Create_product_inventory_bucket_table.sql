@@ -0,0 +1,23 @@
+-- Flyway数据库版本管理 - 商品库存分桶表
+-- 版本：V2
+-- 描述：热点商品的可用库存拆分为多个子桶，分散行锁与分布式锁竞争（inventory.reserve-mode=SHARDED）
+-- 作者：CloudDemo项目
+-- 日期：2026-10-17
+
+CREATE TABLE IF NOT EXISTS `product_inventory_bucket`
+(
+    `id`              bigint      NOT NULL AUTO_INCREMENT COMMENT '分桶ID',
+    `product_id`      varchar(64) NOT NULL COMMENT '商品ID',
+    `bucket_no`       int         NOT NULL COMMENT '桶序号（从0开始）',
+    `available_stock` int         NOT NULL DEFAULT 0 COMMENT '桶内可用库存',
+    `reserved_stock`  int         NOT NULL DEFAULT 0 COMMENT '桶内预扣库存',
+    `sold_stock`      int         NOT NULL DEFAULT 0 COMMENT '桶内已售库存',
+    `update_time`     datetime    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`id`) USING BTREE,
+    UNIQUE INDEX `uk_product_bucket` (`product_id` ASC, `bucket_no` ASC) USING BTREE COMMENT '商品+桶序号唯一索引'
+) ENGINE = InnoDB
+  AUTO_INCREMENT = 1
+  CHARACTER SET = utf8mb4
+  COLLATE = utf8mb4_0900_ai_ci
+    COMMENT = '商品库存分桶表'
+  ROW_FORMAT = Dynamic;
@@ -0,0 +1,20 @@
+-- Flyway数据库版本管理 - 订单状态变更事件发件箱表
+-- 版本：V3
+-- 描述：订单状态变更与事件在同一事务中写入，由后台中继批量投递到Redis Stream后删除
+-- 作者：CloudDemo项目
+-- 日期：2026-10-17
+
+CREATE TABLE IF NOT EXISTS `order_status_outbox`
+(
+    `id`          bigint      NOT NULL AUTO_INCREMENT COMMENT '事件ID（提交顺序不保证与ID顺序一致）',
+    `order_no`    varchar(32) NOT NULL COMMENT '订单编号',
+    `from_status` varchar(20) NULL     DEFAULT NULL COMMENT '变更前状态，存在多个可能的前置状态且未读取时为空',
+    `to_status`   varchar(20) NOT NULL COMMENT '变更后状态',
+    `create_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '变更时间',
+    PRIMARY KEY (`id`) USING BTREE
+) ENGINE = InnoDB
+  AUTO_INCREMENT = 1
+  CHARACTER SET = utf8mb4
+  COLLATE = utf8mb4_0900_ai_ci
+    COMMENT = '订单状态变更事件发件箱表'
+  ROW_FORMAT = Dynamic;
@@ -0,0 +1,19 @@
+-- Flyway数据库版本管理 - 库存异步回写检查点表
+-- 版本：V4
+-- 描述：记录已回写到数据库的最大流水序号，与库存增量在同一事务中更新，重放流水时跳过已回写的部分
+-- 作者：CloudDemo项目
+-- 日期：2026-10-17
+
+CREATE TABLE IF NOT EXISTS `inventory_writebehind_checkpoint`
+(
+    `id`          int         NOT NULL COMMENT '固定为1，只有一行',
+    `last_seq`    bigint      NOT NULL DEFAULT 0 COMMENT '已回写的最大流水序号',
+    `update_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '更新时间',
+    PRIMARY KEY (`id`) USING BTREE
+) ENGINE = InnoDB
+  CHARACTER SET = utf8mb4
+  COLLATE = utf8mb4_0900_ai_ci
+    COMMENT = '库存异步回写检查点表'
+  ROW_FORMAT = Dynamic;
+
+INSERT IGNORE INTO `inventory_writebehind_checkpoint` (`id`, `last_seq`) VALUES (1, 0);
@@ -0,0 +1,9 @@
+-- Flyway数据库版本管理 - 订单状态索引
+-- 版本：V5
+-- 描述：按状态扫描订单（重启后恢复待支付订单的支付截止时间）时走索引，不再全表扫描；
+--      同一状态内按创建时间有序，便于按状态+时间范围查询
+-- 作者：CloudDemo项目
+-- 日期：2026-10-17
+
+ALTER TABLE `orders`
+    ADD INDEX `idx_status_create_time` (`status` ASC, `create_time` ASC) USING BTREE COMMENT '订单状态+创建时间索引';
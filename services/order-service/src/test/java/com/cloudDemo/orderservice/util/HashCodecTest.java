@@ -0,0 +1,70 @@
+package com.cloudDemo.orderservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HashCodec 单元测试
+ * 期望值由 Guava Hashing.murmur3_128().hashString(input, UTF_8).toString() 生成
+ */
+public class HashCodecTest {
+
+    // {输入, Guava murmur3_128 结果}，覆盖空输入、16字节整块、各长度尾块及多字节字符
+    private static final String[][] GUAVA_VECTORS = {
+            {"", "00000000000000000000000000000000"},
+            {"a", "897859f6655555855a890e51483ab5e6"},
+            {"abc", "6778ad3f3f3f96b4522dca264174a23b"},
+            {"fifteen-bytes!!", "249d7a6e8ee4263df2aadbc58d71cf6b"},
+            {"0123456789abcdef", "a7d14acf946de04bda08a7635c5bc387"},
+            {"0123456789abcdef0", "75c0a58587ae24ebca283131b368fb73"},
+            {"The quick brown fox jumps over the lazy dog", "6c1b07bc7bbc4be347939ac4a93c437a"},
+            {"库存预扣", "79a1515eb13e773e534e5999dd4b22ae"},
+            {"emoji😀", "10d697feb1a72c54b9997a52a73c3405"},
+            {"bad\uD800x", "ba7ec91fab1e9043b8f23dfe71024765"},
+    };
+
+    @Test
+    public void testMurmur3MatchesGuava() {
+        for (String[] vector : GUAVA_VECTORS) {
+            assertEquals(vector[1], HashCodec.murmur3Hex(vector[0]), "输入: " + vector[0]);
+        }
+    }
+
+    @Test
+    public void testUtf8EncodingMatchesGetBytes() {
+        // 线程本地缓冲区的UTF-8编码结果必须与 String.getBytes(UTF_8) 完全一致（含不成对的代理字符）
+        String[] inputs = {"ascii", "é", "库存", "😀", "\uD800", "a\uDC00b", "\uD800𐀀"};
+        for (String input : inputs) {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            assertEquals(HashCodec.murmur3Hex(bytes, bytes.length), HashCodec.murmur3Hex(input), "输入: " + input);
+        }
+    }
+
+    @Test
+    public void testPartsJoinedWithSeparator() {
+        assertEquals("75de7fac19f6fe81603337c8dce77ad1", HashCodec.murmur3Hex("user-1", "order", "42"));
+        assertEquals(HashCodec.murmur3Hex("user-1:order:42"), HashCodec.murmur3Hex("user-1", "order", "42"));
+        // null 按字符串 "null" 参与计算
+        assertEquals("d7abb3c118f212d9f823e34089e1b1b6", HashCodec.murmur3Hex("a", null));
+    }
+
+    @Test
+    public void testBufferGrowsForLongInput() {
+        String input = "库存".repeat(500) + "tail";
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals(HashCodec.murmur3Hex(bytes, bytes.length), HashCodec.murmur3Hex(input));
+        // 扩容后复用缓冲区，短输入的结果不受残留数据影响
+        assertEquals("6778ad3f3f3f96b4522dca264174a23b", HashCodec.murmur3Hex("abc"));
+    }
+
+    @Test
+    public void testHexEncoding() {
+        assertEquals("00017f80ff", HashCodec.toHex(new byte[]{0x00, 0x01, 0x7f, (byte) 0x80, (byte) 0xff}));
+        assertEquals("0001", HashCodec.toHex(new byte[]{0x00, 0x01, 0x02}, 2));
+        // 两个long按小端字节序输出
+        assertEquals("efcdab8967452301" + "0100000000000000", HashCodec.toHex(0x0123456789abcdefL, 1L));
+    }
+}
@@ -0,0 +1,108 @@
+package com.cloudDemo.orderservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HierarchicalTimingWheel 单元测试
+ * 时间轮：每格10ms，每层8格，各层范围依次为80ms、640ms、5120ms
+ */
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    public void testFiresAtRoundedUpDeadline() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        List<String> fired = new ArrayList<>();
+
+        assertTrue(wheel.add("order-1", 25));
+        assertEquals(1, wheel.size());
+
+        // 到期时间向上取整到30ms，不会提前触发
+        assertEquals(0, wheel.advance(29, fired::add));
+        assertTrue(fired.isEmpty());
+
+        assertEquals(1, wheel.advance(30, fired::add));
+        assertEquals(List.of("order-1"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRejectsExpiredDeadline() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, 100);
+
+        assertFalse(wheel.add("expired", 100));
+        assertFalse(wheel.add("past", 50));
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.add("next-tick", 101));
+    }
+
+    @Test
+    public void testCascadesFromOverflowLevels() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        List<String> fired = new ArrayList<>();
+
+        // 超出最底层和第二层范围，分别放入第二层和第三层
+        assertTrue(wheel.add("level-2", 500));
+        assertTrue(wheel.add("level-3", 1000));
+
+        assertEquals(0, wheel.advance(490, fired::add));
+        assertEquals(1, wheel.advance(500, fired::add));
+        assertEquals(0, wheel.advance(990, fired::add));
+        assertEquals(1, wheel.advance(1000, fired::add));
+        assertEquals(List.of("level-2", "level-3"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRandomDeadlinesFireInOrderAndOnTime() {
+        long start = 1_000_003;
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, start);
+        Random random = new Random(42);
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = start + 1 + random.nextInt(20_000);
+            assertTrue(wheel.add(i, deadline));
+            expected.put(i, Math.floorDiv(deadline + TICK_MS - 1, TICK_MS) * TICK_MS);
+        }
+
+        Map<Integer, Long> actual = new HashMap<>();
+        long now = start;
+        while (actual.size() < expected.size()) {
+            now += 1 + random.nextInt(37);
+            wheel.advance(now, item -> actual.put(item, wheel.currentTime()));
+        }
+
+        assertEquals(expected, actual);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testAdvanceAcrossLargeGap() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        for (int i = 1; i <= 100; i++) {
+            wheel.add(i, i * 73L);
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        assertEquals(100, wheel.advance(100_000, fired::add));
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1) < fired.get(i), "到期早的任务先触发");
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>(0, WHEEL_SIZE, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>(TICK_MS, 1, 0));
+    }
+}